@@ -42,7 +42,7 @@ public interface Battlefield extends Set<Obstacle> {
     /**
      * Returns just the Enemy implementations from our collection, excluding ourself.
      * That is, returns our remaining opponents
-     * @return
+     * @return the enemies, implementations may share this array between calls so it must not be modified
      */
     public Enemy[] getEnemies();
     /**
@@ -76,6 +76,13 @@ public interface Battlefield extends Set<Obstacle> {
      * @return Point2D representing the safest location away from enemies
      */
     public java.awt.geom.Point2D.Double getLagrangePoint();
+
+    /**
+     * The best few alternatives to the Lagrange point, best (i.e. getLagrangePoint()) first.
+     * All are nearly as far from enemies as the best so a mover can choose between them on other grounds
+     * @return a possibly empty list which implementations may reuse, so should not be retained
+     */
+    public java.util.List<java.awt.geom.Point2D.Double> getLagrangeCandidates();
     
     /*
     * used in debug to draw battlefield hazards etc.
@@ -88,10 +95,34 @@ public interface Battlefield extends Set<Obstacle> {
      * The 'solid' part of the outline is 'safe space'
      * That is anything we should avoid is 'subtracted' from this shape
      * @param ticks The number of ticks from now, in which we want to try and determine what the battlefield will look like
-     * @return
+     * @return an Area which may be shared with other callers on the same tick, so must not be modified
      */
     public Area getBattlefieldArea(int ticks);
 
+    /**
+     * Fast point query equivalent to testing Wave.contains(x, y, ticks) against
+     * every wave of every enemy
+     * @param ticks number of ticks in the future
+     * @return true if the point is within the danger zone of any active wave
+     */
+    public boolean isInWave(double x, double y, int ticks);
+
+    /**
+     * Gets obstacle.getOutline(ticks) but implementations may return a memoized copy
+     * if the obstacle cannot have changed since it was last built.
+     * The returned Area must therefore not be modified.
+     */
+    public Area getOutline(Obstacle obstacle, int ticks);
+
+    /**
+     * Fast point query equivalent to getBattlefieldArea(0).contains(x, y)
+     * Implementations may answer this at a reduced resolution
+     * @param x absolute x coordinate
+     * @param y absolute y coordinate
+     * @return true if the point is currently 'safe space'
+     */
+    public boolean isSafe(double x, double y);
+
     /****************
     Static Utility Methods
     *****************/
@@ -1,6 +1,7 @@
 package net.richardsenior.robocode.skynet.base;
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 /**
  * Any kind of battlefield obstacle.
@@ -33,6 +34,28 @@ public interface Obstacle {
      */
     public Area getOutline(int ticks);
 
+    /**
+     * Closed form test of whether the given point lies within the outline of this obstacle
+     * as it will be at 'ticks' in the future. Equivalent to getOutline(ticks).contains(x, y)
+     * but without constructing any geometry, so suitable for per-tick sampling.
+     * getOutline should only be needed for painting.
+     * @param x absolute x coordinate
+     * @param y absolute y coordinate
+     * @param ticks number of ticks in the future
+     * @return true if the point is inside this obstacle
+     */
+    public boolean contains(double x, double y, int ticks);
+
+    /**
+     * Gets the axis aligned bounding box of the outline at 'ticks' in the future
+     * The given rectangle is populated and returned so that no allocation is necessary
+     * An obstacle with no outline should return an empty (zero sized) rectangle
+     * @param ticks number of ticks in the future
+     * @param bounds the rectangle to populate
+     * @return the populated bounds
+     */
+    public Rectangle2D.Double getBounds(int ticks, Rectangle2D.Double bounds);
+
     /**
      *  when was the last confirmed sighting (scan) of this obstacle
      *  in ticks
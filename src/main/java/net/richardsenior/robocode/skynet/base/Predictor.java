@@ -5,6 +5,8 @@ import java.awt.geom.Point2D;
  * Interface for use by anything which predicts a location and 'n' ticks in the future.
  * Extends TargetingPredictor to support both geometric (position-based) and 
  * statistical (bearing-based) prediction methods.
+ * Implementations may return the same point object from every call to predict and getIntercept,
+ * so callers should copy the result if they need it beyond the next call.
  */
 public interface Predictor extends TargetingPredictor {
     /** 
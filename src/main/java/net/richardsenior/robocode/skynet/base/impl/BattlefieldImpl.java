@@ -9,20 +9,27 @@ import net.richardsenior.robocode.skynet.base.Wave;
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import robocode.*;
-import java.util.ArrayDeque;
-import java.util.Set;
 /**
  * @see net.richardsenior.robocode.skynet.base.Battlefield
- * Implmementation of Battlefield underpinned by a WeakHashSet of Obstacles.
- * This allows Obstacles such as bullets and dead enemies to be automatically removed from the battlefield
+ * Implmementation of Battlefield underpinned by an ObstacleRegistry.
+ * The registry keeps enemies, waves and ourself in separate arrays and indexes enemies by name
+ * so the per event and per tick lookups don't have to search the whole set.
  * Battlefield is usually injected (IOC) into other objects maintaining a central source of information
  * @author Richard Senior
  */
 public class BattlefieldImpl implements Battlefield {
     private static final double WALL_EXCLUSION_ZONE = 28.0;
-    private static final int LAGRANGE_GRID_SIZE = 10; // 10x10 grid for sampling
+    private static final int LAGRANGE_CELL_SIZE = 16; // pixels per cell of the Lagrange distance transform
+    /** indexed by TickBudget quality level, lowest first */
+    private static final int[] MOVER_SAMPLES = {6, 8, 12, 16};
+    /** ticks each wave surf may simulate */
+    private static final int[] SURF_SIMULATION_TICKS = {2000, 4000, 8000, 16000};
+    private static final int[] LAGRANGE_CELL_SIZES = {48, 32, 24, LAGRANGE_CELL_SIZE};
+    private static final int OCCUPANCY_CELL_SIZE = 8; // pixels per cell of the safe space bitmap
+    private static final int SPATIAL_BUCKET_SIZE = 64; // pixels per bucket of the spatial index
+    private static final int SPATIAL_HORIZON = 8; // ticks into the future the spatial index is valid for
     /** Enemies, and Waves etc. */
-    private Set<Obstacle> obstacles;
+    private ObstacleRegistry obstacles;
     /** The currently targetted enemy */
     private Enemy target;
     /** Us (Our tank) implemented as an Obstacle */
@@ -33,11 +40,41 @@ public class BattlefieldImpl implements Battlefield {
     private Scanner scanner;
     /** Implements our movement strategies */
     private Mover mover;    
-    private Enemy[] enemies;
     /** The time in ticks since we last saw the least recently scanned enemy */
     private long oldestScan = 0;
     /** A point on the battlefield which is least densely populated. Like the inverse of centre of gravity */
     private Point2D.Double lagrangePoint;
+    /** Distance transform from which the Lagrange point and its runners up are found */
+    private LagrangeField lagrangeField;
+    /** Fields already built at other resolutions, so that changing quality level doesn't reallocate */
+    private java.util.Map<Integer, LagrangeField> lagrangeFields = new java.util.HashMap<>();
+    /** Rasterised safe space, see isSafe */
+    private OccupancyGrid occupancy;
+    /** The tick on which the occupancy grid was last rasterised */
+    private long occupancyTime = -1;
+    /** Broad phase for point, rectangle and nearest enemy queries, rebuilt every tick */
+    private SpatialIndex spatialIndex;
+    /** Times each phase of update() and chooses a quality level to stay within the cpu constant */
+    private TickBudget budget;
+    /** The quality level the subsystems are currently configured for */
+    private int appliedQuality = TickBudget.MAX_QUALITY;
+    /** Precise movement prediction shared by the mover and guns */
+    private PhysicsSimulator simulator;
+    private EscapeAngleTable escapeAngles;
+    /** our own bullets, until they reach their targets */
+    private GunWaveTracker gunWaves;
+    /** Routes robocode events to the subsystems interested in them */
+    private EventDispatcher dispatcher;
+    /** Per tick memo of obstacle outlines */
+    private OutlineCache outlineCache;
+    /** Per tick memo of getBattlefieldArea, keyed by ticks */
+    private java.util.Map<Integer, Area> battlefieldAreas;
+    /** The tick on which battlefieldAreas was populated */
+    private long battlefieldAreaTime = -1;
+    private long battlefieldAreaHits = 0;
+    private long battlefieldAreaMisses = 0;
+    /** Whether onPaint draws the latency percentiles */
+    private boolean showLatencies = true;
 
     /** Interface defined access methods */
     @Override
@@ -48,88 +85,99 @@ public class BattlefieldImpl implements Battlefield {
     public AdvancedRobot getSelf() {return this.self;}
     @Override
     public Point2D.Double getLagrangePoint() {return this.lagrangePoint;}
+    @Override
+    public java.util.List<Point2D.Double> getLagrangeCandidates() {return this.lagrangeField.getCandidates();}
     
     /** Access methods peculiar to this implementation of the Battlefield Interface */
     public Enemy getSelfAsEnemy() {return this.selfEnemy;}
+    public ObstacleRegistry getRegistry() {return this.obstacles;}
+    public SpatialIndex getSpatialIndex() {return this.spatialIndex;}
+    /** Subsystems may subscribe to events through this */
+    public EventDispatcher getEventDispatcher() {return this.dispatcher;}
+    public TickBudget getTickBudget() {return this.budget;}
+    public PhysicsSimulator getSimulator() {return this.simulator;}
+    public EscapeAngleTable getEscapeAngles() {return this.escapeAngles;}
+    public GunWaveTracker getGunWaves() {return this.gunWaves;}
+    public OutlineCache getOutlineCache() {return this.outlineCache;}
+    public long getBattlefieldAreaHits() {return this.battlefieldAreaHits;}
+    public long getBattlefieldAreaMisses() {return this.battlefieldAreaMisses;}
     
 
     // constructor
     public BattlefieldImpl(AdvancedRobot self) {
         this.self = self;                
-        this.obstacles = java.util.Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<Obstacle, Boolean>());
+        this.obstacles = new ObstacleRegistry();
         // create an Enemy class which represents this robot (for wave generation only)
         this.selfEnemy = new SelfEnemyImpl(this);
         this.obstacles.add(this.selfEnemy);
+        this.outlineCache = new OutlineCache(this);
+        this.simulator = new PhysicsSimulator(self.getBattleFieldWidth(), self.getBattleFieldHeight());
+        this.escapeAngles = new EscapeAngleTable(self.getBattleFieldWidth(), self.getBattleFieldHeight());
+        this.gunWaves = new GunWaveTracker(this);
+        this.battlefieldAreas = new java.util.HashMap<>();
+        // before the subsystems, which may subscribe to it
+        this.dispatcher = new EventDispatcher();
         this.scanner = new ScannerImpl(this);
         this.mover = new MoverImpl(this);
+        this.setOccupancyCellSize(OCCUPANCY_CELL_SIZE);
+        this.setLagrangeCellSize(LAGRANGE_CELL_SIZE);
+        this.spatialIndex = new SpatialIndex(self.getBattleFieldWidth(), self.getBattleFieldHeight(), SPATIAL_BUCKET_SIZE);
+        this.budget = new TickBudget();
+        this.subscribe();
     }
 
-    private void calculateLagrangePoint() {
-        if (this.enemies == null || this.enemies.length == 0) {
-            this.lagrangePoint = null;
-            return;
+    /**
+     * Re-enters all enemies and their waves into the spatial index
+     * Called every tick after the obstacles have been updated, and whenever an enemy is removed
+     */
+    private void rebuildSpatialIndex() {
+        this.spatialIndex.clear(SPATIAL_HORIZON);
+        for (Enemy enemy : this.getEnemies()) {
+            this.spatialIndex.insert(enemy);
+            java.util.List<Wave> waves = enemy.getWaves();
+            for (int i = 0; i < waves.size(); i++) {this.spatialIndex.insert(waves.get(i));}
         }
-        
-        double fieldWidth = self.getBattleFieldWidth();
-        double fieldHeight = self.getBattleFieldHeight();
-        double cellWidth = fieldWidth / LAGRANGE_GRID_SIZE;
-        double cellHeight = fieldHeight / LAGRANGE_GRID_SIZE;
-        
-        java.awt.geom.Point2D.Double bestSpot = null;
-        double maxMinDistance = 0;
-        
-        for (int x = 0; x < LAGRANGE_GRID_SIZE; x++) {
-            for (int y = 0; y < LAGRANGE_GRID_SIZE; y++) {
-                java.awt.geom.Point2D.Double testPoint = new java.awt.geom.Point2D.Double(
-                    (x + 0.5) * cellWidth, 
-                    (y + 0.5) * cellHeight
-                );
-                
-                // Find distance to nearest enemy
-                double minDistSq = Double.POSITIVE_INFINITY;
-                for (Enemy enemy : this.enemies) {
-                    java.awt.geom.Point2D.Double enemyPos = enemy.getPosition();
-                    if (enemyPos != null) {
-                        double distSq = testPoint.distanceSq(enemyPos);
-                        if (distSq < minDistSq) {
-                            minDistSq = distSq;
-                        }
-                    }
-                }
-                
-                if (minDistSq > maxMinDistance) {
-                    maxMinDistance = minDistSq;
-                    bestSpot = testPoint;
-                }
-            }
+    }
+
+    /**
+     * Changes the resolution of the grid used by isSafe
+     * @param cellSize size in pixels of each cell, typically 4 or 8
+     */
+    public void setOccupancyCellSize(int cellSize) {
+        this.occupancy = new OccupancyGrid(self.getBattleFieldWidth(), self.getBattleFieldHeight(), WALL_EXCLUSION_ZONE, cellSize);
+        this.occupancyTime = -1;
+    }
+
+    /**
+     * Changes the resolution of the distance transform used to find the Lagrange point
+     * @param cellSize size in pixels of each cell
+     */
+    public void setLagrangeCellSize(int cellSize) {
+        // a field that has sat idle just sees every enemy as having moved on its next update
+        LagrangeField field = this.lagrangeFields.get(cellSize);
+        if (field == null) {
+            field = new LagrangeField(self.getBattleFieldWidth(), self.getBattleFieldHeight(), WALL_EXCLUSION_ZONE, cellSize);
+            this.lagrangeFields.put(cellSize, field);
         }
-        
-        this.lagrangePoint = bestSpot;
+        this.lagrangeField = field;
+    }
+
+    /** Incrementally updates the distance transform with any enemies that have moved */
+    private void calculateLagrangePoint() {
+        this.lagrangeField.update(this.obstacles, self.getTime());
+        this.lagrangePoint = this.lagrangeField.getBest();
     }
     
     @Override
     public Enemy getTarget() {
-        if (this.enemies == null || this.enemies.length == 0) {
+        Enemy[] enemies = this.getEnemies();
+        if (enemies.length == 0) {
             this.target = null;
             return null;
         }
         
-        Point2D.Double myPos = new Point2D.Double(self.getX(), self.getY());
-        
-        Enemy closest = null;
-        double closestDistSq = Double.POSITIVE_INFINITY;
-        
-        for (Enemy enemy : this.enemies) {
-            if (enemy.getPosition() != null) {
-                double distSq = myPos.distanceSq(enemy.getPosition());
-                if (distSq < closestDistSq) {
-                    closestDistSq = distSq;
-                    closest = enemy;
-                }
-            }
-        }
-        
-        this.target = closest;
+        // closest enemy, found through the spatial index
+        this.target = this.spatialIndex.nearestEnemy(self.getX(), self.getY(), this.selfEnemy);
         return this.target;
     }
     
@@ -138,79 +186,161 @@ public class BattlefieldImpl implements Battlefield {
     
     @Override
     public void update() {   
+        long allocated = PerfCounters.startAllocation();
+        long t = this.budget.startTick();
+        PerfCounters.increment(PerfCounters.TICKS);
+        // handle everything that arrived since the last tick in one batch
+        this.dispatcher.drain();
+        t = this.budget.endPhase(TickBudget.PHASE_EVENTS, t);
+        this.applyQuality();
         this.scanner.scan();        
+        t = this.budget.endPhase(TickBudget.PHASE_SCANNER, t);
         // Update all obstacles        
-        ArrayDeque<Enemy>enemies = new ArrayDeque<Enemy>();
         this.oldestScan = Long.MAX_VALUE;
-        for (Obstacle obstacle : obstacles) {
-            // maintain a count of how many enemies we have scanned
-            if (obstacle instanceof Enemy && !(obstacle instanceof SelfEnemyImpl)) {                
-                enemies.add((Enemy)obstacle);
-                if (((Enemy)obstacle).getScanHistory() != null && !((Enemy)obstacle).getScanHistory().isEmpty()) {
-                    // Get the LAST (most recent) scan, not the first (oldest)
-                    EventWrapper mostRecent = ((Enemy)obstacle).getScanHistory().getLast();
-                    long t = mostRecent.getTime();
-                    // how long ago did we scan the the whole battlefield?
-                    if (t < this.oldestScan) {this.oldestScan = t;}
-                }
+        for (Enemy enemy : this.getEnemies()) {
+            if (enemy.getScanHistory() != null && !enemy.getScanHistory().isEmpty()) {
+                // Get the LAST (most recent) scan, not the first (oldest)
+                EventWrapper mostRecent = enemy.getScanHistory().getLast();
+                long time = mostRecent.getTime();
+                // how long ago did we scan the the whole battlefield?
+                if (time < this.oldestScan) {this.oldestScan = time;}
             }
-            obstacle.update();
         }
-        this.enemies = enemies.toArray(new Enemy[enemies.size()]);
+        for (int i = 0; i < this.obstacles.getIndexBound(); i++) {
+            Obstacle obstacle = this.obstacles.get(i);
+            if (obstacle != null) {obstacle.update();}
+        }
+        this.rebuildSpatialIndex();
+        t = this.budget.endPhase(TickBudget.PHASE_OBSTACLES, t);
         
         // Calculate Lagrange point (least densely populated spot)
         calculateLagrangePoint();
+        t = this.budget.endPhase(TickBudget.PHASE_LAGRANGE, t);
         
         this.mover.update();
+        long moveStart = System.nanoTime();
         this.mover.doMove();
+        PerfCounters.record(PerfCounters.LATENCY_DO_MOVE, System.nanoTime() - moveStart);
+        t = this.budget.endPhase(TickBudget.PHASE_MOVER, t);
+        
+        // learn from any of our bullets that have reached their targets, whoever we are aiming at now
+        this.gunWaves.update(this.self.getTime());
         
         // Get target (will auto-select if none exists)
         Enemy selectedTarget = this.getTarget();
         
         // Update and fire gun for selected target
         if (selectedTarget != null && selectedTarget.getGun() != null) {
+            long gunStart = System.nanoTime();
             selectedTarget.getGun().update();
+            PerfCounters.record(PerfCounters.LATENCY_GUN_UPDATE, System.nanoTime() - gunStart);
             selectedTarget.getGun().fire();
         }
+        this.budget.endPhase(TickBudget.PHASE_GUN, t);
+        this.budget.endTick();
+        this.recordLatencies();
+        PerfCounters.endAllocation(allocated);
+    }
+
+    /** Feeds this tick's phase timings from the tick budget into the latency histograms */
+    private void recordLatencies() {
+        if (!PerfCounters.isEnabled()) {return;}
+        for (int phase = 0; phase < TickBudget.PHASE_COUNT; phase++) {
+            PerfCounters.record(phase, this.budget.getPhaseNanos(phase));
+        }
+        PerfCounters.record(PerfCounters.LATENCY_TICK, this.budget.getLastTickNanos());
+    }
+
+    public boolean isShowLatencies() {return this.showLatencies;}
+    /** Turns the per round latency percentiles overlay on or off */
+    public void setShowLatencies(boolean show) {this.showLatencies = show;}
+
+    /**
+     * Pushes the quality level chosen by the tick budget out to the subsystems
+     * if it has changed since the last tick
+     */
+    private void applyQuality() {
+        int quality = this.budget.getQuality();
+        if (quality == this.appliedQuality) {return;}
+        this.appliedQuality = quality;
+        if (this.mover instanceof MoverImpl) {
+            MoverImpl moverImpl = (MoverImpl)this.mover;
+            moverImpl.setSampleCount(MOVER_SAMPLES[quality]);
+            if (moverImpl.getSurfer() != null) {moverImpl.getSurfer().setSimulationBudget(SURF_SIMULATION_TICKS[quality]);}
+        }
+        this.setLagrangeCellSize(LAGRANGE_CELL_SIZES[quality]);
     }
 
+    /**
+     * Events which arrive once the run loop has stopped calling update() (end of round etc.)
+     * can't wait for the queue to be drained, so these are dispatched immediately
+     */
     @Override
     public void update(robocode.Event event) {
-        switch (event.getClass().getSimpleName()) {
-            case "RobotDeathEvent":
-                RobotDeathEvent rde = (RobotDeathEvent) event;
-                String deadRobotName = rde.getName();
-                // null this target
-                if (this.getTarget()!=null && this.getTarget().getId().equals(deadRobotName)) {this.setTarget(null);}
-                // Remove it from the obstacles seet
-                obstacles.removeIf(obstacle -> 
-                    obstacle instanceof Enemy && 
-                    ((Enemy) obstacle).getId().equals(deadRobotName)
-                );
-                break;
-            case "ScannedRobotEvent":                
-                ScannedRobotEvent sre = (ScannedRobotEvent) event;
-                Enemy enemy = this.getEnemy(sre.getName());
-                enemy.update(sre);
-                break;
-            case "HitWallEvent":
-                if (mover != null) {
-                    mover.onHitWall();
-                }
-                break;
-            default: return;                
+        if (event instanceof RoundEndedEvent || event instanceof BattleEndedEvent
+            || event instanceof DeathEvent || event instanceof WinEvent) {
+            this.dispatcher.drain();
+            this.dispatcher.dispatch(event);
+            return;
         }
+        this.dispatcher.enqueue(event);
     }
+
+    /** Subscribes the handlers of this battlefield and its subsystems */
+    private void subscribe() {
+        this.dispatcher.subscribe(RobotDeathEvent.class, this::onRobotDeath);
+        this.dispatcher.subscribe(ScannedRobotEvent.class, e -> this.getEnemy(e.getName()).update(e));
+        this.dispatcher.subscribe(HitWallEvent.class, e -> this.mover.onHitWall());
+        this.dispatcher.subscribe(SkippedTurnEvent.class, e -> {
+            this.budget.onSkippedTurn();
+            PerfCounters.increment(PerfCounters.SKIPPED_TURNS);
+        });
+        this.dispatcher.subscribe(RoundEndedEvent.class, e -> PerfCounters.endRound(this.self, e.getRound()));
+        this.dispatcher.subscribe(BattleEndedEvent.class, e -> PerfCounters.endBattle(this.self));
+    }
+
+    private void onRobotDeath(RobotDeathEvent rde) {
+        String deadRobotName = rde.getName();
+        // null this target
+        if (this.getTarget()!=null && this.getTarget().getId().equals(deadRobotName)) {this.setTarget(null);}
+        // Remove it from the obstacles set
+        obstacles.removeEnemy(deadRobotName);
+        this.rebuildSpatialIndex();
+    }
+
     @Override
-    public int getEnemyCount() {return this.enemies != null ? this.enemies.length : 0;}
+    public int getEnemyCount() {return this.obstacles.getEnemies().length;}
     @Override
     public long getOldestSighting() {return this.oldestScan;}
     @Override
-    public Enemy[] getEnemies() {return this.enemies;}
+    public Enemy[] getEnemies() {return this.obstacles.getEnemies();}
 
-    
+
+    /**
+     * Reference implementation using constructive area geometry.
+     * The mover should use isSafe which answers the same question from a bitmap
+     */
+    @Override
     public Area getBattlefieldArea(int ticks) {
+        long now = getSelf().getTime();
+        if (now != this.battlefieldAreaTime) {
+            this.battlefieldAreas.clear();
+            this.battlefieldAreaTime = now;
+        }
+        Area area = this.battlefieldAreas.get(ticks);
+        if (area != null) {
+            this.battlefieldAreaHits++;
+            return area;
+        }
+        this.battlefieldAreaMisses++;
+        area = this.buildBattlefieldArea(ticks);
+        this.battlefieldAreas.put(ticks, area);
+        return area;
+    }
+
+    private Area buildBattlefieldArea(int ticks) {
         // create a rectangle the size of the battlefield, minus a constant amount such that we don't go into the walls
+        PerfCounters.increment(PerfCounters.AREA_CONSTRUCTIONS);
         Area area = new Area(new java.awt.geom.Rectangle2D.Double(WALL_EXCLUSION_ZONE, WALL_EXCLUSION_ZONE, 
             getSelf().getBattleFieldWidth() - 2 * WALL_EXCLUSION_ZONE, getSelf().getBattleFieldHeight() - 2 * WALL_EXCLUSION_ZONE));
         
@@ -224,7 +354,7 @@ public class BattlefieldImpl implements Battlefield {
                 continue;
             }
             
-            Area outline = obstacle.getOutline(ticks);
+            Area outline = this.getOutline(obstacle, ticks);
             if (outline != null && !outline.isEmpty()) {
                 // Test: does the outline actually contain points?
                 java.awt.geom.Rectangle2D bounds = outline.getBounds2D();
@@ -241,19 +371,54 @@ public class BattlefieldImpl implements Battlefield {
         return area;
     }
 
+    /**
+     * Only waves whose bounds (swept over the index horizon) touch the point are tested exactly
+     */
     @Override
-    public Enemy getEnemy(String name) {
-        if (name == null) {throw new IllegalArgumentException("Enemy name cannot be null");}
-        // Search in obstacles set, not the enemies array
-        for (Obstacle obstacle : obstacles) {
-            if (obstacle instanceof Enemy && !(obstacle instanceof SelfEnemyImpl)) {
-                if (((Enemy)obstacle).getId().equals(name)) {
-                    return (Enemy)obstacle;
+    public boolean isInWave(double x, double y, int ticks) {
+        PerfCounters.increment(PerfCounters.SAFE_POINT_TESTS);
+        if (ticks > this.spatialIndex.getHorizon()) {
+            for (Enemy enemy : this.getEnemies()) {
+                java.util.List<Wave> waves = enemy.getWaves();
+                for (int i = 0; i < waves.size(); i++) {
+                    if (waves.get(i).contains(x, y, ticks)) {return true;}
                 }
             }
+            return false;
         }
+        int candidates = this.spatialIndex.query(x, y);
+        for (int i = 0; i < candidates; i++) {
+            Obstacle o = this.spatialIndex.getResult(i);
+            if (o instanceof Wave && o.contains(x, y, ticks)) {return true;}
+        }
+        return false;
+    }
+
+    @Override
+    public Area getOutline(Obstacle obstacle, int ticks) {return this.outlineCache.getOutline(obstacle, ticks);}
+
+    /**
+     * Rasterises all obstacles into the occupancy grid the first time this is called
+     * on any given tick, then answers in O(1)
+     */
+    @Override
+    public boolean isSafe(double x, double y) {
+        PerfCounters.increment(PerfCounters.SAFE_POINT_TESTS);
+        long now = getSelf().getTime();
+        if (now != this.occupancyTime) {
+            this.occupancy.rasterize(this, 0);
+            this.occupancyTime = now;
+        }
+        return this.occupancy.isSafe(x, y);
+    }
+
+    @Override
+    public Enemy getEnemy(String name) {
+        if (name == null) {throw new IllegalArgumentException("Enemy name cannot be null");}
+        Enemy e = obstacles.getEnemy(name);
+        if (e != null) {return e;}
         // create new enemy and add it
-        Enemy e = new EnemyImpl(name, this);
+        e = new EnemyImpl(name, this);
         this.add(e);
         return e;
     }
@@ -272,7 +437,7 @@ public class BattlefieldImpl implements Battlefield {
                 ((EnemyImpl)obstacle).drawOutline(g);
             } else if (obstacle instanceof Wave) {
                 // Draw wave annular segments
-                Area waveOutline = obstacle.getOutline(0);
+                Area waveOutline = this.getOutline(obstacle, 0);
                 if (waveOutline != null) {
                     g.setColor(new java.awt.Color(255, 0, 0, 100)); // Semi-transparent red
                     g.fill(waveOutline);
@@ -287,7 +452,7 @@ public class BattlefieldImpl implements Battlefield {
             if (obstacle instanceof Enemy) {
                 Enemy enemy = (Enemy)obstacle;
                 for (Wave wave : enemy.getWaves()) {
-                    Area waveOutline = wave.getOutline(0);
+                    Area waveOutline = this.getOutline(wave, 0);
                     if (waveOutline != null) {
                         g.setColor(new java.awt.Color(255, 100, 0, 80)); // Semi-transparent orange
                         g.fill(waveOutline);
@@ -298,6 +463,28 @@ public class BattlefieldImpl implements Battlefield {
             }
         }
         
+        // Tick budget
+        g.setColor(java.awt.Color.WHITE);
+        g.drawString("Tick " + (budget.getLastTickNanos() / 1000) + "us of " + (budget.getBudgetNanos() / 1000)
+            + "us, quality " + budget.getQuality() + ", skipped " + budget.getSkippedTurns(), 10, 75);
+
+        // Latency percentiles for this round, only populated when the perf counters are enabled
+        if (this.showLatencies && PerfCounters.isEnabled()) {
+            int y = 90;
+            for (int i = 0; i < PerfCounters.LATENCY_COUNT; i++) {
+                LatencyHistogram h = PerfCounters.getLatency(i);
+                if (h.getCount() == 0) {continue;}
+                g.drawString(h.getName() + " p50/p99/max: " + (h.getPercentile(50) / 1000) + "/"
+                    + (h.getPercentile(99) / 1000) + "/" + (h.getMax() / 1000) + "us", 10, y);
+                y += 15;
+            }
+        }
+
+        // Memoization statistics
+        g.setColor(java.awt.Color.WHITE);
+        g.drawString("Outline cache hit/miss: " + outlineCache.getHits() + "/" + outlineCache.getMisses()
+            + ", area hit/miss: " + battlefieldAreaHits + "/" + battlefieldAreaMisses, 10, 60);
+
         // Draw mover and scanner
         if (mover != null) {mover.doPaint(g);}
         if (scanner != null) {scanner.doPaint(g);}
@@ -305,7 +492,7 @@ public class BattlefieldImpl implements Battlefield {
         
     /**************************
     Set Delegate Methods
-    Implelement the Set interface using a weak hash set as the backing store
+    Implelement the Set interface using the obstacle registry as the backing store
     ***************************/
     @Override
     public int size() {return obstacles.size();}
@@ -3,167 +3,112 @@ package net.richardsenior.robocode.skynet.base.impl;
 import net.richardsenior.robocode.skynet.base.Predictor;
 import net.richardsenior.robocode.skynet.base.Wave;
 import java.awt.geom.Point2D;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Bin-based statistical targeting predictor using GuessFactor methodology.
  * Learns enemy movement patterns by recording where they move relative to fired bullets.
- * Uses power-of-2 bin count for fast modulo operations.
+ * Results are kept in GuessFactorStats, segmented by the enemy's situation when we fired
+ * (distance, lateral velocity, acceleration and room to the wall) and read back for the situation now.
+ * Guess factors are signed by the enemy's lateral direction, positive being the way it was going.
+ * Given an EscapeAngleTable the guess factors are scaled by the precise, wall aware escape angle
+ * on each side rather than the naive one, so guess factor 1 means the furthest the enemy could really get.
+ * Rather than the centre of the best bin it aims where the most probability falls within the target's
+ * width, each bin widened by the target's half width at the current distance (see MaxOverlapAim).
+ * Shots are learnt from through GunWaveTracker, how each was aimed is kept on its GunWave so nothing
+ * here grows with the number of bullets fired.
+ * The stats are handed in, from the enemy's EnemyMemory.
  */
 public class BinPredictor implements Predictor {
-    private static final int BIN_COUNT = 32;  // Power of 2 for fast bitwise operations
-    private static final int BIN_MASK = BIN_COUNT - 1;  // For fast modulo: x & BIN_MASK
-    
+    private static final double ROBOT_HALF_WIDTH = 18;
+    private final GuessFactorStats stats;
+    private final Situation situation;
+    /** reused every aim */
+    private final float[] bins = new float[GuessFactorStats.BIN_COUNT];
+    private final MaxOverlapAim aim = new MaxOverlapAim(GuessFactorStats.BIN_COUNT);
+
+    public BinPredictor() {
+        this(null, null, new GuessFactorStats());
+    }
+
     /**
-     * Helper class to store targeting information for a fired wave
+     * @param escapeAngles null for the naive escape angle
+     * @param enemy the target, null if unknown (everything then falls in one segment)
+     * @param stats what has been learnt about the target
      */
-    private static class TargetingWave {
-        final double firingBearing;
-        final double maxEscapeAngle;
-        final Point2D.Double sourceLocation;
-        
-        TargetingWave(double firingBearing, double maxEscapeAngle, Point2D.Double sourceLocation) {
-            this.firingBearing = firingBearing;
-            this.maxEscapeAngle = maxEscapeAngle;
-            this.sourceLocation = new Point2D.Double(sourceLocation.x, sourceLocation.y);
-        }
-    }
-    
-    private int[] bins;
-    private int maxBin;
-    private int maxValue;
-    private Map<Wave, TargetingWave> firedWaves;  // Track waves we've fired
-    
-    public BinPredictor() {
-        this.bins = new int[BIN_COUNT];
-        this.maxBin = BIN_COUNT / 2;  // Start with center bin
-        this.maxValue = 0;
-        this.firedWaves = new HashMap<>();
+    public BinPredictor(EscapeAngleTable escapeAngles, EnemyImpl enemy, GuessFactorStats stats) {
+        this.situation = new Situation(escapeAngles, enemy);
+        this.stats = stats;
     }
-    
+
     @Override
     public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
                                       double bulletVelocity, double directBearing) {
-        // Find the bin with most hits
-        int bestBin = maxBin;
-        
-        // Convert bin to GuessFactor (-1 to +1)
-        double guessFactor = (bestBin / (double)BIN_COUNT) * 2.0 - 1.0;
-        
-        // Calculate maximum escape angle
-        double distance = ourPosition.distance(enemyPosition);
-        double maxEscapeAngle = calculateMaxEscapeAngle(distance, bulletVelocity);
-        
-        // Convert GuessFactor to bearing offset
-        return guessFactor * maxEscapeAngle;
+        Situation s = situation.set(ourPosition, enemyPosition, bulletVelocity);
+        stats.getBlendedBins(getSegment(s), bins);
+
+        // each bin as the bearings that would hit the target there, clockwise positive
+        double halfWidth = Math.atan2(ROBOT_HALF_WIDTH, s.distance);
+        aim.clear();
+        for (int i = 0; i < GuessFactorStats.BIN_COUNT; i++) {
+            double guessFactor = GuessFactorStats.getGuessFactor(i) * s.direction;
+            double offset = guessFactor * (guessFactor >= 0 ? s.clockwiseEscapeAngle : s.anticlockwiseEscapeAngle);
+            aim.add(offset - halfWidth, offset + halfWidth, bins[i]);
+        }
+        double offset = aim.solve();
+        // nothing learnt yet, straight at the target
+        return Double.isNaN(offset) ? 0 : offset;
     }
-    
+
+    /** Remembers how a GunWave was aimed on the wave itself, any other kind of wave is ignored */
     @Override
     public void recordShot(Wave wave) {
-        // Calculate firing bearing and max escape angle from wave
-        Point2D centre = wave.getCentre();
-        Point2D.Double sourceLocation = new Point2D.Double(centre.getX(), centre.getY());
-        double bulletVelocity = wave.getBulletSpeed();
-        
-        // We need enemy position at firing time - get from wave's enemy
-        if (wave.getEnemy() == null) return;
+        if (!(wave instanceof GunWave) || wave.getEnemy() == null) return;
+        GunWave gunWave = (GunWave)wave;
+
+        // the target's position at firing time
         Point2D.Double enemyPosition = wave.getEnemy().getPosition();
-        
-        double firingBearing = Math.atan2(
-            enemyPosition.x - sourceLocation.x,
-            enemyPosition.y - sourceLocation.y
-        );
-        
-        double distance = sourceLocation.distance(enemyPosition);
-        double maxEscapeAngle = calculateMaxEscapeAngle(distance, bulletVelocity);
-        
+        if (enemyPosition == null) return;
+
         // Store the targeting information
-        firedWaves.put(wave, new TargetingWave(firingBearing, maxEscapeAngle, sourceLocation));
+        Situation s = situation.set((Point2D.Double)gunWave.getCentre(), enemyPosition, wave.getBulletSpeed());
+        gunWave.setAim(s);
+        gunWave.setSegment(getSegment(s));
     }
-    
+
     @Override
     public void recordResult(Wave wave, Point2D.Double actualPosition) {
-        TargetingWave targetingWave = firedWaves.get(wave);
-        if (targetingWave == null) return;
-        
-        firedWaves.remove(wave);
-        
-        // Calculate actual bearing to enemy
-        double actualBearing = Math.atan2(
-            actualPosition.x - targetingWave.sourceLocation.x,
-            actualPosition.y - targetingWave.sourceLocation.y
-        );
-        
-        // Calculate bearing offset
-        double bearingOffset = normalizeAngle(actualBearing - targetingWave.firingBearing);
-        
-        // Calculate GuessFactor
-        if (targetingWave.maxEscapeAngle == 0) return;  // Avoid division by zero
-        
-        double guessFactor = bearingOffset / targetingWave.maxEscapeAngle;
-        
-        // Clamp to [-1, 1]
-        guessFactor = Math.max(-1.0, Math.min(1.0, guessFactor));
-        
-        // Convert to bin index
-        int bin = (int)((guessFactor + 1.0) / 2.0 * BIN_COUNT);
-        bin = bin & BIN_MASK;  // Fast modulo using bitwise AND
-        
-        // Update bin count
-        bins[bin]++;
-        
-        // Update max tracking
-        if (bins[bin] > maxValue) {
-            maxValue = bins[bin];
-            maxBin = bin;
-        }
+        if (!(wave instanceof GunWave)) return;
+        GunWave gunWave = (GunWave)wave;
+        double guessFactor = gunWave.getGuessFactor(actualPosition);
+        if (Double.isNaN(guessFactor)) return;
+
+        // binned and smoothed by the stats
+        stats.record(gunWave.getSegment(), guessFactor);
     }
-    
+
+    private static int getSegment(Situation s) {
+        return GuessFactorStats.getSegment(s.distance, s.lateralVelocity, s.acceleration, s.wallAhead);
+    }
+
     // Geometric prediction methods - not used by bin predictor
     @Override
     public Point2D.Double predict(int ticks) {
         // Bin predictor doesn't do geometric prediction
         return null;
     }
-    
+
     @Override
     public Point2D.Double getIntercept(double bulletVelocity, Point2D.Double firingPosition) {
         // Bin predictor doesn't do geometric intercept calculation
         return null;
     }
-    
-    // Helper methods
-    private double calculateMaxEscapeAngle(double distance, double bulletVelocity) {
-        // Maximum robot speed is 8 pixels/tick
-        double maxRobotVelocity = 8.0;
-        
-        // Time for bullet to reach enemy
-        double timeToImpact = distance / bulletVelocity;
-        
-        // Maximum distance enemy can travel perpendicular to bullet path
-        double maxEscapeDistance = maxRobotVelocity * timeToImpact;
-        
-        // Maximum escape angle (in radians)
-        return Math.atan2(maxEscapeDistance, distance);
-    }
-    
-    private double normalizeAngle(double angle) {
-        while (angle > Math.PI) angle -= 2 * Math.PI;
-        while (angle < -Math.PI) angle += 2 * Math.PI;
-        return angle;
-    }
-    
+
     // Debug/utility methods
-    public int[] getBins() {
-        return bins.clone();
+    public GuessFactorStats getStats() {
+        return stats;
     }
-    
+
     public int getTotalShots() {
-        int total = 0;
-        for (int count : bins) {
-            total += count;
-        }
-        return total;
+        return stats.getVisits(GuessFactorStats.GLOBAL_SEGMENT);
     }
 }
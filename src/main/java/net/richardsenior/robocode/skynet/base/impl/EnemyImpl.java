@@ -2,10 +2,11 @@ package net.richardsenior.robocode.skynet.base.impl;
 
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
+import net.richardsenior.robocode.skynet.base.EventWrapper;
 import net.richardsenior.robocode.skynet.base.Wave;
 import net.richardsenior.robocode.skynet.base.Predictor;
 import net.richardsenior.robocode.skynet.base.Battlefield;
@@ -27,9 +28,16 @@ public class EnemyImpl implements Enemy {
     private static final double OUTLINE_RADIUS = MAX_ROBOT_SPEED * FULL_ROTATION_TICKS + 18.0; // 64 + 18 = 82 pixels
     private static final double OUTLINE_DIAMETER = OUTLINE_RADIUS * 2;
     private static final double GUN_COOLING_RATE = 0.1; // per tick
+    private static final int SCAN_HISTORY_SIZE = 11; // scans retained
     
     private String id;
-    private Deque<EventWrapperImpl>scanHistory;
+    private ScanHistory scanHistory;
+    /** fed incrementally from the scan history, one per enemy */
+    private QuadraticPredictor predictor;
+    /** what has been learnt about this enemy, kept across rounds */
+    private EnemyMemory memory;
+    /** every tick of movement seen, for pattern matching, from the memory */
+    private PatternIndex patternIndex;
     private Point2D.Double position;
     private Point2D.Double polarPosition;
     private Battlefield battlefield;
@@ -39,12 +47,20 @@ public class EnemyImpl implements Enemy {
     private double lastBulletPower = 0;
     private long lastBulletFireTime = 0;
     private double wallHitDamage = 0;
+    /** incremented on every scan, anything derived from our position or predictor is stale when this changes */
+    private long revision = 0;
+    /** which way round us the enemy was last seen moving, 1 clockwise, -1 anticlockwise, 0 until it has moved */
+    private int lateralDirection = 0;
+    /** the scan on which it last took up that direction */
+    private long directionChangeTime = 0;
     
     @Override
     public Point2D.Double getPosition() {
         if (position == null) {throw new NullPointerException("Position not yet set for Enemy");}
         return this.position;
     }
+    /** true once we have a position for this enemy, that is getPosition() will not throw */
+    public boolean hasPosition() {return this.position != null;}
     @Override
     public Point2D.Double getPolarPosition() {
         if (this.polarPosition == null) {throw new NullPointerException("Polar Position not yet set for Enemy");}
@@ -53,23 +69,38 @@ public class EnemyImpl implements Enemy {
     @Override
     public String getId() {return this.id;}
     @Override
-    public Deque<EventWrapperImpl> getScanHistory() {return this.scanHistory;}
+    public Deque<EventWrapper> getScanHistory() {return this.scanHistory.asDeque();}
+    /** The scan history as primitive columns, for anything reading it every tick */
+    public ScanHistory getHistory() {return this.scanHistory;}
+    public PatternIndex getPatternIndex() {return this.patternIndex;}
+    public EnemyMemory getMemory() {return this.memory;}
     @Override
     public Battlefield getBattlefield() {return battlefield;}
     @Override
     public List<Wave> getWaves() {return waves;}
     @Override
     public Gun getGun() {return gun;}
+    public long getRevision() {return revision;}
+    /** ticks from the enemy last reversing its direction round us to the latest scan, stopping isn't a reversal */
+    public long getTimeSinceDirectionChange() {
+        return scanHistory.isEmpty() ? 0 : scanHistory.getLastTime() - directionChangeTime;
+    }
     @Override
     public Predictor getPredictor() {
         if (scanHistory.isEmpty()) return null;
-        return scanHistory.getLast().getPredictor();
+        return this.predictor;
     }
 
     /** Constructor */
     public EnemyImpl(String id, Battlefield battlefield) {  
         this.id = id;      
-        this.scanHistory = new LinkedList<EventWrapperImpl>();
+        this.scanHistory = new ScanHistory(id, SCAN_HISTORY_SIZE);
+        this.predictor = new QuadraticPredictor();
+        this.scanHistory.setPredictor(this.predictor);
+        this.memory = EnemyMemory.get(id);
+        this.patternIndex = memory.getPatterns();
+        this.patternIndex.limitTo(battlefield.getSelf().getOthers());
+        this.patternIndex.startRound();
         this.battlefield = battlefield;
         this.waves = new ArrayList<>();
         this.gun = new GuessGunImpl(battlefield, this);
@@ -78,76 +109,101 @@ public class EnemyImpl implements Enemy {
     @Override
     public Point2D.Double predictPosition(int ticks) {
         if (scanHistory.size() < 3) {return this.position;}
-        Point2D.Double predicted = ((java.util.LinkedList<EventWrapperImpl>)scanHistory).getLast().getPredictor().predict(ticks);
+        Point2D.Double predicted = this.predictor.predict(ticks);
         return predicted != null ? predicted : this.position;
     }
 
     @Override
     public long lastSeen() {
         if (this.scanHistory.isEmpty()) {return Long.MAX_VALUE;}
-        return this.battlefield.getSelf().getTime() - ((java.util.LinkedList<EventWrapperImpl>)this.scanHistory).getLast().getTime();
+        return this.battlefield.getSelf().getTime() - this.scanHistory.getLastTime();
     }
 
     @Override
     public void update() {
         // Update all waves and remove expired ones
-        Point2D.Double selfPos = new Point2D.Double(battlefield.getSelf().getX(), battlefield.getSelf().getY());
-        waves.removeIf(wave -> {
+        double selfX = battlefield.getSelf().getX();
+        double selfY = battlefield.getSelf().getY();
+        // backwards so that removal doesn't disturb the indices still to be visited
+        for (int i = waves.size() - 1; i >= 0; i--) {
+            Wave wave = waves.get(i);
             wave.update();
-            double distance = wave.getCentre().distance(selfPos);
-            return distance < wave.getRadius() + 18; // wave passed us (18 = robot radius)
-        });
+            double distance = wave.getCentre().distance(selfX, selfY);
+            if (distance < wave.getRadius() + 18) { // wave passed us (18 = robot radius)
+                waves.remove(i);
+                PerfCounters.increment(PerfCounters.WAVES_EXPIRED);
+            }
+        }
     }
 
     @Override
     public void update(robocode.Event event) {
-        if (event == null) {return;}
-        switch (event.getClass().getSimpleName()) {
-            case "ScannedRobotEvent":
-                ScannedRobotEvent sre = (ScannedRobotEvent) event;                
-                // sanity check
-                if (!this.getId().equals(sre.getName())) {
-                    throw new IllegalArgumentException("ScannedRobotEvent name does not match Enemy ID");
-                }
-                // wrap this event
-                EventWrapperImpl s = new EventWrapperImpl(sre);                                
-                // now recalculate position, velocity, heading etc. 
-                AdvancedRobot self = this.getBattlefield().getSelf();
-                double absoluteBearing = self.getHeadingRadians() + sre.getBearingRadians();
-                this.polarPosition = new Point2D.Double(sre.getDistance(), absoluteBearing);                
-                double enemyX = self.getX() + sre.getDistance() * Math.sin(absoluteBearing);
-                double enemyY = self.getY() + sre.getDistance() * Math.cos(absoluteBearing);
-                s.setPosition(new Point2D.Double(enemyX, enemyY));
-                updateSelf(s);
-                break;
-            default: return;
+        if (event instanceof ScannedRobotEvent) {update((ScannedRobotEvent)event);}
+    }
+
+    protected void update(ScannedRobotEvent sre) {
+        // sanity check
+        if (!this.getId().equals(sre.getName())) {
+            throw new IllegalArgumentException("ScannedRobotEvent name does not match Enemy ID");
         }
+        // now recalculate position, velocity, heading etc. 
+        AdvancedRobot self = this.getBattlefield().getSelf();
+        double absoluteBearing = self.getHeadingRadians() + sre.getBearingRadians();
+        if (this.polarPosition == null) {this.polarPosition = new Point2D.Double();}
+        this.polarPosition.setLocation(sre.getDistance(), absoluteBearing);
+        double enemyX = self.getX() + sre.getDistance() * Math.sin(absoluteBearing);
+        double enemyY = self.getY() + sre.getDistance() * Math.cos(absoluteBearing);
+        updateSelf(sre.getTime(), enemyX, enemyY, sre.getHeadingRadians(), sre.getVelocity(),
+            sre.getEnergy(), sre.getDistance(), sre.getBearingRadians());
     }
 
-    // may be overriden by extending classes that wish to provide a faux event
-    protected void updateSelf(EventWrapperImpl event) {
-        if (event.getPosition() == null) {throw new RuntimeException("this method expects event to contain a populated position");}
-        
+    /**
+     * Records a sighting, may be called by extending classes that wish to provide a faux scan
+     * @param heading radians
+     * @param bearing radians, relative to our heading
+     */
+    protected void updateSelf(long time, double x, double y, double heading, double velocity,
+                              double energy, double distance, double bearing) {
         // Don't estimate wall damage - it causes too many false negatives
         // Wall hits are rare compared to bullet fires
         wallHitDamage = 0;
         
-        // Update position first
-        this.position = new Point2D.Double(event.getPosition().x, event.getPosition().y);
-        // maintain only last N scans?
-        while (scanHistory.size() > 10) {scanHistory.poll();}
+        // Update position first, in place as it is read every tick (waves take their own copy)
+        if (this.position == null) {this.position = new Point2D.Double();}
+        this.position.setLocation(x, y);
         // Check for firing BEFORE adding new scan
-        doHasFired(event);
-        // append x and y to 
-        scanHistory.add(event);
+        doHasFired(energy);
+        updateLateralDirection(time, x, y, heading, velocity);
+        // the ring buffer drops the oldest scan once full
+        scanHistory.add(time, x, y, heading, velocity, energy, distance, bearing);
+        patternIndex.addScan(time, heading, velocity);
         this.updatePredictor();
+        this.revision++;
+    }
+
+    /** Notes the time whenever the enemy starts moving the other way round us, a stop doesn't count */
+    private void updateLateralDirection(long time, double x, double y, double heading, double velocity) {
+        AdvancedRobot self = this.getBattlefield().getSelf();
+        double lateral = velocity * Math.sin(heading - Math.atan2(x - self.getX(), y - self.getY()));
+        int direction = lateral > 0 ? 1 : lateral < 0 ? -1 : 0;
+        if (direction != 0 && direction != lateralDirection) {
+            lateralDirection = direction;
+            directionChangeTime = time;
+        }
     }
 
-    // May be overriden by extending classes to prevent recalculation of the predictor
+    /**
+     * Moves the predictor's window along with the scan history, O(1)
+     * May be overriden by extending classes to prevent recalculation of the predictor
+     */
     protected void updatePredictor() {        
-        Predictor p = new SimplePredictor(this.getScanHistory());
-        EventWrapperImpl event = this.getScanHistory().getLast();
-        event.setPredictor(p);
+        PerfCounters.increment(PerfCounters.PREDICTOR_REBUILDS);
+        long start = System.nanoTime();
+        ScanHistory h = this.scanHistory;
+        if (h.hasEvicted()) {this.predictor.remove(h.getEvictedTime(), h.getEvictedX(), h.getEvictedY());}
+        int last = h.size() - 1;
+        this.predictor.add(h.getTime(last), h.getX(last), h.getY(last));
+        PerfCounters.record(PerfCounters.LATENCY_PREDICTOR_UPDATE, System.nanoTime() - start);
     }
     
     /**
@@ -167,42 +223,34 @@ public class EnemyImpl implements Enemy {
 
     /**
      * If this enemy has fired then create a wave and add it to this enemy's wave collection
-     * @param s
+     * @param currentEnergy the energy in the scan about to be added
      */
-    protected void doHasFired(EventWrapperImpl newScan) {
+    protected void doHasFired(double currentEnergy) {
         long currentTime = this.getBattlefield().getSelf().getTime();
-        double currentEnergy = newScan.getEnergy();
         
         // Calculate energy drop accounting for wall damage
         double energyDrop = energy - currentEnergy - wallHitDamage;
         
-        // Debug output
-        if (energyDrop > 0.05) {
-            System.out.println("Enemy " + id + " energy drop: " + energyDrop + 
-                " (prev=" + energy + ", curr=" + currentEnergy + ", wall=" + wallHitDamage + ")");
-        }
-        
         // Check if energy drop indicates a bullet was fired
         // Use wider bounds for floating point precision
         if (energyDrop > 0.0999 && energyDrop < 3.0001) {
             // Check if gun heat allows firing
             double gunHeat = getGunHeat(currentTime);
-            System.out.println("Enemy " + id + " potential fire detected! Gun heat: " + gunHeat);
             
             if (gunHeat < 0.0001) {
                 double bulletPower = energyDrop;
                 double velocity = 20.0 - (3.0 * bulletPower);
                 
                 // Calculate scan staleness (ticks since last scan)
-                long lastScanTime = scanHistory.isEmpty() ? currentTime : scanHistory.getLast().getTime();
+                long lastScanTime = scanHistory.isEmpty() ? currentTime : scanHistory.getLastTime();
                 int staleness = (int)(currentTime - lastScanTime);
                 
-                System.out.println("Creating wave for " + id + " with power " + bulletPower + 
-                    ", velocity " + velocity + ", staleness " + staleness);
-                
+                long waveStart = System.nanoTime();
                 Wave wave = new WaveImpl(this, velocity, staleness);
+                PerfCounters.record(PerfCounters.LATENCY_WAVE_CONSTRUCTION, System.nanoTime() - waveStart);
                 this.waves.add(wave);
                 wave.update();
+                PerfCounters.increment(PerfCounters.WAVES_CREATED);
                 
                 // Update gun heat tracking
                 lastBulletPower = bulletPower;
@@ -224,7 +272,8 @@ public class EnemyImpl implements Enemy {
         Point2D.Double pos = this.position;
         if (pos == null) {return new Area();}
         if (ticks != 0) {pos = this.predictPosition(ticks);}
-        
+        PerfCounters.increment(PerfCounters.OUTLINE_CALLS);
+        PerfCounters.increment(PerfCounters.AREA_CONSTRUCTIONS);
         Area a = new Area(new java.awt.geom.Ellipse2D.Double(
             pos.x - OUTLINE_RADIUS, 
             pos.y - OUTLINE_RADIUS, 
@@ -234,6 +283,29 @@ public class EnemyImpl implements Enemy {
         return a;
     }
 
+    /** Analytic equivalent of getOutline(ticks).contains(x, y), a circle around the (predicted) position */
+    @Override
+    public boolean contains(double x, double y, int ticks) {
+        Point2D.Double pos = this.position;
+        if (pos == null) {return false;}
+        if (ticks != 0) {pos = this.predictPosition(ticks);}
+        double dx = x - pos.x;
+        double dy = y - pos.y;
+        return dx * dx + dy * dy <= OUTLINE_RADIUS * OUTLINE_RADIUS;
+    }
+
+    @Override
+    public Rectangle2D.Double getBounds(int ticks, Rectangle2D.Double bounds) {
+        Point2D.Double pos = this.position;
+        if (pos == null) {
+            bounds.setRect(0, 0, 0, 0);
+            return bounds;
+        }
+        if (ticks != 0) {pos = this.predictPosition(ticks);}
+        bounds.setRect(pos.x - OUTLINE_RADIUS, pos.y - OUTLINE_RADIUS, OUTLINE_DIAMETER, OUTLINE_DIAMETER);
+        return bounds;
+    }
+
     /**
      * Draws the outline of this obstacle for debugging purposes
      * We recalculate this on every capp to drawOutline because this method is only going
@@ -243,7 +315,7 @@ public class EnemyImpl implements Enemy {
      */
     public void drawOutline(java.awt.Graphics2D g) {
         // Draw current position circle
-        Area outline = this.getOutline(0);
+        Area outline = this.battlefield.getOutline(this, 0);
         if (outline != null) {
             g.setColor(java.awt.Color.RED);
             g.draw(outline);
@@ -0,0 +1,45 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * Everything learnt about one enemy: the guess factor guns' bin stats, k-d tree and neural network,
+ * how often each virtual gun has hit it, the pattern index of its movement and where its bullets have hit us.
+ * Robocode creates a new robot, and with it new enemies, guns and surfer, every round, so what they learn
+ * is kept here instead, statically by enemy name (see get), and carries on over the whole battle.
+ * The guns and surfer are given the enemy's memory each round and read and write it in place.
+ */
+public class EnemyMemory {
+    private static final java.util.Map<String, EnemyMemory> MEMORIES = new java.util.HashMap<>();
+
+    /** the named enemy's memory, carried over from earlier rounds if there were any */
+    public static EnemyMemory get(String name) {
+        return MEMORIES.computeIfAbsent(name, n -> new EnemyMemory());
+    }
+
+    private final GuessFactorStats binStats = new GuessFactorStats();
+    private final KdTree knnTree = KnnPredictor.createTree();
+    private final NeuralNet net = new NeuralNet();
+    private final java.util.Map<String, VirtualGuns.Score> gunScores = new java.util.HashMap<>();
+    private final PatternIndex patterns = new PatternIndex();
+    private final GuessFactorStats surfStats = new GuessFactorStats();
+
+    private EnemyMemory() {
+        // until a bullet has hit us, dodge as though it was aimed head on
+        surfStats.record(GuessFactorStats.GLOBAL_SEGMENT, 0);
+    }
+
+    /** BinPredictor's, where our bullets would have hit the enemy by situation */
+    public GuessFactorStats getBinStats() {return binStats;}
+    /** KnnPredictor's, the situations we have fired in and where the enemy went */
+    public KdTree getKnnTree() {return knnTree;}
+    /** NeuralPredictor's */
+    public NeuralNet getNet() {return net;}
+    /** the enemy's movement every tick it has been seen */
+    public PatternIndex getPatterns() {return patterns;}
+    /** where the enemy's bullets have hit us, for WaveSurfer */
+    public GuessFactorStats getSurfStats() {return surfStats;}
+
+    /** the named virtual gun's hit rate against the enemy */
+    VirtualGuns.Score getGunScore(String gun) {
+        return gunScores.computeIfAbsent(gun, g -> new VirtualGuns.Score());
+    }
+}
@@ -0,0 +1,148 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Precise maximum escape angles, cached so that asking for one is a table read.
+ * The naive bound atan(8 / bulletSpeed) assumes the target can run sideways at full speed forever,
+ * which it can't when there is a wall in the way, so near walls it is far too wide.
+ * Here the escape is simulated with PhysicsSimulator instead: the target starts at full speed
+ * perpendicular to the line of fire and orbits the firer, wall smoothing away from any wall in its way,
+ * until the wave passes it. The widest bearing reached is the escape angle in that direction.
+ *
+ * The simulation is done in a canonical frame, the firer due south of the target and a single wall
+ * across the target's path 'clearance' pixels away. So an entry only depends on the distance,
+ * the bullet power and how much room there is in the direction of escape, and those are quantized
+ * into the table's keys. Orbiting is symmetric, so one table answers both directions and callers just
+ * look up the clockwise and anticlockwise clearances separately (see getClockwise and getAnticlockwise).
+ * Entries are simulated the first time they are asked for, at most a couple of hundred steps each.
+ */
+public class EscapeAngleTable {
+    private static final double DISTANCE_STEP = 40; // pixels
+    private static final int DISTANCE_BUCKETS = 41; // up to 1600 pixels
+    private static final double POWER_STEP = 0.1;
+    private static final int POWER_BUCKETS = 31; // 0.0 to 3.0
+    /**
+     * clearance is keyed as a fraction of the distance, as how far sideways the target can get scales with it.
+     * It can't get more than about 0.75 of the distance sideways, so the last bucket is open field
+     */
+    private static final double CLEARANCE_STEP = 0.05;
+    private static final int CLEARANCE_BUCKETS = 21;
+    /** how far ahead wall smoothing looks, and how finely it turns away from a wall */
+    private static final double WALL_STICK = 120;
+    private static final double SMOOTHING_STEP = 0.05; // radians
+    /** where the target starts in the canonical frame, well clear of every wall except the one ahead */
+    private static final double CANONICAL_X = 200;
+    private static final double CANONICAL_Y = 200;
+
+    private final double width;
+    private final double height;
+    /** escape angle in radians by [distance][power][clearance], NaN until simulated */
+    private final float[] table;
+    private final RobotState state = new RobotState();
+
+    /**
+     * @param width battlefield width
+     * @param height battlefield height
+     */
+    public EscapeAngleTable(double width, double height) {
+        this.width = width;
+        this.height = height;
+        this.table = new float[DISTANCE_BUCKETS * POWER_BUCKETS * CLEARANCE_BUCKETS];
+        java.util.Arrays.fill(this.table, Float.NaN);
+    }
+
+    /**
+     * The widest bearing offset the target could reach before the wave passes it
+     * @param distance from the firer to the target
+     * @param bulletPower power of the bullet fired
+     * @param clearance room the target has in the direction of escape, see getClearance
+     * @return radians, never negative
+     */
+    public double getMaxEscapeAngle(double distance, double bulletPower, double clearance) {
+        int d = clamp((int)Math.round(distance / DISTANCE_STEP), 1, DISTANCE_BUCKETS - 1);
+        int p = clamp((int)Math.round(bulletPower / POWER_STEP), 1, POWER_BUCKETS - 1);
+        int c = clamp((int)Math.round(clearance / (d * DISTANCE_STEP) / CLEARANCE_STEP), 0, CLEARANCE_BUCKETS - 1);
+        int index = (d * POWER_BUCKETS + p) * CLEARANCE_BUCKETS + c;
+        float angle = table[index];
+        if (Float.isNaN(angle)) {
+            angle = (float)simulate(d * DISTANCE_STEP, p * POWER_STEP, c == CLEARANCE_BUCKETS - 1 ? Double.POSITIVE_INFINITY : c * CLEARANCE_STEP * d * DISTANCE_STEP);
+            table[index] = angle;
+        }
+        return angle;
+    }
+
+    /** Escape angle for a target moving clockwise around the firer (bearing from the firer increasing) */
+    public double getClockwise(Point2D firer, Point2D target, double bulletSpeed) {
+        return getEscape(firer, target, bulletSpeed, 1);
+    }
+
+    /** Escape angle for a target moving anticlockwise around the firer (bearing from the firer decreasing) */
+    public double getAnticlockwise(Point2D firer, Point2D target, double bulletSpeed) {
+        return getEscape(firer, target, bulletSpeed, -1);
+    }
+
+    private double getEscape(Point2D firer, Point2D target, double bulletSpeed, int direction) {
+        double bearing = Math.atan2(target.getX() - firer.getX(), target.getY() - firer.getY());
+        double clearance = getClearance(target.getX(), target.getY(), bearing + direction * Math.PI / 2);
+        return getMaxEscapeAngle(firer.distance(target), getBulletPower(bulletSpeed), clearance);
+    }
+
+    /**
+     * How far a robot centred at x,y can travel along the heading before touching a wall
+     * @param heading radians, robocode convention
+     */
+    public double getClearance(double x, double y, double heading) {
+        double sin = Math.sin(heading);
+        double cos = Math.cos(heading);
+        double minX = PhysicsSimulator.ROBOT_HALF_SIZE, maxX = width - PhysicsSimulator.ROBOT_HALF_SIZE;
+        double minY = PhysicsSimulator.ROBOT_HALF_SIZE, maxY = height - PhysicsSimulator.ROBOT_HALF_SIZE;
+        double clearance = Double.POSITIVE_INFINITY;
+        if (sin > 1e-9) {clearance = Math.min(clearance, (maxX - x) / sin);}
+        if (sin < -1e-9) {clearance = Math.min(clearance, (minX - x) / sin);}
+        if (cos > 1e-9) {clearance = Math.min(clearance, (maxY - y) / cos);}
+        if (cos < -1e-9) {clearance = Math.min(clearance, (minY - y) / cos);}
+        return Math.max(0, clearance);
+    }
+
+    /** inverse of Rules.getBulletSpeed */
+    public static double getBulletPower(double bulletSpeed) {
+        return (20 - bulletSpeed) / 3;
+    }
+
+    /**
+     * Simulates the escape in the canonical frame.
+     * The target starts at (CANONICAL_X, CANONICAL_Y + distance) heading east at full speed, the firer at
+     * (CANONICAL_X, CANONICAL_Y), so escaping is clockwise and the wall is the east edge of the field.
+     */
+    private double simulate(double distance, double bulletPower, double clearance) {
+        double bulletSpeed = robocode.Rules.getBulletSpeed(bulletPower);
+        double fx = CANONICAL_X, fy = CANONICAL_Y;
+        // allocated only when an entry is first filled
+        double fieldWidth = clearance == Double.POSITIVE_INFINITY ? 1e9 : CANONICAL_X + clearance + PhysicsSimulator.ROBOT_HALF_SIZE;
+        double fieldHeight = fy + distance + 2 * WALL_STICK;
+        PhysicsSimulator simulator = new PhysicsSimulator(fieldWidth, fieldHeight);
+        state.set(fx, fy + distance, Math.PI / 2, robocode.Rules.MAX_VELOCITY, 0);
+        double widest = 0;
+        // the wave can't take longer than this to reach the target while it orbits
+        int maxTicks = (int)Math.ceil(distance / bulletSpeed) + 1;
+        for (int tick = 1; tick <= maxTicks; tick++) {
+            double bearing = Math.atan2(state.x - fx, state.y - fy);
+            double heading = bearing + Math.PI / 2;
+            // turn towards the firer until the stick ahead stays on the field
+            for (double turned = 0; turned < Math.PI / 2; turned += SMOOTHING_STEP) {
+                if (simulator.inField(state.x + WALL_STICK * Math.sin(heading), state.y + WALL_STICK * Math.cos(heading))) {break;}
+                heading += SMOOTHING_STEP;
+            }
+            simulator.stepTowards(state, heading, 1);
+            widest = Math.max(widest, Math.atan2(state.x - fx, state.y - fy));
+            double reach = bulletSpeed * tick;
+            if (reach * reach >= state.distanceSq(fx, fy)) {break;}
+        }
+        return widest;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,91 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import robocode.Event;
+
+/**
+ * Typed replacement for switching on event.getClass().getSimpleName()
+ * Subsystems subscribe a handler to an event class, and events are either dispatched immediately
+ * or put on a preallocated per tick queue which is drained in one batch at the start of BattlefieldImpl.update()
+ * Handlers are looked up by the event's class in an identity keyed map, subclasses of a subscribed
+ * class are resolved once and then cached. Neither enqueueing nor dispatching allocates.
+ */
+public class EventDispatcher {
+    /** Something interested in events of type T */
+    public interface Handler<T extends Event> {
+        public void handle(T event);
+    }
+
+    private static final Handler<?>[] NONE = new Handler<?>[0];
+    private static final int INITIAL_QUEUE_SIZE = 64;
+
+    /** handlers by the class they were subscribed to */
+    private Map<Class<?>, Handler<?>[]> subscriptions;
+    /** handlers by concrete event class, including those subscribed to superclasses */
+    private Map<Class<?>, Handler<?>[]> resolved;
+    private Event[] queue;
+    private int queued = 0;
+
+    public EventDispatcher() {
+        this.subscriptions = new HashMap<>();
+        this.resolved = new HashMap<>();
+        this.queue = new Event[INITIAL_QUEUE_SIZE];
+    }
+
+    /**
+     * Registers a handler for the given event class (and any subclass of it)
+     * Handlers are called in the order they were subscribed
+     */
+    public <T extends Event> void subscribe(Class<T> type, Handler<? super T> handler) {
+        Handler<?>[] existing = subscriptions.getOrDefault(type, NONE);
+        Handler<?>[] updated = java.util.Arrays.copyOf(existing, existing.length + 1);
+        updated[existing.length] = handler;
+        subscriptions.put(type, updated);
+        resolved.clear();
+    }
+
+    /** Queues the event until the next drain() */
+    public void enqueue(Event event) {
+        if (queued == queue.length) {queue = java.util.Arrays.copyOf(queue, queue.length * 2);}
+        queue[queued++] = event;
+    }
+
+    /** Dispatches all queued events in the order they arrived */
+    public void drain() {
+        // handlers may enqueue more events, which are also dispatched
+        for (int i = 0; i < queued; i++) {
+            Event e = queue[i];
+            queue[i] = null;
+            dispatch(e);
+        }
+        queued = 0;
+    }
+
+    /** Dispatches the event to its handlers immediately */
+    @SuppressWarnings("unchecked")
+    public void dispatch(Event event) {
+        if (event == null) {return;}
+        PerfCounters.countEvent(event);
+        Handler<?>[] handlers = resolved.get(event.getClass());
+        if (handlers == null) {
+            handlers = resolve(event.getClass());
+            resolved.put(event.getClass(), handlers);
+        }
+        for (int i = 0; i < handlers.length; i++) {
+            ((Handler<Event>)handlers[i]).handle(event);
+        }
+    }
+
+    /** collects the handlers of the class and all its superclasses, most general first */
+    private Handler<?>[] resolve(Class<?> type) {
+        if (type == null || type == Object.class) {return NONE;}
+        Handler<?>[] inherited = resolve(type.getSuperclass());
+        Handler<?>[] own = subscriptions.getOrDefault(type, NONE);
+        if (own.length == 0) {return inherited;}
+        if (inherited.length == 0) {return own;}
+        Handler<?>[] all = java.util.Arrays.copyOf(inherited, inherited.length + own.length);
+        System.arraycopy(own, 0, all, inherited.length, own.length);
+        return all;
+    }
+}
@@ -0,0 +1,149 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * Segmented guess factor histograms for one enemy, all held in a single flat float[].
+ * A segment is one combination of distance, lateral velocity, acceleration and wall clearance buckets
+ * and its index is computed arithmetically from them (see getSegment). Each segment is a run of
+ * STRIDE floats, the first holding how many results it has seen and the rest the bins, so the whole
+ * table is a few KB and a lookup touches one cache friendly run of it.
+ * The last segment is unsegmented and gets every result, it is blended in while a segment is still
+ * learning so that a fresh segment aims no worse than a plain histogram would.
+ *
+ * Results are smoothed with a kernel precomputed for every possible distance between bins, and each
+ * segment is a rolling average over its last ROLLING_DEPTH results so old behaviour decays away.
+ * Guess factors run from -1 to 1, positive being in the direction the enemy was moving when we fired.
+ */
+public class GuessFactorStats {
+    /** odd, so that the middle bin is guess factor zero */
+    public static final int BIN_COUNT = 31;
+    private static final int STRIDE = BIN_COUNT + 1;
+    private static final int MIDDLE_BIN = BIN_COUNT / 2;
+
+    private static final double[] DISTANCE_LIMITS = {300, 600}; // pixels
+    private static final double[] LATERAL_VELOCITY_LIMITS = {2, 6}; // pixels per tick, absolute
+    private static final double[] ACCELERATION_LIMITS = {-0.5, 0.5}; // change in speed per tick
+    private static final double[] WALL_LIMITS = {100, 250}; // pixels of room in the direction of travel
+    private static final int DISTANCE_SEGMENTS = DISTANCE_LIMITS.length + 1;
+    private static final int LATERAL_VELOCITY_SEGMENTS = LATERAL_VELOCITY_LIMITS.length + 1;
+    private static final int ACCELERATION_SEGMENTS = ACCELERATION_LIMITS.length + 1;
+    private static final int WALL_SEGMENTS = WALL_LIMITS.length + 1;
+    public static final int SEGMENT_COUNT = DISTANCE_SEGMENTS * LATERAL_VELOCITY_SEGMENTS * ACCELERATION_SEGMENTS * WALL_SEGMENTS;
+    /** the unsegmented histogram */
+    public static final int GLOBAL_SEGMENT = SEGMENT_COUNT;
+
+    private static final int ROLLING_DEPTH = 20; // results
+    /** a segment is trusted over the global histogram once it has seen about this many results */
+    private static final double SEGMENT_PRIOR = 3;
+    /** width of the smoothing kernel in bins */
+    private static final double KERNEL_WIDTH = 1.5;
+    /** weight for a hit 'd' bins away is KERNEL[d + BIN_COUNT - 1] */
+    private static final float[] KERNEL = new float[2 * BIN_COUNT - 1];
+    static {
+        for (int d = -(BIN_COUNT - 1); d < BIN_COUNT; d++) {
+            double x = d / KERNEL_WIDTH;
+            KERNEL[d + BIN_COUNT - 1] = (float)(1.0 / (1.0 + x * x));
+        }
+    }
+
+    private final float[] buffer = new float[(SEGMENT_COUNT + 1) * STRIDE];
+
+    /**
+     * @param distance from the firer to the enemy
+     * @param lateralVelocity enemy velocity perpendicular to the line of fire, either sign
+     * @param acceleration change in the enemy's speed since the previous scan
+     * @param wallClearance room the enemy has in its direction of travel
+     * @return the segment these fall in
+     */
+    public static int getSegment(double distance, double lateralVelocity, double acceleration, double wallClearance) {
+        int d = bucket(distance, DISTANCE_LIMITS);
+        int v = bucket(Math.abs(lateralVelocity), LATERAL_VELOCITY_LIMITS);
+        int a = bucket(acceleration, ACCELERATION_LIMITS);
+        int w = bucket(wallClearance, WALL_LIMITS);
+        return ((d * LATERAL_VELOCITY_SEGMENTS + v) * ACCELERATION_SEGMENTS + a) * WALL_SEGMENTS + w;
+    }
+
+    private static int bucket(double value, double[] limits) {
+        int i = 0;
+        while (i < limits.length && value >= limits[i]) {i++;}
+        return i;
+    }
+
+    public static int getBin(double guessFactor) {
+        double clamped = Math.max(-1, Math.min(1, guessFactor));
+        return (int)Math.round((clamped + 1) * MIDDLE_BIN);
+    }
+
+    public static double getGuessFactor(int bin) {
+        return (bin - MIDDLE_BIN) / (double)MIDDLE_BIN;
+    }
+
+    /** Adds a result to the segment and the global histogram */
+    public void record(int segment, double guessFactor) {
+        int bin = getBin(guessFactor);
+        update(segment * STRIDE, bin);
+        if (segment != GLOBAL_SEGMENT) {update(GLOBAL_SEGMENT * STRIDE, bin);}
+    }
+
+    private void update(int base, int bin) {
+        float visits = buffer[base];
+        float depth = Math.min(visits, ROLLING_DEPTH);
+        int kernelOffset = BIN_COUNT - 1 - bin;
+        for (int i = 0; i < BIN_COUNT; i++) {
+            int slot = base + 1 + i;
+            buffer[slot] = (buffer[slot] * depth + KERNEL[i + kernelOffset]) / (depth + 1);
+        }
+        buffer[base] = visits + 1;
+    }
+
+    /**
+     * The most likely guess factor for the segment, the bins of the segment and the global histogram
+     * weighted by how much the segment has seen
+     */
+    public double getBestGuessFactor(int segment) {
+        int base = segment * STRIDE;
+        int global = GLOBAL_SEGMENT * STRIDE;
+        float visits = buffer[base];
+        float segmentWeight = (float)(visits / (visits + SEGMENT_PRIOR));
+        float globalWeight = segment == GLOBAL_SEGMENT ? 0 : 1 - segmentWeight;
+        int best = MIDDLE_BIN;
+        float bestScore = 0;
+        for (int i = 1; i <= BIN_COUNT; i++) {
+            float score = buffer[base + i] * segmentWeight + buffer[global + i] * globalWeight;
+            if (score > bestScore) {
+                bestScore = score;
+                best = i - 1;
+            }
+        }
+        return getGuessFactor(best);
+    }
+
+    /**
+     * Copies the bins getBestGuessFactor chooses from into 'bins', which must hold BIN_COUNT:
+     * the segment's blended with the global histogram by how much the segment has seen
+     */
+    public float[] getBlendedBins(int segment, float[] bins) {
+        int base = segment * STRIDE;
+        int global = GLOBAL_SEGMENT * STRIDE;
+        float visits = buffer[base];
+        float segmentWeight = (float)(visits / (visits + SEGMENT_PRIOR));
+        float globalWeight = segment == GLOBAL_SEGMENT ? 0 : 1 - segmentWeight;
+        for (int i = 0; i < BIN_COUNT; i++) {
+            bins[i] = buffer[base + 1 + i] * segmentWeight + buffer[global + 1 + i] * globalWeight;
+        }
+        return bins;
+    }
+
+    /** how many results the segment has seen */
+    public int getVisits(int segment) {return (int)buffer[segment * STRIDE];}
+
+    /** copies a segment's bins into 'bins', which must hold BIN_COUNT */
+    public float[] getBins(int segment, float[] bins) {
+        System.arraycopy(buffer, segment * STRIDE + 1, bins, 0, BIN_COUNT);
+        return bins;
+    }
+
+    /** Forgets everything */
+    public void clear() {
+        java.util.Arrays.fill(buffer, 0);
+    }
+}
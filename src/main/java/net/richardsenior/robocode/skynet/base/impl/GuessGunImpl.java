@@ -6,23 +6,117 @@ import robocode.util.Utils;
 import net.richardsenior.robocode.skynet.base.Battlefield;
 import net.richardsenior.robocode.skynet.base.Enemy;
 import net.richardsenior.robocode.skynet.base.Gun;
+import net.richardsenior.robocode.skynet.base.TargetingPredictor;
+import net.richardsenior.robocode.skynet.base.Wave;
 
 /**
  * Statistical targeting gun using bin-based GuessFactor prediction.
  * Learns enemy movement patterns and adapts aim accordingly.
  * Each gun instance is dedicated to targeting one specific enemy.
+ * The base aim is the quadratic predictor's intercept, and the offset from it comes from whichever
+ * of several virtual guns has been hitting most: the segmented bins, k nearest neighbours,
+ * the neural network, the pattern matcher, linear intercept, the quadratic intercept itself and head on.
+ * The guess factor guns (bins, knn and neural) learn guess factors measured from the bearing to where the
+ * target was when we fired, not from any intercept, so they are asked about the target where it is now
+ * and their offset from that bearing is turned into one from the base aim (see fromTarget).
+ * Every shot teaches all of them. The neural network trains a few gradient steps each tick.
  */
 public class GuessGunImpl implements Gun {
     private static final double FIRE_POWER = 1.5;
     private Battlefield battlefield;
     private Enemy targetEnemy;
     private BinPredictor binPredictor;
+    private KnnPredictor knnPredictor;
+    private NeuralPredictor neuralPredictor;
+    /** null if the target isn't an EnemyImpl */
+    private PatternPredictor patternPredictor;
+    /** what our gun waves report to, aims with the best gun and passes each shot and result on to all */
+    private final VirtualGuns guns;
+    /** straight at where the target is now */
+    private final TargetingPredictor headOn = new TargetingPredictor() {
+        @Override
+        public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                           double bulletVelocity, double directBearing) {
+            Point2D.Double position = targetEnemy.getPosition();
+            double bearing = Math.atan2(position.x - ourPosition.x, position.y - ourPosition.y);
+            return Utils.normalRelativeAngle(bearing - directBearing);
+        }
+        @Override
+        public void recordShot(Wave wave) {}
+        @Override
+        public void recordResult(Wave wave, Point2D.Double actualPosition) {}
+    };
+    /** at where the target would be if it kept its current velocity */
+    private final TargetingPredictor linear = new TargetingPredictor() {
+        @Override
+        public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                           double bulletVelocity, double directBearing) {
+            if (!(targetEnemy.getPredictor() instanceof SimplePredictor)) {return Double.NaN;}
+            Point2D.Double intercept = ((SimplePredictor)targetEnemy.getPredictor()).getLinearIntercept(bulletVelocity, ourPosition);
+            if (intercept == null) {return Double.NaN;}
+            double bearing = Math.atan2(intercept.x - ourPosition.x, intercept.y - ourPosition.y);
+            return Utils.normalRelativeAngle(bearing - directBearing);
+        }
+        @Override
+        public void recordShot(Wave wave) {}
+        @Override
+        public void recordResult(Wave wave, Point2D.Double actualPosition) {}
+    };
+    /** the base aim, no offset */
+    private final TargetingPredictor quadratic = new TargetingPredictor() {
+        @Override
+        public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                           double bulletVelocity, double directBearing) {
+            return 0;
+        }
+        @Override
+        public void recordShot(Wave wave) {}
+        @Override
+        public void recordResult(Wave wave, Point2D.Double actualPosition) {}
+    };
+    /**
+     * A guess factor gun asked about the target's current position, the frame its guess factors were learnt in,
+     * with the offset it gives from the bearing to the target turned into one from directBearing
+     */
+    private TargetingPredictor fromTarget(final TargetingPredictor gun) {
+        return new TargetingPredictor() {
+            @Override
+            public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                               double bulletVelocity, double directBearing) {
+                Point2D.Double position = targetEnemy.getPosition();
+                double bearing = Math.atan2(position.x - ourPosition.x, position.y - ourPosition.y);
+                double offset = gun.predictBearingOffset(ourPosition, position, bulletVelocity, bearing);
+                if (Double.isNaN(offset)) {return Double.NaN;}
+                return Utils.normalRelativeAngle(bearing + offset - directBearing);
+            }
+            @Override
+            public void recordShot(Wave wave) {gun.recordShot(wave);}
+            @Override
+            public void recordResult(Wave wave, Point2D.Double actualPosition) {gun.recordResult(wave, actualPosition);}
+        };
+    }
     private Point2D.Double aimPoint;
+    /** reused every tick */
+    private Point2D.Double myPos = new Point2D.Double();
+    private Point2D.Double aimScratch = new Point2D.Double();
 
     public GuessGunImpl(Battlefield battlefield, Enemy targetEnemy) {
         this.battlefield = battlefield;
         this.targetEnemy = targetEnemy;
-        this.binPredictor = new BinPredictor();
+        EscapeAngleTable escapeAngles = battlefield instanceof BattlefieldImpl ? ((BattlefieldImpl)battlefield).getEscapeAngles() : null;
+        EnemyImpl enemy = targetEnemy instanceof EnemyImpl ? (EnemyImpl)targetEnemy : null;
+        // what they learn goes in the target's memory, so they carry on from earlier rounds
+        EnemyMemory memory = EnemyMemory.get(targetEnemy.getId());
+        this.binPredictor = new BinPredictor(escapeAngles, enemy, memory.getBinStats());
+        this.knnPredictor = new KnnPredictor(escapeAngles, enemy, memory.getKnnTree());
+        this.neuralPredictor = new NeuralPredictor(escapeAngles, enemy, memory.getNet());
+        if (enemy != null) {this.patternPredictor = new PatternPredictor(battlefield, enemy, enemy.getPatternIndex());}
+        // in order of preference until there are hit rates to go on
+        this.guns = new VirtualGuns(memory);
+        guns.add("bins", fromTarget(binPredictor)).add("knn", fromTarget(knnPredictor))
+            .add("neural", fromTarget(neuralPredictor));
+        if (patternPredictor != null) {guns.add("pattern", patternPredictor);}
+        guns.add("quadratic", quadratic).add("linear", linear).add("head_on", headOn);
         
         // Make gun and radar independent of robot body
         battlefield.getSelf().setAdjustGunForRobotTurn(true);
@@ -31,6 +125,11 @@ public class GuessGunImpl implements Gun {
 
     @Override
     public void update() {
+        // learn from resolved shots whether or not there is anything to aim at
+        long trainStart = System.nanoTime();
+        neuralPredictor.getNet().train();
+        PerfCounters.record(PerfCounters.LATENCY_NEURAL_TRAIN, System.nanoTime() - trainStart);
+
         if (targetEnemy.getScanHistory().isEmpty()) {
             aimPoint = null;
             return;
@@ -38,10 +137,7 @@ public class GuessGunImpl implements Gun {
         
         double bulletVelocity = 20.0 - (3.0 * FIRE_POWER);
         
-        Point2D.Double myPos = new Point2D.Double(
-            battlefield.getSelf().getX(),
-            battlefield.getSelf().getY()
-        );
+        myPos.setLocation(battlefield.getSelf().getX(), battlefield.getSelf().getY());
         
         // Get predicted intercept point instead of current position
         Point2D.Double interceptPoint = targetEnemy.getPredictor().getIntercept(bulletVelocity, myPos);
@@ -55,18 +151,19 @@ public class GuessGunImpl implements Gun {
             interceptPoint.y - myPos.y
         );
         
-        // Get bearing offset from bin predictor
-        double bearingOffset = binPredictor.predictBearingOffset(
+        // Get bearing offset from whichever virtual gun is aiming
+        double bearingOffset = guns.predictBearingOffset(
             myPos, interceptPoint, bulletVelocity, directBearing);
         
         double aimBearing = directBearing + bearingOffset;
         
         // Calculate aim point (for visualization)
         double distance = myPos.distance(interceptPoint);
-        aimPoint = new Point2D.Double(
+        aimScratch.setLocation(
             myPos.x + Math.sin(aimBearing) * distance,
             myPos.y + Math.cos(aimBearing) * distance
         );
+        aimPoint = aimScratch;
         
         // Turn gun to aim bearing
         double gunHeading = battlefield.getSelf().getGunHeadingRadians();
@@ -79,6 +176,22 @@ public class GuessGunImpl implements Gun {
         return binPredictor;
     }
 
+    public KnnPredictor getKnnPredictor() {
+        return knnPredictor;
+    }
+
+    public NeuralPredictor getNeuralPredictor() {
+        return neuralPredictor;
+    }
+
+    public PatternPredictor getPatternPredictor() {
+        return patternPredictor;
+    }
+
+    public VirtualGuns getVirtualGuns() {
+        return guns;
+    }
+
     @Override
     public void fire() {
         if (aimPoint == null) return;
@@ -87,7 +200,13 @@ public class GuessGunImpl implements Gun {
         double turnRemaining = Math.abs(battlefield.getSelf().getGunTurnRemainingRadians());
         
         if (turnRemaining < 0.05) {
-            battlefield.getSelf().setFire(FIRE_POWER);
+            robocode.Bullet bullet = battlefield.getSelf().setFireBullet(FIRE_POWER);
+            // follow the bullet so the guns can learn where the target went, and be scored
+            if (bullet != null && battlefield instanceof BattlefieldImpl) {
+                ((BattlefieldImpl)battlefield).getGunWaves().fire(
+                    battlefield.getSelf().getX(), battlefield.getSelf().getY(), battlefield.getSelf().getTime(),
+                    robocode.Rules.getBulletSpeed(FIRE_POWER), targetEnemy, guns);
+            }
         }
     }
 
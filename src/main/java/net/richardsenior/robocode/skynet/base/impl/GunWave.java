@@ -0,0 +1,139 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import net.richardsenior.robocode.skynet.base.Battlefield;
+import net.richardsenior.robocode.skynet.base.Enemy;
+import net.richardsenior.robocode.skynet.base.TargetingPredictor;
+import net.richardsenior.robocode.skynet.base.Wave;
+
+/**
+ * A wave for a bullet we fired, tracked by GunWaveTracker until it reaches its target
+ * so that the gun's predictor can learn where the target actually went.
+ * Unlike the enemy waves this is not something to avoid so it has no outline,
+ * and getEnemy is the target the bullet was aimed at rather than whoever fired it.
+ * Instances are pooled by the tracker and reused, so nothing should hold on to one after it resolves.
+ * The predictors keep what they need to know about the shot (bearing, escape angles, segment, features)
+ * on the wave itself, rather than in maps keyed by wave.
+ */
+public class GunWave implements Wave {
+    private Battlefield battlefield;
+    private final Point2D.Double centre = new Point2D.Double();
+    private long createdTime;
+    private double bulletSpeed;
+    private Enemy target;
+    private TargetingPredictor predictor;
+    /** the tick by which the wave should have reached the target, the tracker's ordering */
+    private long arrivalTime;
+    /** recorded by the predictor in recordShot */
+    private double firingBearing;
+    private double clockwiseEscapeAngle;
+    private double anticlockwiseEscapeAngle;
+    private int segment;
+    private int direction;
+    /** KnnPredictor's description of the situation, allocated the first time it is asked for */
+    private float[] features;
+    /** VirtualGuns' absolute firing bearing for each of its guns, NaN where a gun had no aim */
+    private float[] angles;
+
+    GunWave() {}
+
+    /** (re)initialises a pooled wave */
+    GunWave set(Battlefield battlefield, double x, double y, long time, double bulletSpeed, Enemy target, TargetingPredictor predictor) {
+        this.battlefield = battlefield;
+        this.centre.setLocation(x, y);
+        this.createdTime = time;
+        this.bulletSpeed = bulletSpeed;
+        this.target = target;
+        this.predictor = predictor;
+        // no aim until the predictor records one, so a shot it couldn't record teaches nothing
+        this.clockwiseEscapeAngle = 0;
+        this.anticlockwiseEscapeAngle = 0;
+        return this;
+    }
+
+    /** lets go of the target and predictor when the wave goes back to the pool */
+    void clear() {
+        this.target = null;
+        this.predictor = null;
+    }
+
+    @Override
+    public Point2D getCentre() {return centre;}
+    @Override
+    public int getRadius() {return (int)getRadius(battlefield.getSelf().getTime());}
+    /** distance the bullet has travelled by the given tick */
+    public double getRadius(long time) {return (time - createdTime) * bulletSpeed;}
+    @Override
+    public Enemy getEnemy() {return target;}
+    @Override
+    public long getCreatedTime() {return createdTime;}
+    @Override
+    public double getBulletSpeed() {return bulletSpeed;}
+    @Override
+    public Battlefield getBattlefield() {return battlefield;}
+    @Override
+    public Point2D getPosition() {return centre;}
+    public TargetingPredictor getPredictor() {return predictor;}
+    public long getArrivalTime() {return arrivalTime;}
+    public void setArrivalTime(long arrivalTime) {this.arrivalTime = arrivalTime;}
+
+    public double getFiringBearing() {return firingBearing;}
+    public double getClockwiseEscapeAngle() {return clockwiseEscapeAngle;}
+    public double getAnticlockwiseEscapeAngle() {return anticlockwiseEscapeAngle;}
+    public int getSegment() {return segment;}
+    public void setSegment(int segment) {this.segment = segment;}
+    /** the target's lateral direction when fired at, 1 clockwise and -1 anticlockwise */
+    public int getDirection() {return direction;}
+    /** storage for a feature vector of the given length, reused from one shot to the next */
+    public float[] getFeatures(int length) {
+        if (features == null || features.length != length) {features = new float[length];}
+        return features;
+    }
+    /** storage for one bearing per virtual gun, reused from one shot to the next */
+    public float[] getAngles(int length) {
+        if (angles == null || angles.length != length) {angles = new float[length];}
+        return angles;
+    }
+
+    /** Records how the shot was aimed, called by the predictors from recordShot */
+    public void setAim(Situation situation) {
+        this.firingBearing = situation.bearing;
+        this.clockwiseEscapeAngle = situation.clockwiseEscapeAngle;
+        this.anticlockwiseEscapeAngle = situation.anticlockwiseEscapeAngle;
+        this.direction = situation.direction;
+    }
+
+    /**
+     * Where the target ended up as a guess factor, the bearing offset from the firing bearing over the
+     * escape angle on that side, positive being the way the target was going when fired at
+     * @return between -1 and 1, or NaN if no aim was recorded
+     */
+    public double getGuessFactor(Point2D.Double actualPosition) {
+        double actualBearing = Math.atan2(actualPosition.x - centre.x, actualPosition.y - centre.y);
+        double bearingOffset = robocode.util.Utils.normalRelativeAngle(actualBearing - firingBearing);
+        double maxEscapeAngle = bearingOffset >= 0 ? clockwiseEscapeAngle : anticlockwiseEscapeAngle;
+        if (maxEscapeAngle == 0) {return Double.NaN;}
+        return Math.max(-1, Math.min(1, bearingOffset / maxEscapeAngle)) * direction;
+    }
+
+    /** radius is derived from the time, nothing to do */
+    @Override
+    public void update() {}
+
+    /** our own bullets are nothing to avoid */
+    @Override
+    public Area getOutline(int ticks) {return new Area();}
+    @Override
+    public boolean contains(double x, double y, int ticks) {return false;}
+    @Override
+    public Rectangle2D.Double getBounds(int ticks, Rectangle2D.Double bounds) {
+        bounds.setRect(centre.x, centre.y, 0, 0);
+        return bounds;
+    }
+
+    /** irrelevant for waves */
+    @Override
+    public long lastSeen() {return 1000;}
+}
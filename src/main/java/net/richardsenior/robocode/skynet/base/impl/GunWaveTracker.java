@@ -0,0 +1,107 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import net.richardsenior.robocode.skynet.base.Battlefield;
+import net.richardsenior.robocode.skynet.base.Enemy;
+import net.richardsenior.robocode.skynet.base.TargetingPredictor;
+
+/**
+ * Follows the bullets we fire until they reach their targets and tells the predictor that aimed them
+ * where the target actually was, so that it learns.
+ * Waves are kept in a priority queue ordered by the tick they are expected to reach the target, so each
+ * tick only the waves that are due are looked at: O(waves resolved) rather than O(waves in flight).
+ * A due wave whose target has moved further away is given a new arrival time and put back.
+ * Waves whose target hasn't been seen recently (dead or lost by the radar) are dropped after MAX_FLIGHT_TICKS
+ * without teaching anything. Resolved and dropped waves go back into a pool, so firing allocates nothing
+ * once the pool has grown to the number of bullets in flight.
+ * One tracker is shared by all guns through BattlefieldImpl.getGunWaves() and updated every tick,
+ * whichever enemy is currently targeted.
+ */
+public class GunWaveTracker {
+    /** a bullet crosses the largest standard battlefield in well under this */
+    private static final int MAX_FLIGHT_TICKS = 250;
+    /** a target's position is only trusted if it was scanned at most this many ticks ago */
+    private static final int MAX_STALENESS = 8;
+    private static final double ROBOT_HALF_SIZE = 18;
+    private static final double MAX_ROBOT_SPEED = 8;
+
+    private final Battlefield battlefield;
+    private final java.util.PriorityQueue<GunWave> inFlight =
+        new java.util.PriorityQueue<>(16, (a, b) -> Long.compare(a.getArrivalTime(), b.getArrivalTime()));
+    private final java.util.ArrayDeque<GunWave> pool = new java.util.ArrayDeque<>();
+    private long resolved = 0;
+    private long dropped = 0;
+
+    public GunWaveTracker(Battlefield battlefield) {
+        this.battlefield = battlefield;
+    }
+
+    /**
+     * Starts tracking a bullet we have just fired
+     * @param x where it was fired from
+     * @param y where it was fired from
+     * @param time the tick it was fired on
+     * @param target the enemy it was aimed at
+     * @param predictor told of the shot now and the result when it arrives
+     */
+    public GunWave fire(double x, double y, long time, double bulletSpeed, Enemy target, TargetingPredictor predictor) {
+        GunWave wave = pool.poll();
+        if (wave == null) {wave = new GunWave();}
+        wave.set(battlefield, x, y, time, bulletSpeed, target, predictor);
+        Point2D.Double position = target.getPosition();
+        wave.setArrivalTime(estimateArrival(wave, position, time));
+        predictor.recordShot(wave);
+        inFlight.add(wave);
+        PerfCounters.increment(PerfCounters.GUN_WAVES_FIRED);
+        return wave;
+    }
+
+    /** Resolves every wave due by this tick */
+    public void update(long time) {
+        GunWave wave;
+        while ((wave = inFlight.peek()) != null && wave.getArrivalTime() <= time) {
+            inFlight.poll();
+            Enemy target = wave.getEnemy();
+            Point2D.Double position = target.getPosition();
+            boolean fresh = position != null && target.lastSeen() <= MAX_STALENESS;
+            if (fresh && wave.getRadius(time) >= wave.getCentre().distance(position) - ROBOT_HALF_SIZE) {
+                wave.getPredictor().recordResult(wave, position);
+                resolved++;
+                PerfCounters.increment(PerfCounters.GUN_WAVES_RESOLVED);
+                recycle(wave);
+            } else if (time - wave.getCreatedTime() > MAX_FLIGHT_TICKS) {
+                dropped++;
+                recycle(wave);
+            } else {
+                // not there yet, or the target is out of sight for now
+                wave.setArrivalTime(fresh ? estimateArrival(wave, position, time) : time + 1);
+                inFlight.add(wave);
+            }
+        }
+    }
+
+    /**
+     * The earliest tick after 'time' the wave could reach a target now at position, assuming it comes
+     * straight at the firer at full speed. So a wave is never resolved late, at worst it is looked at early
+     * and put back
+     */
+    private long estimateArrival(GunWave wave, Point2D.Double position, long time) {
+        if (position == null) {return time + 1;}
+        double remaining = wave.getCentre().distance(position) - ROBOT_HALF_SIZE - wave.getRadius(time);
+        return time + Math.max(1, (long)Math.ceil(remaining / (wave.getBulletSpeed() + MAX_ROBOT_SPEED)));
+    }
+
+    private void recycle(GunWave wave) {
+        wave.clear();
+        pool.push(wave);
+    }
+
+    /** Forgets every wave in flight, e.g. at the end of a round */
+    public void clear() {
+        while (!inFlight.isEmpty()) {recycle(inFlight.poll());}
+    }
+
+    public int getInFlight() {return inFlight.size();}
+    public long getResolved() {return resolved;}
+    public long getDropped() {return dropped;}
+}
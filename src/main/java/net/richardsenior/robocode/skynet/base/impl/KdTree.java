@@ -0,0 +1,268 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * A k-d tree of fixed dimension points, each carrying a float value, for k nearest neighbour queries.
+ * Everything is held in flat primitive arrays, in insertion order: the coordinates of node i are
+ * coords[i * dims .. i * dims + dims) and the tree is threaded through them by the left and right links.
+ * Points are added incrementally by walking down from the root. Once there are more than 'capacity'
+ * the oldest is evicted, which, as storage is in insertion order, is just moving a watermark up:
+ * nodes below it still split space but are no longer returned.
+ * When the storage is full, or an insert goes deeper than a balanced tree would, the live points are
+ * moved down to the start of the storage (keeping their order) and a balanced tree is built over them
+ * by median splits. So adding is O(log n) amortised and the tree never gets deep enough for the
+ * recursion in queries to be a worry.
+ * Queries allocate nothing: the k best are kept in a bounded max heap owned by the tree.
+ * Distances are squared and weighted per dimension.
+ */
+public class KdTree {
+    /** queries recurse once per level, so this bounds their stack depth */
+    private static final int MAX_DEPTH = 64;
+
+    private final int dims;
+    private final int capacity;
+    private final int maxNodes;
+    private final double[] weights;
+    private final float[] coords;
+    private final float[] values;
+    private final int[] left;
+    private final int[] right;
+    private final byte[] splitDim;
+    private int root = -1;
+    /** nodes used */
+    private int count = 0;
+    /** nodes below this have been evicted */
+    private int oldest = 0;
+
+    /** scratch for building and querying */
+    private final int[] order;
+    /** the query's offset from the current cell on each dimension */
+    private final double[] offsets;
+    private int[] heapNode = new int[0];
+    private double[] heapDist = new double[0];
+    private int heapSize = 0;
+
+    /**
+     * @param dims number of coordinates per point
+     * @param capacity how many of the most recent points are kept
+     * @param weights multiplies each dimension's squared difference, length dims
+     */
+    public KdTree(int dims, int capacity, double[] weights) {
+        this.dims = dims;
+        this.capacity = capacity;
+        this.maxNodes = 2 * capacity;
+        this.weights = weights.clone();
+        this.coords = new float[maxNodes * dims];
+        this.values = new float[maxNodes];
+        this.left = new int[maxNodes];
+        this.right = new int[maxNodes];
+        this.splitDim = new byte[maxNodes];
+        this.order = new int[maxNodes];
+        this.offsets = new double[dims];
+    }
+
+    /** the number of live points */
+    public int size() {return count - oldest;}
+    public int getDimensions() {return dims;}
+
+    /** Adds a point, evicting the oldest if there are already 'capacity' */
+    public void add(float[] point, float value) {
+        if (count == maxNodes) {rebuild();}
+        int node = count++;
+        System.arraycopy(point, 0, coords, node * dims, dims);
+        values[node] = value;
+        left[node] = -1;
+        right[node] = -1;
+        if (count - oldest > capacity) {oldest++;}
+        if (root < 0) {
+            root = node;
+            splitDim[node] = 0;
+            return;
+        }
+        int depth = 1;
+        int parent = root;
+        // walk down to the leaf it belongs under
+        while (true) {
+            int next = goesLeft(point, parent, node) ? left[parent] : right[parent];
+            if (next < 0) {break;}
+            parent = next;
+            depth++;
+        }
+        int d = splitDim[parent];
+        if (goesLeft(point, parent, node)) {left[parent] = node;} else {right[parent] = node;}
+        // until the next rebuild picks properly, split on the dimension after the parent's
+        splitDim[node] = (byte)((d + 1) % dims);
+        if (depth > balancedDepthLimit()) {rebuild();}
+    }
+
+    /**
+     * Points equal to the split could go on either side (queries search both sides of a split they lie on).
+     * They normally go right, which keeps the splits sharp, but an exact repeat of the splitting point
+     * (an enemy sitting still, say) goes to a pseudo random side so that repeats don't chain into a list
+     */
+    private boolean goesLeft(float[] point, int parent, int node) {
+        int d = splitDim[parent];
+        int base = parent * dims;
+        if (point[d] != coords[base + d]) {return point[d] < coords[base + d];}
+        for (int i = 0; i < dims; i++) {
+            if (point[i] != coords[base + i]) {return false;}
+        }
+        return ((parent ^ node) * 0x9E3779B1) >>> 31 == 0;
+    }
+
+    /** how deep an insert may go before the tree is rebuilt */
+    private int balancedDepthLimit() {
+        int n = Math.max(1, size());
+        int log2 = 32 - Integer.numberOfLeadingZeros(n);
+        return Math.min(MAX_DEPTH - 1, 2 * log2 + 8);
+    }
+
+    /** Compacts the live points to the start of the storage and builds a balanced tree over them */
+    private void rebuild() {
+        int live = count - oldest;
+        if (oldest > 0) {
+            System.arraycopy(coords, oldest * dims, coords, 0, live * dims);
+            System.arraycopy(values, oldest, values, 0, live);
+        }
+        oldest = 0;
+        count = live;
+        for (int i = 0; i < live; i++) {order[i] = i;}
+        root = build(0, live);
+    }
+
+    /**
+     * builds a subtree over order[from, to), splitting at the median of whichever dimension has the
+     * widest weighted spread, so dimensions where the points all share a value are never split on
+     */
+    private int build(int from, int to) {
+        if (from >= to) {return -1;}
+        int d = widestDimension(from, to);
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, d);
+        int node = order[mid];
+        splitDim[node] = (byte)d;
+        left[node] = build(from, mid);
+        right[node] = build(mid + 1, to);
+        return node;
+    }
+
+    private int widestDimension(int from, int to) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int d = 0; d < dims; d++) {
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                float c = coords[order[i] * dims + d];
+                if (c < min) {min = c;}
+                if (c > max) {max = c;}
+            }
+            double spread = (max - min) * Math.sqrt(weights[d]);
+            if (spread > widestSpread) {
+                widestSpread = spread;
+                widest = d;
+            }
+        }
+        return widest;
+    }
+
+    /** quickselect, leaves order[k] holding the node with the k'th smallest coordinate d in order[lo..hi] */
+    private void select(int lo, int hi, int k, int d) {
+        while (lo < hi) {
+            float pivot = coords[order[(lo + hi) >>> 1] * dims + d];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (coords[order[i] * dims + d] < pivot) {i++;}
+                while (coords[order[j] * dims + d] > pivot) {j--;}
+                if (i <= j) {
+                    int t = order[i]; order[i] = order[j]; order[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {hi = j;} else if (k >= i) {lo = i;} else {return;}
+        }
+    }
+
+    /**
+     * Finds the k live points nearest to the query
+     * @return how many were found, at most k, retrieved with getResult*(0 .. n-1) in no particular order
+     */
+    public int nearest(float[] query, int k) {
+        if (heapNode.length < k) {
+            heapNode = new int[k];
+            heapDist = new double[k];
+        }
+        heapSize = 0;
+        if (root < 0 || k <= 0) {return 0;}
+        java.util.Arrays.fill(offsets, 0);
+        search(root, query, k, 0);
+        return heapSize;
+    }
+
+    /**
+     * Depth first search, nearer side first. 'bound' is the weighted squared distance from the query to
+     * the cell the subtree covers, kept exact across every dimension by remembering the query's offset
+     * from the cell on each one (so it prunes much harder than the distance to the last split alone).
+     * Recursion depth is limited by the rebuilds in add
+     */
+    private void search(int node, float[] query, int k, double bound) {
+        int base = node * dims;
+        if (node >= oldest) {offer(node, distanceSq(query, base), k);}
+        int d = splitDim[node];
+        double diff = query[d] - coords[base + d];
+        int near = diff < 0 ? left[node] : right[node];
+        int far = diff < 0 ? right[node] : left[node];
+        if (near >= 0) {search(near, query, k, bound);}
+        if (far < 0) {return;}
+        double old = offsets[d];
+        double farBound = bound - weights[d] * old * old + weights[d] * diff * diff;
+        if (heapSize < k || farBound < heapDist[0]) {
+            offsets[d] = diff;
+            search(far, query, k, farBound);
+            offsets[d] = old;
+        }
+    }
+
+    private double distanceSq(float[] query, int base) {
+        double sum = 0;
+        for (int i = 0; i < dims; i++) {
+            double diff = query[i] - coords[base + i];
+            sum += weights[i] * diff * diff;
+        }
+        return sum;
+    }
+
+    /** keeps the k nearest in a max heap, the furthest of them at the root */
+    private void offer(int node, double dist, int k) {
+        if (heapSize < k) {
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapDist[parent] >= dist) {break;}
+                heapNode[i] = heapNode[parent];
+                heapDist[i] = heapDist[parent];
+                i = parent;
+            }
+            heapNode[i] = node;
+            heapDist[i] = dist;
+            return;
+        }
+        if (dist >= heapDist[0]) {return;}
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {break;}
+            if (child + 1 < heapSize && heapDist[child + 1] > heapDist[child]) {child++;}
+            if (heapDist[child] <= dist) {break;}
+            heapNode[i] = heapNode[child];
+            heapDist[i] = heapDist[child];
+            i = child;
+        }
+        heapNode[i] = node;
+        heapDist[i] = dist;
+    }
+
+    /** the value of the i'th result of the last query */
+    public float getResultValue(int i) {return values[heapNode[i]];}
+    /** the weighted squared distance of the i'th result of the last query */
+    public double getResultDistanceSq(int i) {return heapDist[i];}
+}
@@ -0,0 +1,121 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import net.richardsenior.robocode.skynet.base.TargetingPredictor;
+import net.richardsenior.robocode.skynet.base.Wave;
+
+/**
+ * Dynamic clustering targeting: every resolved gun wave adds the situation it was fired in, as a
+ * feature vector, to a k-d tree along with the guess factor the target ended up at.
+ * To aim, the K situations most like the current one are found and the guess factor where their
+ * results are densest is used. Unlike BinPredictor's fixed segments nothing is bucketed, so it keeps
+ * getting sharper as data builds up, which is what it takes against opponents with adaptive movement.
+ * The tree keeps the most recent CAPACITY situations, and is handed in from the enemy's EnemyMemory.
+ */
+public class KnnPredictor implements TargetingPredictor {
+    public static final int K = 50;
+    public static final int CAPACITY = 10000;
+    /**
+     * distance, lateral speed, advancing velocity, acceleration, wall ahead, wall behind and
+     * time since the last change of direction, each scaled to roughly 0..1
+     */
+    public static final int DIMENSIONS = 7;
+    private static final double[] WEIGHTS = {2, 4, 1, 2, 2, 1, 2};
+    private static final double MAX_DISTANCE = 1000;
+    private static final double MAX_WALL = 500;
+    private static final double MAX_DIRECTION_TIME = 100;
+    /** how wide, in guess factor, a neighbour's result is spread when finding the densest */
+    private static final double BANDWIDTH = 0.1;
+
+    private final KdTree tree;
+    private final Situation situation;
+    private final float[] query = new float[DIMENSIONS];
+    private final double[] neighbourFactors = new double[K];
+    private final double[] neighbourWeights = new double[K];
+
+    /** an empty tree for the situations learnt from, sized and weighted for this predictor */
+    public static KdTree createTree() {
+        return new KdTree(DIMENSIONS, CAPACITY, WEIGHTS);
+    }
+
+    /**
+     * @param escapeAngles null for the naive escape angle
+     * @param enemy the target, null if unknown
+     * @param tree what has been learnt about the target, from createTree
+     */
+    public KnnPredictor(EscapeAngleTable escapeAngles, EnemyImpl enemy, KdTree tree) {
+        this.situation = new Situation(escapeAngles, enemy);
+        this.tree = tree;
+    }
+
+    /** the number of situations learnt from */
+    public int size() {return tree.size();}
+
+    @Override
+    public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                       double bulletVelocity, double directBearing) {
+        Situation s = situation.set(ourPosition, enemyPosition, bulletVelocity);
+        double guessFactor = getBestGuessFactor(getFeatures(s, query)) * s.direction;
+        return guessFactor * (guessFactor >= 0 ? s.clockwiseEscapeAngle : s.anticlockwiseEscapeAngle);
+    }
+
+    /**
+     * The guess factor with the greatest kernel density over the nearest neighbours' results,
+     * each weighted by how close its situation is. Zero (aim straight at the target) if nothing is known
+     */
+    private double getBestGuessFactor(float[] features) {
+        int n = tree.nearest(features, K);
+        if (n == 0) {return 0;}
+        for (int i = 0; i < n; i++) {
+            neighbourFactors[i] = tree.getResultValue(i);
+            neighbourWeights[i] = 1 / (1 + Math.sqrt(tree.getResultDistanceSq(i)));
+        }
+        double best = 0;
+        double bestDensity = -1;
+        for (int i = 0; i < n; i++) {
+            double density = 0;
+            for (int j = 0; j < n; j++) {
+                double x = (neighbourFactors[i] - neighbourFactors[j]) / BANDWIDTH;
+                density += neighbourWeights[j] / (1 + x * x);
+            }
+            if (density > bestDensity) {
+                bestDensity = density;
+                best = neighbourFactors[i];
+            }
+        }
+        return best;
+    }
+
+    /** Writes the situation, scaled, into features */
+    public static float[] getFeatures(Situation s, float[] features) {
+        features[0] = (float)(Math.min(s.distance, MAX_DISTANCE) / MAX_DISTANCE);
+        features[1] = (float)(Math.abs(s.lateralVelocity) / 8);
+        features[2] = (float)(s.advancingVelocity / 8);
+        features[3] = (float)(s.acceleration / 2);
+        features[4] = (float)(Math.min(s.wallAhead, MAX_WALL) / MAX_WALL);
+        features[5] = (float)(Math.min(s.wallBehind, MAX_WALL) / MAX_WALL);
+        features[6] = (float)(Math.min(s.timeSinceDirectionChange, MAX_DIRECTION_TIME) / MAX_DIRECTION_TIME);
+        return features;
+    }
+
+    /** Keeps the situation at firing time on the wave, any other kind of wave is ignored */
+    @Override
+    public void recordShot(Wave wave) {
+        if (!(wave instanceof GunWave) || wave.getEnemy() == null) {return;}
+        GunWave gunWave = (GunWave)wave;
+        Point2D.Double enemyPosition = wave.getEnemy().getPosition();
+        if (enemyPosition == null) {return;}
+        Situation s = situation.set((Point2D.Double)gunWave.getCentre(), enemyPosition, wave.getBulletSpeed());
+        gunWave.setAim(s);
+        getFeatures(s, gunWave.getFeatures(DIMENSIONS));
+    }
+
+    @Override
+    public void recordResult(Wave wave, Point2D.Double actualPosition) {
+        if (!(wave instanceof GunWave)) {return;}
+        GunWave gunWave = (GunWave)wave;
+        double guessFactor = gunWave.getGuessFactor(actualPosition);
+        if (Double.isNaN(guessFactor)) {return;}
+        tree.add(gunWave.getFeatures(DIMENSIONS), (float)guessFactor);
+    }
+}
@@ -0,0 +1,294 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.richardsenior.robocode.skynet.base.Enemy;
+
+/**
+ * Discrete distance transform of the battlefield used to find the Lagrange point
+ * (the spot furthest from all enemies).
+ * Every cell stores the squared distance from its centre to the nearest enemy, and which enemy that is.
+ * That is, the cells are partitioned into the Voronoi regions of the enemies.
+ * When an enemy moves only two regions can change: the cells it used to own, which are recomputed
+ * against all enemies, and the cells it now owns, which are claimed by flood filling outwards from
+ * its new position until a cell is found that is closer to some other enemy. Voronoi regions are convex
+ * so both are connected and the work is proportional to the size of the moving enemy's region,
+ * not the whole field. Enemies which have not been rescanned cost nothing.
+ * A full rebuild is done periodically to mop up any discretisation error
+ * (sampled at cell centres a region can occasionally have a disconnected sliver).
+ * The best few local maxima are kept as candidates so the mover can choose between them.
+ * Only cells clear of the walls are candidates, but the walls don't stop a cell beside them being a
+ * maximum, so the clearest spot is found even when it is in a corner (as it always is against one enemy).
+ */
+public class LagrangeField {
+    private static final int FULL_REBUILD_INTERVAL = 100; // ticks
+    private static final int MAX_CANDIDATES = 4;
+    /** candidates must be at least this fraction (squared) as clear of enemies as the best */
+    private static final double CANDIDATE_RATIO = 0.75 * 0.75;
+
+    private final int cellSize;
+    private final int cols;
+    private final int rows;
+    private final double width;
+    private final double height;
+    private final double wallMargin;
+    /** squared distance from each cell centre to its nearest enemy */
+    private double[] distSq;
+    /** registry id of the nearest enemy for each cell, -1 if none */
+    private int[] owner;
+    /** last known position of each enemy by registry id */
+    private double[] enemyX;
+    private double[] enemyY;
+    private boolean[] present;
+    /** flood fill storage */
+    private int[] queue;
+    private int[] visited;
+    private int visitStamp = 0;
+    private long lastFullRebuild = -1;
+    /** best first */
+    private List<Point2D.Double> candidates;
+    private List<Point2D.Double> candidateView;
+    private Point2D.Double[] candidatePool;
+    private int[] topCells;
+    private double[] topDist;
+
+    /**
+     * @param width battlefield width
+     * @param height battlefield height
+     * @param wallMargin cells closer than this to a wall are never chosen
+     * @param cellSize resolution in pixels
+     */
+    public LagrangeField(double width, double height, double wallMargin, int cellSize) {
+        this.cellSize = cellSize;
+        this.width = width;
+        this.height = height;
+        this.wallMargin = wallMargin;
+        this.cols = Math.max(1, (int)Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int)Math.ceil(height / cellSize));
+        this.distSq = new double[cols * rows];
+        this.owner = new int[cols * rows];
+        this.queue = new int[cols * rows];
+        this.visited = new int[cols * rows];
+        this.enemyX = new double[8];
+        this.enemyY = new double[8];
+        this.present = new boolean[8];
+        this.candidates = new ArrayList<>(MAX_CANDIDATES);
+        this.candidateView = Collections.unmodifiableList(candidates);
+        this.candidatePool = new Point2D.Double[MAX_CANDIDATES];
+        for (int i = 0; i < MAX_CANDIDATES; i++) {candidatePool[i] = new Point2D.Double();}
+        this.topCells = new int[MAX_CANDIDATES];
+        this.topDist = new double[MAX_CANDIDATES];
+        java.util.Arrays.fill(distSq, Double.POSITIVE_INFINITY);
+        java.util.Arrays.fill(owner, -1);
+    }
+
+    public int getCellSize() {return this.cellSize;}
+
+    /** The best point, or null if there are no enemies */
+    public Point2D.Double getBest() {return candidates.isEmpty() ? null : candidates.get(0);}
+
+    /**
+     * The best few local maxima, best first, each at least nearly as clear of enemies as the best.
+     * The list and its points are reused on every update
+     */
+    public List<Point2D.Double> getCandidates() {return this.candidateView;}
+
+    /**
+     * Brings the field up to date with the enemies in the registry
+     * @param time the current tick, used to schedule full rebuilds
+     */
+    public void update(ObstacleRegistry registry, long time) {
+        int ids = registry.getIdCount();
+        if (ids > present.length) {
+            int n = Math.max(ids, present.length * 2);
+            enemyX = java.util.Arrays.copyOf(enemyX, n);
+            enemyY = java.util.Arrays.copyOf(enemyY, n);
+            present = java.util.Arrays.copyOf(present, n);
+        }
+        boolean full = lastFullRebuild < 0 || time < lastFullRebuild || time - lastFullRebuild >= FULL_REBUILD_INTERVAL;
+        for (int id = 0; id < ids; id++) {
+            Enemy e = registry.getEnemy(id);
+            Point2D.Double p = null;
+            if (e instanceof EnemyImpl && ((EnemyImpl)e).hasPosition()) {p = e.getPosition();}
+            if (p == null) {
+                if (present[id]) {
+                    present[id] = false;
+                    if (!full) {recomputeRegion(id, enemyX[id], enemyY[id]);}
+                }
+                continue;
+            }
+            if (present[id] && p.x == enemyX[id] && p.y == enemyY[id]) {continue;}
+            boolean wasPresent = present[id];
+            double oldX = enemyX[id], oldY = enemyY[id];
+            enemyX[id] = p.x;
+            enemyY[id] = p.y;
+            present[id] = true;
+            if (full) {continue;}
+            if (wasPresent) {recomputeRegion(id, oldX, oldY);}
+            claimRegion(id);
+        }
+        if (full) {
+            rebuild();
+            lastFullRebuild = time;
+        }
+        findCandidates();
+    }
+
+    /** recomputes every cell from scratch against every enemy */
+    private void rebuild() {
+        for (int cell = 0; cell < distSq.length; cell++) {recomputeCell(cell);}
+    }
+
+    private void recomputeCell(int cell) {
+        double cx = cellX(cell), cy = cellY(cell);
+        double best = Double.POSITIVE_INFINITY;
+        int bestId = -1;
+        for (int id = 0; id < present.length; id++) {
+            if (!present[id]) {continue;}
+            double dx = enemyX[id] - cx, dy = enemyY[id] - cy;
+            double d = dx * dx + dy * dy;
+            if (d < best) {
+                best = d;
+                bestId = id;
+            }
+        }
+        distSq[cell] = best;
+        owner[cell] = bestId;
+    }
+
+    /**
+     * Recomputes the cells owned by the given enemy against all enemies
+     * by flood filling from the cell at its old position, which it will almost always have owned
+     */
+    private void recomputeRegion(int id, double oldX, double oldY) {
+        int start = cellAt(oldX, oldY);
+        // another enemy is nearer the centre of that cell, so look for any cell we did own
+        for (int cell = 0; owner[start] != id && cell < owner.length; cell++) {start = cell;}
+        if (owner[start] != id) {return;}
+        nextVisit();
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        visited[start] = visitStamp;
+        while (head < tail) {
+            int cell = queue[head++];
+            recomputeCell(cell);
+            int c = cell % cols, r = cell / cols;
+            if (c > 0) {tail = enqueueOwned(cell - 1, id, tail);}
+            if (c < cols - 1) {tail = enqueueOwned(cell + 1, id, tail);}
+            if (r > 0) {tail = enqueueOwned(cell - cols, id, tail);}
+            if (r < rows - 1) {tail = enqueueOwned(cell + cols, id, tail);}
+        }
+    }
+
+    private int enqueueOwned(int cell, int id, int tail) {
+        if (visited[cell] == visitStamp || owner[cell] != id) {return tail;}
+        visited[cell] = visitStamp;
+        queue[tail++] = cell;
+        return tail;
+    }
+
+    /** flood fills outwards from the enemy's position taking every cell it is now nearest to */
+    private void claimRegion(int id) {
+        nextVisit();
+        int head = 0, tail = 0;
+        int start = cellAt(enemyX[id], enemyY[id]);
+        queue[tail++] = start;
+        visited[start] = visitStamp;
+        while (head < tail) {
+            int cell = queue[head++];
+            double dx = enemyX[id] - cellX(cell), dy = enemyY[id] - cellY(cell);
+            double d = dx * dx + dy * dy;
+            if (d < distSq[cell] || owner[cell] == id) {
+                distSq[cell] = d;
+                owner[cell] = id;
+            } else if (cell != start) {
+                // always expand the start cell, another enemy may be nearer its centre than we are
+                continue;
+            }
+            int c = cell % cols, r = cell / cols;
+            if (c > 0) {tail = enqueue(cell - 1, tail);}
+            if (c < cols - 1) {tail = enqueue(cell + 1, tail);}
+            if (r > 0) {tail = enqueue(cell - cols, tail);}
+            if (r < rows - 1) {tail = enqueue(cell + cols, tail);}
+        }
+    }
+
+    private int enqueue(int cell, int tail) {
+        if (visited[cell] == visitStamp) {return tail;}
+        visited[cell] = visitStamp;
+        queue[tail++] = cell;
+        return tail;
+    }
+
+    /**
+     * Keeps the best MAX_CANDIDATES local maxima away from the walls, the clearest cell away from
+     * the walls always being the first. Neighbours beside the walls or off the field don't count against
+     * a cell being a maximum, otherwise a corner (or any spot against a wall) could never be chosen
+     */
+    private void findCandidates() {
+        int found = 0;
+        int best = -1;
+        for (int cell = 0; cell < distSq.length; cell++) {
+            if (!isCandidate(cell)) {continue;}
+            double d = distSq[cell];
+            if (best < 0 || d > distSq[best]) {best = cell;}
+            if (found == MAX_CANDIDATES && d <= topDist[found - 1]) {continue;}
+            int c = cell % cols, r = cell / cols;
+            if ((c > 0 && blocks(cell - 1, d)) || (c < cols - 1 && blocks(cell + 1, d))
+                || (r > 0 && blocks(cell - cols, d)) || (r < rows - 1 && blocks(cell + cols, d))) {continue;}
+            found = insertCandidate(cell, d, found);
+        }
+        // the clearest cell passes the test above anyway, but getBest must never come back empty while there are enemies
+        if (best >= 0 && (found == 0 || topDist[0] < distSq[best])) {found = insertCandidate(best, distSq[best], found);}
+        candidates.clear();
+        for (int i = 0; i < found; i++) {
+            if (topDist[i] < topDist[0] * CANDIDATE_RATIO) {break;}
+            Point2D.Double p = candidatePool[i];
+            p.setLocation(cellX(topCells[i]), cellY(topCells[i]));
+            candidates.add(p);
+        }
+    }
+
+    /** insertion into the sorted top list, returning how many it now holds */
+    private int insertCandidate(int cell, double d, int found) {
+        int i = found < MAX_CANDIDATES ? found++ : found - 1;
+        while (i > 0 && topDist[i - 1] < d) {
+            topDist[i] = topDist[i - 1];
+            topCells[i] = topCells[i - 1];
+            i--;
+        }
+        topDist[i] = d;
+        topCells[i] = cell;
+        return found;
+    }
+
+    /** whether the cell has an enemy to be measured from and its centre is on the field clear of the walls */
+    private boolean isCandidate(int cell) {
+        if (owner[cell] < 0) {return false;}
+        double cx = cellX(cell), cy = cellY(cell);
+        return cx >= wallMargin && cy >= wallMargin && cx <= width - wallMargin && cy <= height - wallMargin;
+    }
+
+    /** whether the neighbour stops a cell as clear as d being a maximum, only candidate cells can */
+    private boolean blocks(int neighbour, double d) {
+        return distSq[neighbour] > d && isCandidate(neighbour);
+    }
+
+    private void nextVisit() {
+        visitStamp++;
+        if (visitStamp == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(visited, 0);
+            visitStamp = 1;
+        }
+    }
+
+    private int cellAt(double x, double y) {
+        int c = Math.max(0, Math.min(cols - 1, (int)(x / cellSize)));
+        int r = Math.max(0, Math.min(rows - 1, (int)(y / cellSize)));
+        return r * cols + c;
+    }
+    private double cellX(int cell) {return (cell % cols + 0.5) * cellSize;}
+    private double cellY(int cell) {return (cell / cols + 0.5) * cellSize;}
+}
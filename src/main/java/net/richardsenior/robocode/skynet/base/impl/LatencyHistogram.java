@@ -0,0 +1,78 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * Fixed bucket latency histogram in the style of HdrHistogram.
+ * Buckets are log-linear: each power of two range is split into SUB_BUCKETS equal slices,
+ * so any recorded value is reported to within 1/SUB_BUCKETS (about 6%) of its true value
+ * from 1ns up to many seconds in a few hundred longs. Recording is a couple of shifts and an
+ * increment and never allocates, so it is cheap enough to do several times every tick.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** values of 2^MAX_EXPONENT ns (about 18 minutes) or more land in the last bucket */
+    private static final int MAX_EXPONENT = 40;
+    /** the linear range below SUB_BUCKETS, the log-linear range, and one overflow bucket */
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS) * SUB_BUCKETS + 1;
+
+    private final String name;
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long max = 0;
+
+    public LatencyHistogram(String name) {this.name = name;}
+
+    public String getName() {return this.name;}
+    public long getCount() {return this.count;}
+    public long getMax() {return this.max;}
+
+    /** Records a single duration in nanoseconds */
+    public void record(long nanos) {
+        if (nanos < 0) {nanos = 0;}
+        counts[bucketOf(nanos)]++;
+        count++;
+        if (nanos > max) {max = nanos;}
+    }
+
+    /**
+     * The value below which the given percentage of recorded values fall,
+     * reported as the top of the bucket it lies in (but never more than the max)
+     * @param percentile 0 to 100
+     * @return nanoseconds, 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {return 0;}
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {return Math.min(max, bucketTop(i));}
+        }
+        return max;
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    private static int bucketOf(long v) {
+        if (v < SUB_BUCKETS) {return (int)v;}
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        if (exponent >= MAX_EXPONENT) {return BUCKET_COUNT - 1;}
+        int shift = exponent - SUB_BITS;
+        // the top SUB_BITS + 1 bits of v, less the leading one
+        int sub = (int)(v >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    /** the largest value which falls in the given bucket */
+    private static long bucketTop(int bucket) {
+        if (bucket < SUB_BUCKETS) {return bucket;}
+        if (bucket == BUCKET_COUNT - 1) {return Long.MAX_VALUE;}
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long)(SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,93 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * Finds the firing angle that would hit the most probability: each candidate bearing (a guess factor bin,
+ * say) is widened into the interval of bearings that would still hit the target there, its robot width at
+ * the current distance, and the point covered by the greatest total weight of intervals is the aim.
+ * Aiming at the single most likely bin ignores that a bullet aimed between two good bins can hit either.
+ * The intervals' endpoints are sorted by an in place heapsort of the two parallel primitive arrays they are
+ * held in (positions and signed weights) and swept once, O(n log n), and nothing is allocated after construction.
+ */
+public class MaxOverlapAim {
+    private final double[] positions;
+    /** +weight for the start of an interval, -weight for its end */
+    private final double[] deltas;
+    private int size = 0;
+    private double bestWeight = 0;
+
+    /** @param maxIntervals the most intervals that will be added between clears */
+    public MaxOverlapAim(int maxIntervals) {
+        this.positions = new double[2 * maxIntervals];
+        this.deltas = new double[2 * maxIntervals];
+    }
+
+    public void clear() {size = 0;}
+
+    /** Adds an interval of bearings [from, to], ignored unless weight is positive */
+    public void add(double from, double to, double weight) {
+        if (!(weight > 0)) {return;}
+        positions[size] = from;
+        deltas[size++] = weight;
+        positions[size] = to;
+        deltas[size++] = -weight;
+    }
+
+    /**
+     * The middle of the stretch covered by the greatest total weight, intervals that only touch counting
+     * as overlapping. NaN if no intervals have been added
+     */
+    public double solve() {
+        bestWeight = 0;
+        if (size == 0) {return Double.NaN;}
+        sort();
+        double best = Double.NaN;
+        double covered = 0;
+        for (int i = 0; i < size; i++) {
+            covered += deltas[i];
+            // coverage only goes up at a start, and holds until the next endpoint, which there always is
+            if (deltas[i] > 0 && covered > bestWeight) {
+                bestWeight = covered;
+                best = (positions[i] + positions[i + 1]) / 2;
+            }
+        }
+        return best;
+    }
+
+    /** the weight covered by the last solve */
+    public double getBestWeight() {return bestWeight;}
+
+    /** ordered by position, starts before ends at the same position */
+    private boolean less(int a, int b) {
+        if (positions[a] != positions[b]) {return positions[a] < positions[b];}
+        return deltas[a] > 0 && deltas[b] < 0;
+    }
+
+    private void sort() {
+        for (int i = size / 2 - 1; i >= 0; i--) {siftDown(i, size);}
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    /** max heap over [0, end) */
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {return;}
+            if (child + 1 < end && less(child, child + 1)) {child++;}
+            if (!less(i, child)) {return;}
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double p = positions[a];
+        positions[a] = positions[b];
+        positions[b] = p;
+        double d = deltas[a];
+        deltas[a] = deltas[b];
+        deltas[b] = d;
+    }
+}
@@ -1,7 +1,6 @@
 package net.richardsenior.robocode.skynet.base.impl;
 
 import java.awt.Graphics2D;
-import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import net.richardsenior.robocode.skynet.base.Battlefield;
 import net.richardsenior.robocode.skynet.base.Mover;
@@ -10,11 +9,14 @@ import net.richardsenior.robocode.skynet.base.Enemy;
 
 public class MoverImpl implements Mover {
     private static final double MOVE_DISTANCE = 8.0; // Max robot velocity per tick
-    private static final int NUM_SAMPLES = 16; // Sample points around each circle
+    private static final int MAX_SAMPLES = 16; // Sample points around each circle at full quality
     private static final int NUM_CIRCLES = 4; // Number of concentric circles
     private static final double MIN_RADIUS = 40.0; // Minimum circle radius (safely around robot)
     private static final double MAX_RADIUS_DIVISOR = 5.0; // Divisor for max radius (diagonal / divisor)
     private static final double WALL_EXCLUSION_ZONE = 28.0; // Margin from walls
+    /** Distance-based urgency weights (inner circles = more urgent) */
+    private static final double[] CIRCLE_WEIGHTS = {4.0, 2.0, 1.0, 0.5};
+    private static final int PREVIEW_TICKS = 12; // How far ahead each movement command is simulated
     
     private Battlefield battlefield;
     private Point2D.Double pos;
@@ -24,14 +26,39 @@ public class MoverImpl implements Mover {
     private double[] circleRadii; // Calculated radii for each circle
     private boolean hitWall = false; // Flag for wall collision
     private int wallEscapeTicks = 0; // Ticks remaining in wall escape mode
+    private int sampleCount = MAX_SAMPLES; // Sample points currently used around each circle
+    /** scratch storage reused every tick so that moving doesn't allocate */
+    private Point2D.Double testPoint = new Point2D.Double();
+    private java.util.List<Wave> activeWaves = new java.util.ArrayList<>();
+    private double[] pathBearings = new double[NUM_CIRCLES];
+    /** precise simulation of the command we are about to issue, and the path it produced (for painting) */
+    private RobotState preview = new RobotState();
+    private double[] previewX = new double[PREVIEW_TICKS];
+    private double[] previewY = new double[PREVIEW_TICKS];
+    private int previewLength = 0;
+    /** takes over whenever an enemy wave is on its way, null without a BattlefieldImpl */
+    private WaveSurfer surfer;
 
     public MoverImpl(Battlefield battlefield) {
         this.battlefield = battlefield;
-        this.safePoints = new boolean[NUM_CIRCLES][NUM_SAMPLES];
+        this.pos = new Point2D.Double();
+        this.safePoints = new boolean[NUM_CIRCLES][MAX_SAMPLES];
         this.circleRadii = new double[NUM_CIRCLES];
         calculateCircleRadii();
+        if (battlefield instanceof BattlefieldImpl) {this.surfer = new WaveSurfer((BattlefieldImpl)battlefield);}
     }
     
+    /**
+     * Reduces (or restores) the number of sample points around each circle
+     * Used to shed work when we are close to running out of time in a tick
+     * @param samples between 1 and 16
+     */
+    public void setSampleCount(int samples) {
+        this.sampleCount = Math.max(1, Math.min(MAX_SAMPLES, samples));
+    }
+
+    public WaveSurfer getSurfer() {return surfer;}
+
     private void calculateCircleRadii() {
         // Calculate battlefield diagonal
         double width = battlefield.getSelf().getBattleFieldWidth();
@@ -49,7 +76,7 @@ public class MoverImpl implements Mover {
 
     @Override
     public void update() {
-        this.pos = new Point2D.Double(battlefield.getSelf().getX(), battlefield.getSelf().getY());
+        this.pos.setLocation(battlefield.getSelf().getX(), battlefield.getSelf().getY());
     }
 
     @Override
@@ -59,13 +86,13 @@ public class MoverImpl implements Mover {
             wallEscapeTicks--;
             return;
         }
-        
-        // Get battlefield area ONCE for current time only
-        Area currentArea = battlefield.getBattlefieldArea(0);
+
+        // surf the nearest enemy wave if there is one, otherwise keep to the safe points
+        if (surfer != null && surfer.surf()) {return;}
         
         // Clear previous safe points
         for (int i = 0; i < NUM_CIRCLES; i++) {
-            for (int j = 0; j < NUM_SAMPLES; j++) {
+            for (int j = 0; j < sampleCount; j++) {
                 safePoints[i][j] = true; // Assume safe initially
             }
         }
@@ -74,27 +101,19 @@ public class MoverImpl implements Mover {
         for (int circleIdx = 0; circleIdx < NUM_CIRCLES; circleIdx++) {
             double radius = circleRadii[circleIdx];
             
-            for (int sampleIdx = 0; sampleIdx < NUM_SAMPLES; sampleIdx++) {
-                double bearing = (sampleIdx * 2 * Math.PI) / NUM_SAMPLES;
-                Point2D.Double testPoint = projectPosition(pos, bearing, radius);
+            for (int sampleIdx = 0; sampleIdx < sampleCount; sampleIdx++) {
+                double bearing = (sampleIdx * 2 * Math.PI) / sampleCount;
+                projectPosition(pos, bearing, radius, testPoint);
                 
-                // Check if this point is in the safe area NOW
-                if (!currentArea.contains(testPoint.x, testPoint.y)) {
+                // Check if this point is in the safe area NOW (bitmap lookup)
+                if (!battlefield.isSafe(testPoint.x, testPoint.y)) {
                     safePoints[circleIdx][sampleIdx] = false;
                     continue; // Already unsafe, skip wave check
                 }
                 
                 // Check if this point is inside any active wave's danger zone
-                for (net.richardsenior.robocode.skynet.base.Enemy enemy : battlefield.getEnemies()) {
-                    for (net.richardsenior.robocode.skynet.base.Wave wave : enemy.getWaves()) {
-                        // Get wave outline (annular segment)
-                        Area waveArea = wave.getOutline(0);
-                        if (waveArea != null && waveArea.contains(testPoint.x, testPoint.y)) {
-                            safePoints[circleIdx][sampleIdx] = false;
-                            break; // Point is in wave danger zone
-                        }
-                    }
-                    if (!safePoints[circleIdx][sampleIdx]) break; // Already marked unsafe
+                if (battlefield.isInWave(testPoint.x, testPoint.y, 0)) {
+                    safePoints[circleIdx][sampleIdx] = false;
                 }
             }
         }
@@ -105,9 +124,9 @@ public class MoverImpl implements Mover {
         boolean allSafe = true;
         
         for (int i = 0; i < NUM_CIRCLES; i++) {
-            for (int j = 0; j < NUM_SAMPLES; j++) {
-                double bearing = (j * 2 * Math.PI) / NUM_SAMPLES;
-                Point2D.Double testPoint = projectPosition(pos, bearing, circleRadii[i]);
+            for (int j = 0; j < sampleCount; j++) {
+                double bearing = (j * 2 * Math.PI) / sampleCount;
+                projectPosition(pos, bearing, circleRadii[i], testPoint);
                 
                 // Only check points that are inside the battlefield bounds
                 if (testPoint.x >= WALL_EXCLUSION_ZONE && testPoint.x <= fieldWidth - WALL_EXCLUSION_ZONE &&
@@ -156,7 +175,7 @@ public class MoverImpl implements Mover {
         
         // Check if we're in emergency escape mode (no safe inner circle points)
         boolean emergencyEscape = true;
-        for (int i = 0; i < NUM_SAMPLES; i++) {
+        for (int i = 0; i < sampleCount; i++) {
             if (safePoints[0][i]) {
                 emergencyEscape = false;
                 break;
@@ -178,11 +197,46 @@ public class MoverImpl implements Mover {
         }
         
         // Store target position for painting
-        targetPos = projectPosition(pos, targetBearing, circleRadii[NUM_CIRCLES - 1]);
+        if (targetPos == null) {targetPos = new Point2D.Double();}
+        projectPosition(pos, targetBearing, circleRadii[NUM_CIRCLES - 1], targetPos);
+        
+        // Run the command through the movement rules, if it would put us into a wall try it in reverse
+        if (battlefield instanceof BattlefieldImpl) {
+            PhysicsSimulator simulator = ((BattlefieldImpl)battlefield).getSimulator();
+            boolean hitsWall = previewHitsWall(simulator, turn, speed);
+            if (hitsWall && !previewHitsWall(simulator, turn, -speed)) {
+                speed = -speed;
+                moveDirection *= -1;
+            } else if (hitsWall) {
+                // no better in reverse, put the path we are actually taking back for painting
+                previewHitsWall(simulator, turn, speed);
+            }
+        }
         
         battlefield.getSelf().setTurnRightRadians(turn);
         battlefield.getSelf().setAhead(speed);
     }
+
+    /**
+     * Simulates setTurnRightRadians(turn) and setAhead(distance) from where we are now
+     * for PREVIEW_TICKS ticks, leaving the path in previewX/Y
+     * @return true if it runs into a wall
+     */
+    private boolean previewHitsWall(PhysicsSimulator simulator, double turn, double distance) {
+        preview.set(battlefield.getSelf());
+        previewLength = 0;
+        for (int i = 0; i < PREVIEW_TICKS; i++) {
+            double before = preview.heading;
+            simulator.step(preview, turn, distance, robocode.Rules.MAX_VELOCITY);
+            turn -= robocode.util.Utils.normalRelativeAngle(preview.heading - before);
+            distance -= preview.velocity;
+            previewX[previewLength] = preview.x;
+            previewY[previewLength] = preview.y;
+            previewLength++;
+            if (preview.hitWall) {return true;}
+        }
+        return false;
+    }
     
     @Override
     public void onHitWall() {
@@ -209,7 +263,7 @@ public class MoverImpl implements Mover {
     private double findBestPath(double currentHeading) {
         // Check if we have any safe points on the innermost circle
         boolean hasInnerSafe = false;
-        for (int i = 0; i < NUM_SAMPLES; i++) {
+        for (int i = 0; i < sampleCount; i++) {
             if (safePoints[0][i]) {
                 hasInnerSafe = true;
                 break;
@@ -222,7 +276,18 @@ public class MoverImpl implements Mover {
         }
         
         // Calculate bearing toward Lagrange point (least densely populated spot)
-        java.awt.geom.Point2D.Double lagrangePoint = battlefield.getLagrangePoint();
+        // choosing the nearest of the candidates, which are all nearly as clear as each other
+        java.awt.geom.Point2D.Double lagrangePoint = null;
+        double nearestDistSq = Double.POSITIVE_INFINITY;
+        java.util.List<java.awt.geom.Point2D.Double> candidates = battlefield.getLagrangeCandidates();
+        for (int i = 0; i < candidates.size(); i++) {
+            java.awt.geom.Point2D.Double candidate = candidates.get(i);
+            double d = candidate.distanceSq(pos);
+            if (d < nearestDistSq) {
+                nearestDistSq = d;
+                lagrangePoint = candidate;
+            }
+        }
         double targetBearing;
         
         if (lagrangePoint != null) {
@@ -239,16 +304,13 @@ public class MoverImpl implements Mover {
             robocode.util.Utils.normalAbsoluteAngle(currentHeading + Math.PI);
         
         // Get active waves for perpendicular movement calculation
-        java.util.List<Wave> activeWaves = new java.util.ArrayList<>();
+        activeWaves.clear();
         for (Enemy enemy : battlefield.getEnemies()) {
-            activeWaves.addAll(enemy.getWaves());
+            java.util.List<Wave> waves = enemy.getWaves();
+            for (int i = 0; i < waves.size(); i++) {activeWaves.add(waves.get(i));}
         }
         
-        // Distance-based urgency weights (inner circles = more urgent)
-        double[] circleWeights = {4.0, 2.0, 1.0, 0.5};
-        
         // For each circle, find the safe bearing with best score
-        double[] pathBearings = new double[NUM_CIRCLES];
         boolean pathFound = true;
         
         for (int circleIdx = 0; circleIdx < NUM_CIRCLES; circleIdx++) {
@@ -256,9 +318,9 @@ public class MoverImpl implements Mover {
             double bestScore = Double.MAX_VALUE;
             boolean foundSafe = false;
             
-            for (int sampleIdx = 0; sampleIdx < NUM_SAMPLES; sampleIdx++) {
+            for (int sampleIdx = 0; sampleIdx < sampleCount; sampleIdx++) {
                 if (safePoints[circleIdx][sampleIdx]) {
-                    double bearing = (sampleIdx * 2 * Math.PI) / NUM_SAMPLES;
+                    double bearing = (sampleIdx * 2 * Math.PI) / sampleCount;
                     
                     double score = 0;
                     
@@ -271,7 +333,8 @@ public class MoverImpl implements Mover {
                     score += 0.3 * diffFromTarget;
                     
                     // 3. Prefer perpendicular movement to waves (weight: varies by distance)
-                    for (Wave wave : activeWaves) {
+                    for (int w = 0; w < activeWaves.size(); w++) {
+                        Wave wave = activeWaves.get(w);
                         Point2D waveCentre = wave.getCentre();
                         if (waveCentre == null) continue;
                         Point2D.Double waveCenter = (Point2D.Double) waveCentre;
@@ -281,7 +344,7 @@ public class MoverImpl implements Mover {
                         if (waveDistance < 0) waveDistance = 0; // Wave has passed
                         
                         // Urgency increases as wave gets closer
-                        double urgency = circleWeights[circleIdx] / (waveDistance + 50);
+                        double urgency = CIRCLE_WEIGHTS[circleIdx] / (waveDistance + 50);
                         
                         // Bearing from wave center to our position
                         double waveBearing = Math.atan2(pos.x - waveCenter.x, pos.y - waveCenter.y);
@@ -361,11 +424,13 @@ public class MoverImpl implements Mover {
         return Math.atan2(centerX - pos.x, centerY - pos.y);
     }
     
-    private Point2D.Double projectPosition(Point2D.Double from, double heading, double distance) {
-        return new Point2D.Double(
+    /** Writes the point 'distance' from 'from' along 'heading' into 'result' and returns it */
+    private Point2D.Double projectPosition(Point2D.Double from, double heading, double distance, Point2D.Double result) {
+        result.setLocation(
             from.x + distance * Math.sin(heading),
             from.y + distance * Math.cos(heading)
         );
+        return result;
     }
 
     @Override
@@ -381,9 +446,9 @@ public class MoverImpl implements Mover {
             g.drawOval((int)(pos.x - radius), (int)(pos.y - radius), (int)(radius * 2), (int)(radius * 2));
             
             // Draw all sample points using the actual safePoints array
-            for (int j = 0; j < NUM_SAMPLES; j++) {
-                double bearing = (j * 2 * Math.PI) / NUM_SAMPLES;
-                Point2D.Double point = projectPosition(pos, bearing, radius);
+            for (int j = 0; j < sampleCount; j++) {
+                double bearing = (j * 2 * Math.PI) / sampleCount;
+                Point2D.Double point = projectPosition(pos, bearing, radius, new Point2D.Double());
                 
                 // Use the actual safePoints array that includes wave checks
                 boolean safe = safePoints[i][j];
@@ -398,10 +463,19 @@ public class MoverImpl implements Mover {
             }
         }
         
+        // Draw where each surfing option would leave us
+        if (surfer != null) {surfer.doPaint(g);}
+
         // Draw our current position
         g.setColor(java.awt.Color.BLUE);
         g.fillOval((int)pos.x - 8, (int)pos.y - 8, 16, 16);
         
+        // Draw the simulated path of the command we issued
+        g.setColor(java.awt.Color.CYAN);
+        for (int i = 0; i < previewLength; i++) {
+            g.fillOval((int)previewX[i] - 2, (int)previewY[i] - 2, 4, 4);
+        }
+        
         // Draw the chosen path
         if (targetPos != null) {
             g.setColor(java.awt.Color.YELLOW);
@@ -0,0 +1,172 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * The network behind NeuralPredictor: a small multilayer perceptron from KnnPredictor's scaled features
+ * through one tanh hidden layer to a softmax over the GuessFactorStats bins.
+ * Weights and activations live in flat arrays sized at construction, so neither a forward pass nor
+ * learning allocates. Samples are put in a ring of recent ones and learnt from by stochastic gradient
+ * descent in train, which is called once a tick and takes at most STEPS_PER_TICK steps, so a burst of
+ * resolving waves never costs more than a bounded slice of a tick.
+ * Each new sample is learnt from first, and then earns REPLAYS_PER_SAMPLE steps going round the ring again.
+ * Once those are used up training waits for the next sample, so a handful of early samples aren't
+ * gone over hundreds of times between shots until the net can predict nothing else.
+ * The target for each sample is a smoothed spike at the bin the enemy was found in,
+ * since a bullet hits over a few bins either side.
+ */
+public class NeuralNet {
+    public static final int INPUTS = KnnPredictor.DIMENSIONS;
+    private static final int HIDDEN = 16;
+    private static final int OUTPUTS = GuessFactorStats.BIN_COUNT;
+    /** gradient steps train may take in one call */
+    public static final int STEPS_PER_TICK = 8;
+    /** replay steps each new sample earns, so each sample is revisited about this many times in all */
+    public static final int REPLAYS_PER_SAMPLE = 4;
+    private static final int SAMPLE_CAPACITY = 512;
+    private static final double LEARNING_RATE = 0.05;
+    /** in bins, the half width of the smoothed target */
+    private static final double TARGET_WIDTH = 1.5;
+    private static final long SEED = 0x5EED;
+
+    /** hidden weights, HIDDEN rows of INPUTS weights followed by a bias */
+    private final double[] hiddenWeights = new double[HIDDEN * (INPUTS + 1)];
+    /** output weights, OUTPUTS rows of HIDDEN weights followed by a bias */
+    private final double[] outputWeights = new double[OUTPUTS * (HIDDEN + 1)];
+    /** the smoothed target for each bin, row b is the target when the enemy was found in bin b */
+    private static final double[] TARGETS = new double[OUTPUTS * OUTPUTS];
+    static {
+        for (int b = 0; b < OUTPUTS; b++) {
+            double sum = 0;
+            for (int i = 0; i < OUTPUTS; i++) {
+                double x = (i - b) / TARGET_WIDTH;
+                TARGETS[b * OUTPUTS + i] = 1 / (1 + x * x);
+                sum += TARGETS[b * OUTPUTS + i];
+            }
+            for (int i = 0; i < OUTPUTS; i++) {TARGETS[b * OUTPUTS + i] /= sum;}
+        }
+    }
+
+    // scratch for a forward and backward pass
+    private final double[] input = new double[INPUTS];
+    private final double[] hidden = new double[HIDDEN];
+    private final double[] output = new double[OUTPUTS];
+    private final double[] hiddenDelta = new double[HIDDEN];
+
+    // recent samples, a ring
+    private final float[] sampleFeatures = new float[SAMPLE_CAPACITY * INPUTS];
+    private final int[] sampleBins = new int[SAMPLE_CAPACITY];
+    private int samples = 0;
+    private int nextSample = 0;
+    /** samples not yet learnt from, the newest in the ring */
+    private int pending = 0;
+    /** where revisiting the ring has got to */
+    private int replay = 0;
+    /** replay steps earned by new samples and not yet taken */
+    private int replays = 0;
+    private long steps = 0;
+
+    public NeuralNet() {
+        // small random weights, scaled by fan in, the same every battle
+        java.util.Random random = new java.util.Random(SEED);
+        double hiddenScale = 1 / Math.sqrt(INPUTS + 1);
+        for (int i = 0; i < hiddenWeights.length; i++) {hiddenWeights[i] = (2 * random.nextDouble() - 1) * hiddenScale;}
+        double outputScale = 0.1 / Math.sqrt(HIDDEN + 1);
+        for (int i = 0; i < outputWeights.length; i++) {outputWeights[i] = (2 * random.nextDouble() - 1) * outputScale;}
+    }
+
+    /** the number of samples held */
+    public int size() {return samples;}
+    /** gradient steps taken so far */
+    public long getSteps() {return steps;}
+
+    /** The most probable bin for the features */
+    public int getBestBin(float[] features) {
+        forward(features, 0);
+        int best = 0;
+        for (int i = 1; i < OUTPUTS; i++) {
+            if (output[i] > output[best]) {best = i;}
+        }
+        return best;
+    }
+
+    /** Fills hidden and output (as probabilities) for the features at features[offset] */
+    private void forward(float[] features, int offset) {
+        for (int i = 0; i < INPUTS; i++) {input[i] = features[offset + i];}
+        for (int h = 0; h < HIDDEN; h++) {
+            int row = h * (INPUTS + 1);
+            double sum = hiddenWeights[row + INPUTS];
+            for (int i = 0; i < INPUTS; i++) {sum += hiddenWeights[row + i] * input[i];}
+            hidden[h] = Math.tanh(sum);
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int o = 0; o < OUTPUTS; o++) {
+            int row = o * (HIDDEN + 1);
+            double sum = outputWeights[row + HIDDEN];
+            for (int h = 0; h < HIDDEN; h++) {sum += outputWeights[row + h] * hidden[h];}
+            output[o] = sum;
+            if (sum > max) {max = sum;}
+        }
+        // softmax, less the max so exp can't overflow
+        double total = 0;
+        for (int o = 0; o < OUTPUTS; o++) {
+            output[o] = Math.exp(output[o] - max);
+            total += output[o];
+        }
+        for (int o = 0; o < OUTPUTS; o++) {output[o] /= total;}
+    }
+
+    /** One step of gradient descent on the cross entropy between the output and the sample's target */
+    private void step(int sample) {
+        forward(sampleFeatures, sample * INPUTS);
+        int target = sampleBins[sample] * OUTPUTS;
+        java.util.Arrays.fill(hiddenDelta, 0);
+        for (int o = 0; o < OUTPUTS; o++) {
+            // the gradient of cross entropy through softmax is just output - target
+            double delta = (output[o] - TARGETS[target + o]) * LEARNING_RATE;
+            int row = o * (HIDDEN + 1);
+            for (int h = 0; h < HIDDEN; h++) {
+                hiddenDelta[h] += outputWeights[row + h] * delta;
+                outputWeights[row + h] -= delta * hidden[h];
+            }
+            outputWeights[row + HIDDEN] -= delta;
+        }
+        for (int h = 0; h < HIDDEN; h++) {
+            double delta = hiddenDelta[h] * (1 - hidden[h] * hidden[h]);
+            int row = h * (INPUTS + 1);
+            for (int i = 0; i < INPUTS; i++) {hiddenWeights[row + i] -= delta * input[i];}
+            hiddenWeights[row + INPUTS] -= delta;
+        }
+        steps++;
+    }
+
+    /**
+     * Learns from the samples, at most STEPS_PER_TICK gradient steps and none once the new samples
+     * and the replays they earned have been learnt from. Call once a tick
+     * @return the number of steps taken
+     */
+    public int train() {
+        int taken = 0;
+        for (; taken < STEPS_PER_TICK; taken++) {
+            if (pending > 0) {
+                step((nextSample - pending + SAMPLE_CAPACITY) % SAMPLE_CAPACITY);
+                pending--;
+            } else if (replays > 0) {
+                replay = (replay + 1) % samples;
+                step(replay);
+                replays--;
+            } else {
+                break;
+            }
+        }
+        return taken;
+    }
+
+    /** Adds a sample, overwriting the oldest when the ring is full, learning is left to train */
+    public void add(float[] features, int bin) {
+        System.arraycopy(features, 0, sampleFeatures, nextSample * INPUTS, INPUTS);
+        sampleBins[nextSample] = bin;
+        nextSample = (nextSample + 1) % SAMPLE_CAPACITY;
+        if (samples < SAMPLE_CAPACITY) {samples++;}
+        pending = Math.min(pending + 1, SAMPLE_CAPACITY);
+        replays = Math.min(replays + REPLAYS_PER_SAMPLE, SAMPLE_CAPACITY * REPLAYS_PER_SAMPLE);
+    }
+}
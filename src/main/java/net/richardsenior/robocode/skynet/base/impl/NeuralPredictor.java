@@ -0,0 +1,60 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import net.richardsenior.robocode.skynet.base.TargetingPredictor;
+import net.richardsenior.robocode.skynet.base.Wave;
+
+/**
+ * Neural network targeting: a NeuralNet from the situation when we fired (the same scaled features
+ * KnnPredictor uses) to a softmax over the GuessFactorStats bins, aiming at the most probable bin.
+ * Resolved gun waves become the net's samples, and it learns from them in its train, called once a tick.
+ * The net is handed in, from the enemy's EnemyMemory.
+ */
+public class NeuralPredictor implements TargetingPredictor {
+    private final NeuralNet net;
+    private final Situation situation;
+    private final float[] query = new float[NeuralNet.INPUTS];
+
+    /**
+     * @param escapeAngles null for the naive escape angle
+     * @param enemy the target, null if unknown
+     * @param net what has been learnt about the target
+     */
+    public NeuralPredictor(EscapeAngleTable escapeAngles, EnemyImpl enemy, NeuralNet net) {
+        this.situation = new Situation(escapeAngles, enemy);
+        this.net = net;
+    }
+
+    public NeuralNet getNet() {return net;}
+
+    @Override
+    public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                       double bulletVelocity, double directBearing) {
+        Situation s = situation.set(ourPosition, enemyPosition, bulletVelocity);
+        int best = net.getBestBin(KnnPredictor.getFeatures(s, query));
+        double guessFactor = GuessFactorStats.getGuessFactor(best) * s.direction;
+        return guessFactor * (guessFactor >= 0 ? s.clockwiseEscapeAngle : s.anticlockwiseEscapeAngle);
+    }
+
+    /** Keeps the situation at firing time on the wave, any other kind of wave is ignored */
+    @Override
+    public void recordShot(Wave wave) {
+        if (!(wave instanceof GunWave) || wave.getEnemy() == null) {return;}
+        GunWave gunWave = (GunWave)wave;
+        Point2D.Double enemyPosition = wave.getEnemy().getPosition();
+        if (enemyPosition == null) {return;}
+        Situation s = situation.set((Point2D.Double)gunWave.getCentre(), enemyPosition, wave.getBulletSpeed());
+        gunWave.setAim(s);
+        KnnPredictor.getFeatures(s, gunWave.getFeatures(NeuralNet.INPUTS));
+    }
+
+    /** Gives the net the situation and where the target was found as a sample, learning is left to its train */
+    @Override
+    public void recordResult(Wave wave, Point2D.Double actualPosition) {
+        if (!(wave instanceof GunWave)) {return;}
+        GunWave gunWave = (GunWave)wave;
+        double guessFactor = gunWave.getGuessFactor(actualPosition);
+        if (Double.isNaN(guessFactor)) {return;}
+        net.add(gunWave.getFeatures(NeuralNet.INPUTS), GuessFactorStats.getBin(guessFactor));
+    }
+}
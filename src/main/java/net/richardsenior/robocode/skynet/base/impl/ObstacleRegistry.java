@@ -0,0 +1,290 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import net.richardsenior.robocode.skynet.base.Enemy;
+import net.richardsenior.robocode.skynet.base.Obstacle;
+import net.richardsenior.robocode.skynet.base.Wave;
+
+/**
+ * The backing store of BattlefieldImpl.
+ * Rather than one hashed set of everything, obstacles are kept in typed partitions:
+ * ourself, enemies, waves and anything else. Each partition is an array with stable indices.
+ * Every enemy name is given a dense integer id the first time it is added and the enemy
+ * lives at that index for the rest of the battle (the slot is emptied, not reused, when it dies)
+ * so looking an enemy up by name is a single hash lookup and the ids can index other per-enemy arrays.
+ * getEnemies() returns a cached array which is only rebuilt when enemy membership changes.
+ * Iteration is weakly consistent, in the same way as the concurrent set this replaces,
+ * so obstacles may be removed (including via the iterator) whilst iterating.
+ */
+public class ObstacleRegistry extends AbstractSet<Obstacle> {
+    private static final Enemy[] NO_ENEMIES = new Enemy[0];
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Array backed partition in which an obstacle keeps its index until removed */
+    private static class Slots {
+        Obstacle[] items = new Obstacle[INITIAL_CAPACITY];
+        /** one more than the highest index ever used */
+        int length = 0;
+
+        void set(int index, Obstacle o) {
+            if (index >= items.length) {
+                items = java.util.Arrays.copyOf(items, Math.max(items.length * 2, index + 1));
+            }
+            items[index] = o;
+            if (index >= length) {length = index + 1;}
+        }
+        /** adds to the first free slot and returns its index */
+        int add(Obstacle o) {
+            for (int i = 0; i < length; i++) {
+                if (items[i] == null) {
+                    items[i] = o;
+                    return i;
+                }
+            }
+            set(length, o);
+            return length - 1;
+        }
+        int indexOf(Object o) {
+            for (int i = 0; i < length; i++) {
+                if (items[i] == o) {return i;}
+            }
+            return -1;
+        }
+        void clear() {
+            java.util.Arrays.fill(items, null);
+            length = 0;
+        }
+    }
+
+    private Enemy self;
+    /** enemy name to dense id, ids are never reissued */
+    private Map<String, Integer> ids;
+    private Slots enemies;
+    private Slots waves;
+    private Slots others;
+    private int size = 0;
+    /** incremented whenever enemy membership changes */
+    private int enemyModCount = 0;
+    private Enemy[] enemyView = NO_ENEMIES;
+    private int enemyViewModCount = 0;
+
+    public ObstacleRegistry() {
+        this.ids = new HashMap<>();
+        this.enemies = new Slots();
+        this.waves = new Slots();
+        this.others = new Slots();
+    }
+
+    /** Our own robot, if it has been added */
+    public Enemy getSelf() {return this.self;}
+
+    /**
+     * @return the dense id of the enemy with the given name or -1 if the name has never been seen
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /** the number of ids issued so far, which is an upper bound on any id */
+    public int getIdCount() {return ids.size();}
+
+    /** @return the living enemy with the given id, or null */
+    public Enemy getEnemy(int id) {
+        if (id < 0 || id >= enemies.length) {return null;}
+        return (Enemy)enemies.items[id];
+    }
+
+    /** @return the living enemy with the given name, or null */
+    public Enemy getEnemy(String name) {return getEnemy(getId(name));}
+
+    /**
+     * The living enemies (not including ourself).
+     * The returned array is shared and only rebuilt when an enemy is added or removed, so it must not be modified.
+     */
+    public Enemy[] getEnemies() {
+        if (enemyViewModCount != enemyModCount) {
+            int count = 0;
+            for (int i = 0; i < enemies.length; i++) {
+                if (enemies.items[i] != null) {count++;}
+            }
+            Enemy[] view = new Enemy[count];
+            count = 0;
+            for (int i = 0; i < enemies.length; i++) {
+                if (enemies.items[i] != null) {view[count++] = (Enemy)enemies.items[i];}
+            }
+            enemyView = view;
+            enemyViewModCount = enemyModCount;
+        }
+        return enemyView;
+    }
+
+    /** Removes the enemy with the given name, returning it or null if there was no such enemy */
+    public Enemy removeEnemy(String name) {
+        Enemy e = getEnemy(name);
+        if (e != null) {remove(e);}
+        return e;
+    }
+
+    @Override
+    public boolean add(Obstacle o) {
+        if (o == null) {throw new NullPointerException("Cannot add a null Obstacle");}
+        if (contains(o)) {return false;}
+        if (o instanceof SelfEnemyImpl) {
+            if (self != null) {return false;}
+            self = (Enemy)o;
+        } else if (o instanceof Enemy) {
+            String name = ((Enemy)o).getId();
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = ids.size();
+                ids.put(name, id);
+            }
+            // another instance with this name is already alive
+            if (getEnemy(id) != null) {return false;}
+            enemies.set(id, o);
+            enemyModCount++;
+        } else if (o instanceof Wave) {
+            waves.add(o);
+        } else {
+            others.add(o);
+        }
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {return false;}
+        if (o == self) {
+            self = null;
+        } else if (o instanceof Enemy) {
+            int id = getId(((Enemy)o).getId());
+            if (id < 0 || enemies.items[id] != o) {return false;}
+            enemies.items[id] = null;
+            enemyModCount++;
+        } else {
+            Slots slots = o instanceof Wave ? waves : others;
+            int i = slots.indexOf(o);
+            if (i < 0) {return false;}
+            slots.items[i] = null;
+        }
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {return false;}
+        if (o == self) {return true;}
+        if (o instanceof SelfEnemyImpl) {return false;}
+        if (o instanceof Enemy) {
+            Enemy e = getEnemy(((Enemy)o).getId());
+            return e == o;
+        }
+        if (o instanceof Wave) {return waves.indexOf(o) >= 0;}
+        return others.indexOf(o) >= 0;
+    }
+
+    @Override
+    public int size() {return size;}
+
+    /** Removes all obstacles, enemy ids are retained */
+    @Override
+    public void clear() {
+        self = null;
+        enemies.clear();
+        waves.clear();
+        others.clear();
+        size = 0;
+        enemyModCount++;
+    }
+
+    /**
+     * One more than the highest index accepted by get(int)
+     * Indexed access is for per tick loops which shouldn't allocate an iterator
+     */
+    public int getIndexBound() {return 1 + enemies.length + waves.length + others.length;}
+
+    /**
+     * The obstacle at the given index, in the same order as iteration, or null if that slot is empty
+     * Like the iterator this is weakly consistent, obstacles may be removed between calls
+     */
+    public Obstacle get(int index) {
+        if (index == 0) {return self;}
+        index--;
+        if (index < enemies.length) {return enemies.items[index];}
+        index -= enemies.length;
+        if (index < waves.length) {return waves.items[index];}
+        index -= waves.length;
+        if (index < others.length) {return others.items[index];}
+        return null;
+    }
+
+    /**
+     * Iterates ourself, then the enemies in id order, then waves, then anything else
+     */
+    @Override
+    public Iterator<Obstacle> iterator() {
+        return new Iterator<Obstacle>() {
+            // partition 0 is self, 1 enemies, 2 waves, 3 others
+            private int partition = 0;
+            private int index = -1;
+            private Obstacle next = null;
+            private Obstacle last = null;
+
+            private Slots slots(int p) {
+                switch (p) {
+                    case 1: return enemies;
+                    case 2: return waves;
+                    case 3: return others;
+                    default: return null;
+                }
+            }
+
+            private void advance() {
+                while (next == null && partition < 4) {
+                    if (partition == 0) {
+                        next = self;
+                        partition++;
+                        index = -1;
+                        continue;
+                    }
+                    Slots s = slots(partition);
+                    index++;
+                    if (index >= s.length) {
+                        partition++;
+                        index = -1;
+                        continue;
+                    }
+                    next = s.items[index];
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                advance();
+                return next != null;
+            }
+
+            @Override
+            public Obstacle next() {
+                if (!hasNext()) {throw new NoSuchElementException();}
+                last = next;
+                next = null;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {throw new IllegalStateException();}
+                ObstacleRegistry.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Rectangle2D;
+import net.richardsenior.robocode.skynet.base.Battlefield;
+import net.richardsenior.robocode.skynet.base.Obstacle;
+
+/**
+ * Rasterised alternative to Battlefield.getBattlefieldArea()
+ * The battlefield is divided into square cells of a configurable size (say 4px or 8px)
+ * and each obstacle outline is 'drawn' into a reusable bitset, one bit per cell.
+ * A set bit means the cell is blocked (by a wall, an enemy, a wave sector etc.)
+ * Rasterising costs one Obstacle.contains() call per cell inside each obstacle's bounds
+ * rather than the constructive geometry of Area.subtract(), which gets slower with every
+ * obstacle added. After that isSafe(x, y) is a single bit lookup.
+ * The Area version is kept as the reference implementation.
+ */
+public class OccupancyGrid {
+    private final int cellSize;
+    private final int cols;
+    private final int rows;
+    private final double width;
+    private final double height;
+    /** one bit per cell, row major. Set = blocked */
+    private final long[] blocked;
+    /** the cells blocked by the wall exclusion zone, copied into 'blocked' at the start of every rasterise */
+    private final long[] wallMask;
+    /** scratch rectangle for obstacle bounds */
+    private final Rectangle2D.Double bounds = new Rectangle2D.Double();
+
+    /**
+     * @param width battlefield width
+     * @param height battlefield height
+     * @param wallMargin distance from the walls considered unsafe
+     * @param cellSize the resolution of the grid in pixels
+     */
+    public OccupancyGrid(double width, double height, double wallMargin, int cellSize) {
+        if (cellSize < 1) {throw new IllegalArgumentException("cellSize must be at least 1 pixel");}
+        this.cellSize = cellSize;
+        this.width = width;
+        this.height = height;
+        this.cols = (int)Math.ceil(width / cellSize);
+        this.rows = (int)Math.ceil(height / cellSize);
+        this.blocked = new long[(cols * rows + 63) >> 6];
+        this.wallMask = new long[blocked.length];
+        for (int row = 0; row < rows; row++) {
+            double cy = (row + 0.5) * cellSize;
+            for (int col = 0; col < cols; col++) {
+                double cx = (col + 0.5) * cellSize;
+                if (cx < wallMargin || cx > width - wallMargin || cy < wallMargin || cy > height - wallMargin) {
+                    int i = row * cols + col;
+                    wallMask[i >> 6] |= 1L << i;
+                }
+            }
+        }
+    }
+
+    public int getCellSize() {return this.cellSize;}
+
+    /**
+     * Redraws the grid from scratch with all obstacles on the battlefield
+     * as they will be at 'ticks' in the future. Our own robot is skipped.
+     */
+    public void rasterize(Battlefield battlefield, int ticks) {
+        System.arraycopy(wallMask, 0, blocked, 0, blocked.length);
+        if (battlefield instanceof BattlefieldImpl) {
+            // indexed, so that the per tick rasterisation doesn't allocate an iterator
+            ObstacleRegistry registry = ((BattlefieldImpl)battlefield).getRegistry();
+            for (int i = 0; i < registry.getIndexBound(); i++) {
+                Obstacle obstacle = registry.get(i);
+                if (obstacle == null || obstacle instanceof SelfEnemyImpl) {continue;}
+                rasterize(obstacle, ticks);
+            }
+            return;
+        }
+        for (Obstacle obstacle : battlefield) {
+            if (obstacle instanceof SelfEnemyImpl) {continue;}
+            rasterize(obstacle, ticks);
+        }
+    }
+
+    /**
+     * Marks every cell whose centre lies inside the obstacle.
+     * Only cells within the obstacle's bounding box are tested.
+     */
+    public void rasterize(Obstacle obstacle, int ticks) {
+        obstacle.getBounds(ticks, bounds);
+        if (bounds.width <= 0 || bounds.height <= 0) {return;}
+        int minCol = Math.max(0, (int)(bounds.x / cellSize));
+        int maxCol = Math.min(cols - 1, (int)((bounds.x + bounds.width) / cellSize));
+        int minRow = Math.max(0, (int)(bounds.y / cellSize));
+        int maxRow = Math.min(rows - 1, (int)((bounds.y + bounds.height) / cellSize));
+        for (int row = minRow; row <= maxRow; row++) {
+            double cy = (row + 0.5) * cellSize;
+            for (int col = minCol; col <= maxCol; col++) {
+                int i = row * cols + col;
+                long bit = 1L << i;
+                // already blocked by something else, don't bother testing
+                if ((blocked[i >> 6] & bit) != 0) {continue;}
+                if (obstacle.contains((col + 0.5) * cellSize, cy, ticks)) {blocked[i >> 6] |= bit;}
+            }
+        }
+    }
+
+    /**
+     * O(1) equivalent of getBattlefieldArea(ticks).contains(x, y) at the resolution of this grid
+     * @return true if the cell containing the point is not blocked. Points off the battlefield are never safe
+     */
+    public boolean isSafe(double x, double y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {return false;}
+        int i = (int)(y / cellSize) * cols + (int)(x / cellSize);
+        return (blocked[i >> 6] & (1L << i)) == 0;
+    }
+}
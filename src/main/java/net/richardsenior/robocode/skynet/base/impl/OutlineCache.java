@@ -0,0 +1,116 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Area;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import net.richardsenior.robocode.skynet.base.Battlefield;
+import net.richardsenior.robocode.skynet.base.Obstacle;
+
+/**
+ * Tick scoped memo of Obstacle.getOutline(ticks) keyed by (obstacle, ticks)
+ * Within a single tick the same outlines are asked for by getBattlefieldArea, onPaint etc.
+ * When the battlefield time advances the cache is swept, but an EnemyImpl that has not been
+ * rescanned since its outline was built (same revision) keeps its entry as its shape cannot have changed.
+ * Everything else (waves etc.) is rebuilt every tick.
+ * Areas are mutable so callers must not modify the outlines returned from here.
+ */
+public class OutlineCache {
+    private static class Key {
+        Obstacle obstacle;
+        int ticks;
+        Key(Obstacle obstacle, int ticks) {
+            this.obstacle = obstacle;
+            this.ticks = ticks;
+        }
+        @Override
+        public int hashCode() {return System.identityHashCode(obstacle) * 31 + ticks;}
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {return false;}
+            Key k = (Key)o;
+            return k.obstacle == obstacle && k.ticks == ticks;
+        }
+    }
+
+    private static class Entry {
+        Area outline;
+        long revision;
+    }
+
+    private Battlefield battlefield;
+    private Map<Key, Entry> entries;
+    /** reused for lookups so that a hit allocates nothing */
+    private Key probe;
+    private long time = -1;
+    private long hits = 0;
+    private long misses = 0;
+
+    public OutlineCache(Battlefield battlefield) {
+        this.battlefield = battlefield;
+        this.entries = new HashMap<>();
+        this.probe = new Key(null, 0);
+    }
+
+    public long getHits() {return this.hits;}
+    public long getMisses() {return this.misses;}
+
+    /**
+     * Gets the outline of the given obstacle, building it only if there is no valid cached copy
+     * @see Obstacle#getOutline(int)
+     */
+    public Area getOutline(Obstacle obstacle, int ticks) {
+        this.sweep();
+        probe.obstacle = obstacle;
+        probe.ticks = ticks;
+        Entry e = entries.get(probe);
+        probe.obstacle = null;
+        long revision = getRevision(obstacle);
+        if (e != null && e.revision == revision) {
+            hits++;
+            return e.outline;
+        }
+        misses++;
+        if (e == null) {
+            e = new Entry();
+            entries.put(new Key(obstacle, ticks), e);
+        }
+        e.outline = obstacle.getOutline(ticks);
+        e.revision = revision;
+        return e.outline;
+    }
+
+    /** Drops everything, for example at the start of a round */
+    public void clear() {
+        entries.clear();
+        time = -1;
+    }
+
+    /**
+     * Called on every access, does nothing unless the tick has changed
+     * in which case all entries which may no longer be valid are removed
+     */
+    private void sweep() {
+        long now = battlefield.getSelf().getTime();
+        if (now == time) {return;}
+        time = now;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> me = it.next();
+            Obstacle o = me.getKey().obstacle;
+            boolean keep = o instanceof EnemyImpl
+                && battlefield.contains(o)
+                && me.getValue().revision == getRevision(o);
+            if (!keep) {it.remove();}
+        }
+    }
+
+    /**
+     * Enemies only change shape when rescanned, anything else is considered
+     * to change every tick, so its revision is the current time
+     */
+    private long getRevision(Obstacle o) {
+        if (o instanceof EnemyImpl) {return ((EnemyImpl)o).getRevision();}
+        return time;
+    }
+}
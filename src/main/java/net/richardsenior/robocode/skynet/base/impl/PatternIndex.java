@@ -0,0 +1,257 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * An enemy's movement as a stream of symbols, one per tick, each the velocity and turn rate for that tick
+ * quantized (to whole pixels per tick and whole degrees per tick), indexed by a suffix automaton built online.
+ * The automaton answers "what is the longest run of recent ticks that has happened before, and where"
+ * in O(1) after each symbol: the suffix link of the state for the whole stream is the longest suffix
+ * that occurs at least twice, and every state remembers where its strings first ended.
+ * Adding a symbol is amortised O(1), so nothing ever rescans the history however long the battle.
+ * The unquantized velocity and turn rate of every tick are kept alongside for playing a match forward.
+ *
+ * An index is kept in the enemy's EnemyMemory and carries on across rounds, a separator symbol marking
+ * each round boundary (and any gap in the scans too long to fill in).
+ * Transitions live in one open addressed hash table keyed by state and symbol, with a linked list of
+ * each state's symbols for when a state is cloned.
+ * All told that is under 100 bytes a symbol, so the indexes of all the enemies share TOTAL_SYMBOLS between
+ * them (see limitTo) and each starts again from empty when it reaches its share.
+ */
+public class PatternIndex {
+    private static final int VELOCITY_LEVELS = 17; // -8 .. 8
+    private static final int TURN_LEVELS = 21; // -10 .. 10 degrees
+    public static final int SEPARATOR = VELOCITY_LEVELS * TURN_LEVELS;
+    /** scan gaps up to this many ticks are filled in by repeating the averaged movement */
+    private static final int MAX_GAP = 8;
+    /** enough for a 35 round battle of typical round lengths against one enemy, about 12MB */
+    private static final int TOTAL_SYMBOLS = 1 << 17;
+    private static final int INITIAL_SYMBOLS = 1 << 12; // a few rounds before the first growth
+    private int maxSymbols = TOTAL_SYMBOLS;
+
+    // the stream
+    private short[] symbols;
+    private float[] velocities;
+    private float[] turns;
+    private int length = 0;
+
+    // the automaton, state 0 is the root
+    private int[] stateLength;
+    private int[] link;
+    private int[] firstEnd;
+    private int[] edgeHead;
+    private int states = 0;
+    private int last = 0;
+    // each state's symbols, for copying transitions when cloning
+    private int[] edgeNext;
+    private short[] edgeSymbol;
+    private int edges = 0;
+    // transitions, key is state * (SEPARATOR + 1) + symbol + 1 so that 0 means empty
+    private int[] keys;
+    private int[] targets;
+    private int mask;
+
+    // the last scan
+    private long lastTime = -1;
+    private double lastHeading;
+
+    public PatternIndex() {
+        allocate(INITIAL_SYMBOLS);
+    }
+
+    private void allocate(int symbolCapacity) {
+        // let go of the old arrays first, so that growing only holds on to the old stream, not the old automaton
+        symbols = null; velocities = null; turns = null;
+        stateLength = null; link = null; firstEnd = null; edgeHead = null;
+        edgeNext = null; edgeSymbol = null; keys = null; targets = null;
+        symbols = new short[symbolCapacity];
+        velocities = new float[symbolCapacity];
+        turns = new float[symbolCapacity];
+        // a suffix automaton has fewer than 2n states and 3n transitions
+        stateLength = new int[2 * symbolCapacity];
+        link = new int[2 * symbolCapacity];
+        firstEnd = new int[2 * symbolCapacity];
+        edgeHead = new int[2 * symbolCapacity];
+        edgeNext = new int[3 * symbolCapacity];
+        edgeSymbol = new short[3 * symbolCapacity];
+        // a power of two at least 4n, so the table is never more than three quarters full
+        int slots = Integer.highestOneBit(4 * symbolCapacity - 1) << 1;
+        keys = new int[slots];
+        targets = new int[slots];
+        mask = slots - 1;
+        length = 0;
+        edges = 0;
+        states = 0;
+        last = newState(0, -1);
+        link[last] = -1;
+    }
+
+    /** Starts the stream again at a new size, at least its length, replaying what was there into the new arrays */
+    private void resize(int symbolCapacity) {
+        short[] oldSymbols = symbols;
+        float[] oldVelocities = velocities;
+        float[] oldTurns = turns;
+        int oldLength = length;
+        allocate(symbolCapacity);
+        for (int i = 0; i < oldLength; i++) {append(oldSymbols[i], oldVelocities[i], oldTurns[i]);}
+    }
+
+    /**
+     * Shares TOTAL_SYMBOLS between this many enemies (only ever lowering this index's share, so an enemy
+     * first seen late in a melee round doesn't get more), starting again if the stream is already past it
+     */
+    public void limitTo(int opponents) {
+        int share = Math.max(INITIAL_SYMBOLS, Integer.highestOneBit(TOTAL_SYMBOLS / Math.max(1, opponents)));
+        if (share >= maxSymbols) {return;}
+        maxSymbols = share;
+        if (length > maxSymbols) {
+            allocate(INITIAL_SYMBOLS);
+        } else if (symbols.length > maxSymbols) {
+            resize(maxSymbols);
+        }
+    }
+
+    /** Marks the start of a new round */
+    public void startRound() {
+        lastTime = -1;
+        if (length > 0 && symbols[length - 1] != SEPARATOR) {append(SEPARATOR, 0, 0);}
+    }
+
+    /**
+     * Adds a scan, emitting a symbol for each tick since the last one
+     * @param heading radians
+     */
+    public void addScan(long time, double heading, double velocity) {
+        long gap = time - lastTime;
+        if (lastTime >= 0 && gap > 0) {
+            if (gap > MAX_GAP) {
+                if (symbols[Math.max(0, length - 1)] != SEPARATOR) {append(SEPARATOR, 0, 0);}
+            } else {
+                double turn = robocode.util.Utils.normalRelativeAngle(heading - lastHeading) / gap;
+                int symbol = getSymbol(velocity, turn);
+                for (long i = 0; i < gap; i++) {append(symbol, (float)velocity, (float)turn);}
+            }
+        }
+        if (gap > 0 || lastTime < 0) {
+            lastTime = time;
+            lastHeading = heading;
+        }
+    }
+
+    /** @param turn radians per tick */
+    public static int getSymbol(double velocity, double turn) {
+        int v = (int)Math.round(Math.max(-8, Math.min(8, velocity))) + 8;
+        int t = (int)Math.round(Math.max(-10, Math.min(10, Math.toDegrees(turn)))) + 10;
+        return v * TURN_LEVELS + t;
+    }
+
+    private void append(int symbol, float velocity, float turn) {
+        if (length >= maxSymbols) {
+            // start afresh rather than stop learning
+            allocate(INITIAL_SYMBOLS);
+        } else if (length == symbols.length) {
+            resize(symbols.length * 2);
+        }
+        symbols[length] = (short)symbol;
+        velocities[length] = velocity;
+        turns[length] = turn;
+        length++;
+        extend(symbol);
+    }
+
+    /** the standard online suffix automaton construction */
+    private void extend(int c) {
+        int cur = newState(stateLength[last] + 1, length - 1);
+        int p = last;
+        while (p != -1 && getTransition(p, c) < 0) {
+            putTransition(p, c, cur);
+            p = link[p];
+        }
+        if (p == -1) {
+            link[cur] = 0;
+        } else {
+            int q = getTransition(p, c);
+            if (stateLength[p] + 1 == stateLength[q]) {
+                link[cur] = q;
+            } else {
+                int clone = newState(stateLength[p] + 1, firstEnd[q]);
+                for (int e = edgeHead[q]; e >= 0; e = edgeNext[e]) {
+                    putTransition(clone, edgeSymbol[e], getTransition(q, edgeSymbol[e]));
+                }
+                link[clone] = link[q];
+                while (p != -1 && getTransition(p, c) == q) {
+                    putTransition(p, c, clone);
+                    p = link[p];
+                }
+                link[q] = clone;
+                link[cur] = clone;
+            }
+        }
+        last = cur;
+    }
+
+    private int newState(int len, int end) {
+        int s = states++;
+        stateLength[s] = len;
+        firstEnd[s] = end;
+        edgeHead[s] = -1;
+        return s;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B1;
+        return (h ^ (h >>> 15)) & mask;
+    }
+
+    private int getTransition(int state, int symbol) {
+        int key = state * (SEPARATOR + 1) + symbol + 1;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {return targets[i];}
+            if (keys[i] == 0) {return -1;}
+        }
+    }
+
+    private void putTransition(int state, int symbol, int target) {
+        int key = state * (SEPARATOR + 1) + symbol + 1;
+        int i = slot(key);
+        while (keys[i] != 0 && keys[i] != key) {i = (i + 1) & mask;}
+        if (keys[i] == 0) {
+            keys[i] = key;
+            int e = edges++;
+            edgeSymbol[e] = (short)symbol;
+            edgeNext[e] = edgeHead[state];
+            edgeHead[state] = e;
+        }
+        targets[i] = target;
+    }
+
+    /** the number of ticks in the stream */
+    public int length() {return length;}
+
+    /**
+     * The state for the longest suffix of the stream that happened before, -1 if none has.
+     * Walk to shorter (and earlier ending) matches with getShorterMatch
+     */
+    public int getLongestMatch() {
+        if (length == 0) {return -1;}
+        int s = link[last];
+        return s > 0 ? s : -1;
+    }
+
+    /** the next shorter match, -1 when there are none */
+    public int getShorterMatch(int match) {
+        int s = link[match];
+        return s > 0 ? s : -1;
+    }
+
+    /** how many ticks the match covers */
+    public int getMatchLength(int match) {return stateLength[match];}
+    /** where in the stream the match first ended, play forward from the tick after this */
+    public int getMatchEnd(int match) {return firstEnd[match];}
+
+    public boolean isSeparator(int i) {return symbols[i] == SEPARATOR;}
+    public double getVelocity(int i) {return velocities[i];}
+    /** radians per tick */
+    public double getTurn(int i) {return turns[i];}
+    /** heading at the last scan, radians */
+    public double getLastHeading() {return lastHeading;}
+    public long getLastTime() {return lastTime;}
+}
@@ -0,0 +1,98 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import net.richardsenior.robocode.skynet.base.Battlefield;
+import net.richardsenior.robocode.skynet.base.TargetingPredictor;
+import net.richardsenior.robocode.skynet.base.Wave;
+
+/**
+ * Pattern matching targeting: finds the longest run of the enemy's most recent movement that it has
+ * made before (PatternIndex does this in constant time) and plays forward what it did next,
+ * from where it is now, until a bullet fired now would reach it.
+ * If what followed the match runs out (the round ended, or it is the present) before the bullet
+ * arrives, successively shorter matches are tried, which happened earlier and so have more after them.
+ * It learns from scans rather than from our shots, so recordShot and recordResult do nothing.
+ */
+public class PatternPredictor implements TargetingPredictor {
+    /** matches shorter than this are too likely to be coincidence */
+    public static final int MIN_MATCH = 5;
+    private static final double WALL_MARGIN = 18;
+    private static final int MAX_FLIGHT_TICKS = 120;
+
+    private final Battlefield battlefield;
+    private final EnemyImpl enemy;
+    private final PatternIndex index;
+    private final Point2D.Double predicted = new Point2D.Double();
+
+    public PatternPredictor(Battlefield battlefield, EnemyImpl enemy, PatternIndex index) {
+        this.battlefield = battlefield;
+        this.enemy = enemy;
+        this.index = index;
+    }
+
+    /** how many ticks the current longest match covers, 0 if there isn't one */
+    public int getMatchLength() {
+        int match = index.getLongestMatch();
+        return match < 0 ? 0 : index.getMatchLength(match);
+    }
+
+    /**
+     * The enemy's position when a bullet fired now from ourPosition would reach it, or null if
+     * there is no match long enough with enough history after it.
+     * enemyPosition is ignored, the replay starts from the enemy's last scanned position
+     * @return the same instance each call
+     */
+    public Point2D.Double getIntercept(Point2D.Double ourPosition, double bulletVelocity) {
+        if (!enemy.hasPosition()) {return null;}
+        long elapsed = battlefield.getSelf().getTime() - index.getLastTime();
+        for (int match = index.getLongestMatch(); match >= 0 && index.getMatchLength(match) >= MIN_MATCH;
+             match = index.getShorterMatch(match)) {
+            if (replay(index.getMatchEnd(match) + 1, ourPosition, bulletVelocity, elapsed)) {return predicted;}
+        }
+        return null;
+    }
+
+    /** Plays the stream forward from 'from', true if the bullet caught up before it ran out */
+    private boolean replay(int from, Point2D.Double ourPosition, double bulletVelocity, long elapsed) {
+        double width = battlefield.getSelf().getBattleFieldWidth();
+        double height = battlefield.getSelf().getBattleFieldHeight();
+        Point2D.Double position = enemy.getPosition();
+        double x = position.x;
+        double y = position.y;
+        double heading = index.getLastHeading();
+        for (int t = 1; t <= MAX_FLIGHT_TICKS; t++) {
+            int i = from + t - 1;
+            if (i >= index.length() || index.isSeparator(i)) {return false;}
+            heading += index.getTurn(i);
+            double velocity = index.getVelocity(i);
+            x = Math.max(WALL_MARGIN, Math.min(width - WALL_MARGIN, x + velocity * Math.sin(heading)));
+            y = Math.max(WALL_MARGIN, Math.min(height - WALL_MARGIN, y + velocity * Math.cos(heading)));
+            // the bullet leaves on the tick after the scan at the earliest
+            double travelled = bulletVelocity * (t - elapsed);
+            if (travelled > 0 && travelled * travelled >= ourPosition.distanceSq(x, y)) {
+                predicted.setLocation(x, y);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the offset from directBearing to the replayed intercept, NaN if there isn't one
+     * (so the caller can fall back to another predictor)
+     */
+    @Override
+    public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                       double bulletVelocity, double directBearing) {
+        Point2D.Double intercept = getIntercept(ourPosition, bulletVelocity);
+        if (intercept == null) {return Double.NaN;}
+        double bearing = Math.atan2(intercept.x - ourPosition.x, intercept.y - ourPosition.y);
+        return robocode.util.Utils.normalRelativeAngle(bearing - directBearing);
+    }
+
+    @Override
+    public void recordShot(Wave wave) {}
+
+    @Override
+    public void recordResult(Wave wave, Point2D.Double actualPosition) {}
+}
@@ -0,0 +1,246 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import robocode.AdvancedRobot;
+import robocode.Event;
+import robocode.RobocodeFileOutputStream;
+
+/**
+ * Lightweight per subsystem counters which are compiled in permanently and can be
+ * switched on for real battles. They are off unless asked for (see configure), and when
+ * disabled every call is a single static boolean test.
+ * Counters are static so that they can be bumped from anywhere without threading a reference through
+ * every constructor, and so they survive from one round to the next (robocode creates a new robot each round).
+ * At the end of each round a compact one line CSV summary is appended to a file in the robot's data directory
+ * and the round counters are reset. At the end of the battle a line with the battle totals is appended.
+ * Latency histograms for the tick phases and a few hot spots are kept alongside the counters,
+ * their p50, p99 and max for each round are appended to a second file.
+ */
+public final class PerfCounters {
+    public static final int TICKS = 0;
+    public static final int WAVES_CREATED = 1;
+    public static final int WAVES_EXPIRED = 2;
+    public static final int AREA_CONSTRUCTIONS = 3;
+    public static final int OUTLINE_CALLS = 4;
+    public static final int SAFE_POINT_TESTS = 5;
+    public static final int PREDICTOR_REBUILDS = 6;
+    public static final int SKIPPED_TURNS = 7;
+    /** bytes allocated by the robot thread during update(), where the JVM can tell us */
+    public static final int ALLOCATED_BYTES = 8;
+    /** our own bullets tracked by GunWaveTracker, and those that reached their target and were learnt from */
+    public static final int GUN_WAVES_FIRED = 9;
+    public static final int GUN_WAVES_RESOLVED = 10;
+    public static final int COUNTER_COUNT = 11;
+    public static final String[] COUNTER_NAMES = {
+        "ticks", "waves_created", "waves_expired", "area_constructions",
+        "outline_calls", "safe_point_tests", "predictor_rebuilds", "skipped_turns",
+        "allocated_bytes", "gun_waves_fired", "gun_waves_resolved"
+    };
+    /** one histogram for each TickBudget phase followed by these */
+    public static final int LATENCY_TICK = TickBudget.PHASE_COUNT;
+    public static final int LATENCY_DO_MOVE = TickBudget.PHASE_COUNT + 1;
+    public static final int LATENCY_GUN_UPDATE = TickBudget.PHASE_COUNT + 2;
+    public static final int LATENCY_WAVE_CONSTRUCTION = TickBudget.PHASE_COUNT + 3;
+    public static final int LATENCY_PREDICTOR_UPDATE = TickBudget.PHASE_COUNT + 4;
+    /** NeuralNet.train, bounded by its STEPS_PER_TICK */
+    public static final int LATENCY_NEURAL_TRAIN = TickBudget.PHASE_COUNT + 5;
+    public static final int LATENCY_COUNT = TickBudget.PHASE_COUNT + 6;
+    public static final String FILE_NAME = "perf.csv";
+    public static final String LATENCY_FILE_NAME = "latency.csv";
+    /** stop appending once a file is this big, the two files together must fit robocode's 200KB data quota */
+    private static final long MAX_FILE_BYTES = 64 * 1024;
+    /** system property, or property in the bundled CONFIG_RESOURCE, which turns the counters on */
+    public static final String ENABLED_PROPERTY = "skynet.perf";
+    public static final String CONFIG_RESOURCE = "/config/robot.properties";
+
+    private static boolean enabled = false;
+    private static final long[] round = new long[COUNTER_COUNT];
+    private static final long[] battle = new long[COUNTER_COUNT];
+    /** events dispatched by class, [0] this round and [1] this battle */
+    private static final Map<Class<?>, long[]> events = new LinkedHashMap<>();
+    private static final LatencyHistogram[] latencies = new LatencyHistogram[LATENCY_COUNT];
+    /** per thread allocation counter, null until looked up and if unavailable (e.g. refused by the sandbox) */
+    private static com.sun.management.ThreadMXBean threadBean;
+    private static boolean threadBeanResolved = false;
+    static {
+        for (int i = 0; i < TickBudget.PHASE_COUNT; i++) {latencies[i] = new LatencyHistogram(TickBudget.PHASE_NAMES[i]);}
+        latencies[LATENCY_TICK] = new LatencyHistogram("tick");
+        latencies[LATENCY_DO_MOVE] = new LatencyHistogram("do_move");
+        latencies[LATENCY_GUN_UPDATE] = new LatencyHistogram("gun_update");
+        latencies[LATENCY_WAVE_CONSTRUCTION] = new LatencyHistogram("wave_construction");
+        latencies[LATENCY_PREDICTOR_UPDATE] = new LatencyHistogram("predictor_update");
+        latencies[LATENCY_NEURAL_TRAIN] = new LatencyHistogram("neural_train");
+    }
+
+    private PerfCounters() {}
+
+    public static boolean isEnabled() {return enabled;}
+    public static void setEnabled(boolean on) {enabled = on;}
+
+    /**
+     * Turns the counters on if ENABLED_PROPERTY is "true", either as a system property
+     * (e.g. -Dskynet.perf=true when running robocode) or in the robot's CONFIG_RESOURCE, and off otherwise
+     */
+    public static void configure() {
+        String value = null;
+        try {
+            value = System.getProperty(ENABLED_PROPERTY);
+        } catch (SecurityException e) {
+            // robots may not be allowed to read system properties, fall back on the robot's own
+        }
+        if (value == null) {
+            try (InputStream in = PerfCounters.class.getResourceAsStream(CONFIG_RESOURCE)) {
+                if (in != null) {
+                    java.util.Properties properties = new java.util.Properties();
+                    properties.load(in);
+                    value = properties.getProperty(ENABLED_PROPERTY);
+                }
+            } catch (IOException | SecurityException e) {
+                e.printStackTrace();
+            }
+        }
+        setEnabled(Boolean.parseBoolean(value));
+    }
+
+    /** Adds one to the given counter */
+    public static void increment(int counter) {
+        if (!enabled) {return;}
+        round[counter]++;
+    }
+
+    /** Adds n to the given counter */
+    public static void add(int counter, long n) {
+        if (!enabled) {return;}
+        round[counter] += n;
+    }
+
+    /** Counts an event by its class, allocates only the first time each class is seen */
+    public static void countEvent(Event event) {
+        if (!enabled) {return;}
+        long[] count = events.get(event.getClass());
+        if (count == null) {
+            count = new long[2];
+            events.put(event.getClass(), count);
+        }
+        count[0]++;
+    }
+
+    public static long get(int counter) {return round[counter];}
+
+    /** Records a duration against one of the LATENCY_ histograms */
+    public static void record(int latency, long nanos) {
+        if (!enabled) {return;}
+        latencies[latency].record(nanos);
+    }
+
+    /**
+     * Bytes allocated so far by the calling thread, for passing to endAllocation
+     * @return -1 if disabled or the JVM can't tell us
+     */
+    public static long startAllocation() {
+        if (!enabled) {return -1;}
+        if (!threadBeanResolved) {
+            threadBeanResolved = true;
+            try {
+                java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+                    threadBean = (com.sun.management.ThreadMXBean)bean;
+                    threadBean.setThreadAllocatedMemoryEnabled(true);
+                }
+            } catch (Throwable t) {
+                // not a HotSpot jvm, or management is off limits to robots
+                threadBean = null;
+            }
+        }
+        if (threadBean == null) {return -1;}
+        try {
+            return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (Throwable t) {
+            threadBean = null;
+            return -1;
+        }
+    }
+
+    /** Counts the bytes allocated by the calling thread since startAllocation, the budget is held by AllocationTest */
+    public static void endAllocation(long start) {
+        if (!enabled || start < 0 || threadBean == null) {return;}
+        long bytes = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+        round[ALLOCATED_BYTES] += bytes;
+    }
+
+    /** The histogram for this round, callers must not record into or reset it */
+    public static LatencyHistogram getLatency(int latency) {return latencies[latency];}
+
+    /**
+     * Appends this round's counters to the data file and starts the next round from zero
+     * @param robot used to locate the data directory
+     * @param roundNumber the round which has just ended
+     */
+    public static void endRound(AdvancedRobot robot, int roundNumber) {
+        if (!enabled) {return;}
+        for (int i = 0; i < COUNTER_COUNT; i++) {battle[i] += round[i];}
+        for (long[] count : events.values()) {count[1] += count[0];}
+        write(robot, String.valueOf(roundNumber), round, 0);
+        writeLatencies(robot, roundNumber);
+        java.util.Arrays.fill(round, 0);
+        for (long[] count : events.values()) {count[0] = 0;}
+        for (LatencyHistogram h : latencies) {h.reset();}
+    }
+
+    /** Appends the battle totals to the data file */
+    public static void endBattle(AdvancedRobot robot) {
+        if (!enabled) {return;}
+        write(robot, "total", battle, 1);
+    }
+
+    private static void write(AdvancedRobot robot, String label, long[] counters, int eventColumn) {
+        StringBuilder header = new StringBuilder("round");
+        for (String name : COUNTER_NAMES) {header.append(',').append(name);}
+        header.append(",events");
+        StringBuilder sb = new StringBuilder(label);
+        for (long c : counters) {sb.append(',').append(c);}
+        sb.append(',');
+        boolean first = true;
+        for (Map.Entry<Class<?>, long[]> e : events.entrySet()) {
+            if (!first) {sb.append('|');}
+            sb.append(e.getKey().getSimpleName()).append(':').append(e.getValue()[eventColumn]);
+            first = false;
+        }
+        append(robot, FILE_NAME, header, sb);
+    }
+
+    /** one line per histogram, times in microseconds */
+    private static void writeLatencies(AdvancedRobot robot, int roundNumber) {
+        StringBuilder sb = new StringBuilder();
+        for (LatencyHistogram h : latencies) {
+            if (h.getCount() == 0) {continue;}
+            if (sb.length() > 0) {sb.append('\n');}
+            sb.append(roundNumber).append(',').append(h.getName()).append(',').append(h.getCount())
+                .append(',').append(h.getPercentile(50) / 1000)
+                .append(',').append(h.getPercentile(99) / 1000)
+                .append(',').append(h.getMax() / 1000);
+        }
+        if (sb.length() == 0) {return;}
+        append(robot, LATENCY_FILE_NAME, "round,latency,count,p50_us,p99_us,max_us", sb);
+    }
+
+    /** appends the lines to the data file, preceded by the header if the file is new */
+    private static void append(AdvancedRobot robot, String fileName, CharSequence header, CharSequence lines) {
+        File file = robot.getDataFile(fileName);
+        if (file == null || file.length() > MAX_FILE_BYTES) {return;}
+        boolean isNew = file.length() == 0;
+        try (PrintStream out = new PrintStream(new RobocodeFileOutputStream(file.getPath(), true))) {
+            if (isNew) {out.println(header);}
+            out.println(lines);
+        } catch (IOException | SecurityException e) {
+            // out of data quota or similar, statistics are not worth dying for
+            e.printStackTrace();
+        }
+    }
+}
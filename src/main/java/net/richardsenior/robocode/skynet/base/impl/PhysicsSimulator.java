@@ -0,0 +1,129 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import robocode.Rules;
+
+/**
+ * Precise prediction of robot movement following the engine's own rules, one tick at a time.
+ * Each step does what robocode does each turn, in the same order:
+ * the body turns by at most 10 - 0.75|v| degrees, velocity changes by at most +1 when speeding up
+ * and -2 when slowing down (a reversal slows first, then speeds up the other way within the same tick),
+ * and the robot only slows down early enough to stop exactly at the end of the requested distance.
+ * Then the robot moves along its new heading and, if it ends up overlapping a wall,
+ * it is put back against the wall and stops dead.
+ * States are stepped in place and nothing is allocated, so thousands of steps a tick is cheap.
+ * One instance is shared by the mover and guns through BattlefieldImpl.getSimulator().
+ */
+public class PhysicsSimulator {
+    /** half the width of a robot, the closest its centre can get to a wall */
+    public static final double ROBOT_HALF_SIZE = 18.0;
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    /**
+     * @param width battlefield width
+     * @param height battlefield height
+     */
+    public PhysicsSimulator(double width, double height) {
+        this.minX = ROBOT_HALF_SIZE;
+        this.minY = ROBOT_HALF_SIZE;
+        this.maxX = width - ROBOT_HALF_SIZE;
+        this.maxY = height - ROBOT_HALF_SIZE;
+    }
+
+    /**
+     * Advances the state by one tick
+     * @param turnRemaining radians still to turn, positive is clockwise, as for setTurnRightRadians
+     * @param distanceRemaining pixels still to travel, negative is backwards, may be infinite, as for setAhead
+     * @param maxVelocity as for setMaxVelocity
+     * @return the state, for chaining
+     */
+    public RobotState step(RobotState s, double turnRemaining, double distanceRemaining, double maxVelocity) {
+        // turn first, at a rate limited by the speed we are going at before accelerating
+        double turnRate = Rules.getTurnRateRadians(s.velocity);
+        double turn = Math.max(-turnRate, Math.min(turnRate, turnRemaining));
+        s.heading = robocode.util.Utils.normalAbsoluteAngle(s.heading + turn);
+        // then speed
+        s.velocity = newVelocity(s.velocity, distanceRemaining, Math.min(maxVelocity, Rules.MAX_VELOCITY));
+        // then move
+        s.x += s.velocity * Math.sin(s.heading);
+        s.y += s.velocity * Math.cos(s.heading);
+        s.hitWall = false;
+        if (s.x < minX || s.x > maxX || s.y < minY || s.y > maxY) {
+            s.x = Math.max(minX, Math.min(maxX, s.x));
+            s.y = Math.max(minY, Math.min(maxY, s.y));
+            s.velocity = 0;
+            s.hitWall = true;
+        }
+        s.time++;
+        return s;
+    }
+
+    /**
+     * Advances the state by one tick driving towards an absolute heading, the usual way of describing
+     * a movement option when predicting (orbit this way, head for that point etc.)
+     * @param goalHeading the heading the robot wants to travel along, radians
+     * @param direction 1 to drive forwards along goalHeading, -1 to drive backwards along it
+     *        (so the front of the robot faces the other way), 0 to stop
+     */
+    public RobotState stepTowards(RobotState s, double goalHeading, int direction) {
+        double facing = direction < 0 ? goalHeading + Math.PI : goalHeading;
+        double turn = robocode.util.Utils.normalRelativeAngle(facing - s.heading);
+        double distance = direction == 0 ? 0 : direction * Double.POSITIVE_INFINITY;
+        return step(s, turn, distance, Rules.MAX_VELOCITY);
+    }
+
+    /**
+     * Steps the state 'ticks' times towards the goal heading
+     * @return true if a wall was hit on the way
+     */
+    public boolean simulate(RobotState s, double goalHeading, int direction, int ticks) {
+        boolean hit = false;
+        for (int i = 0; i < ticks; i++) {
+            stepTowards(s, goalHeading, direction);
+            hit |= s.hitWall;
+        }
+        return hit;
+    }
+
+    /** Whether the point is somewhere a robot's centre can be */
+    public boolean inField(double x, double y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * The engine's velocity rule
+     * @param velocity current velocity
+     * @param distance remaining, signed
+     * @param maxVelocity at most Rules.MAX_VELOCITY
+     */
+    public static double newVelocity(double velocity, double distance, double maxVelocity) {
+        if (distance < 0) {
+            // the rule is symmetric, so solve the forwards case
+            return -newVelocity(-velocity, -distance, maxVelocity);
+        }
+        double goal = distance == Double.POSITIVE_INFINITY ? maxVelocity : Math.min(maxVelocityForDistance(distance), maxVelocity);
+        if (velocity >= 0) {
+            return Math.max(velocity - Rules.DECELERATION, Math.min(goal, velocity + Rules.ACCELERATION));
+        }
+        // moving backwards but wanting to go forwards, brake and then accelerate within the tick
+        return Math.max(velocity - Rules.ACCELERATION, Math.min(goal, velocity + maxDeceleration(-velocity)));
+    }
+
+    /** how much speed can be shed in one tick when reversing from the given speed */
+    private static double maxDeceleration(double speed) {
+        double decelTime = speed / Rules.DECELERATION;
+        double accelTime = 1 - decelTime;
+        return Math.min(1, decelTime) * Rules.DECELERATION + Math.max(0, accelTime) * Rules.ACCELERATION;
+    }
+
+    /** the fastest we can be going and still stop within the given distance */
+    private static double maxVelocityForDistance(double distance) {
+        double decelTime = Math.max(1, Math.ceil((Math.sqrt((4 * 2 / Rules.DECELERATION) * distance + 1) - 1) / 2));
+        if (decelTime == Double.POSITIVE_INFINITY) {return Rules.MAX_VELOCITY;}
+        double decelDist = (decelTime / 2.0) * (decelTime - 1) * Rules.DECELERATION;
+        return ((decelTime - 1) * Rules.DECELERATION) + ((distance - decelDist) / decelTime);
+    }
+}
@@ -0,0 +1,185 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Fits x(t) and y(t) as quadratics over the same sliding window of scans as SimplePredictor,
+ * so it picks up acceleration and the curve of an orbiting enemy where the linear fit cannot.
+ * The sums of the 3x3 normal equations (sums of t^0..t^4, and of x, tx, t²x and likewise for y)
+ * are updated in O(1) as scans are added and evicted, and solved in closed form by Cramer's rule
+ * when a prediction is asked for. Nothing is allocated.
+ * Times are held relative to a base which is moved up to the newest scan every REBASE_SPAN ticks,
+ * keeping t small so the normal equations stay well conditioned.
+ * Quadratics run away when extrapolated so predicted movement is capped at the maximum robot speed.
+ * With fewer than three distinct scan times this falls back to the linear fit it extends.
+ */
+public class QuadraticPredictor extends SimplePredictor {
+    private static final double MAX_SPEED = 8.0; // pixels per tick
+    private static final long REBASE_SPAN = 32; // ticks
+    /** how far ahead getIntercept will look for a bullet to catch up */
+    private static final int MAX_INTERCEPT_TICKS = 120;
+
+    private long base = Long.MIN_VALUE;
+    private long lastTime;
+    /** sums of t^0 .. t^4 */
+    private double s0, s1, s2, s3, s4;
+    private double sx, stx, sttx;
+    private double sy, sty, stty;
+    /** x(t) = ax + bx t + cx t², valid while solved is true */
+    private double ax, bx, cx, ay, by, cy;
+    private boolean solved = false;
+    private boolean solvable = false;
+
+    @Override
+    public void add(long time, double x, double y) {
+        super.add(time, x, y);
+        if (base == Long.MIN_VALUE) {base = time;}
+        if (time - base > REBASE_SPAN) {rebase(time);}
+        double t = time - base;
+        double tt = t * t;
+        s0 += 1;
+        s1 += t;
+        s2 += tt;
+        s3 += tt * t;
+        s4 += tt * tt;
+        sx += x;
+        stx += t * x;
+        sttx += tt * x;
+        sy += y;
+        sty += t * y;
+        stty += tt * y;
+        lastTime = time;
+        solved = false;
+    }
+
+    @Override
+    public void remove(long time, double x, double y) {
+        super.remove(time, x, y);
+        if (getCount() == 0) {
+            clearSums();
+            return;
+        }
+        double t = time - base;
+        double tt = t * t;
+        s0 -= 1;
+        s1 -= t;
+        s2 -= tt;
+        s3 -= tt * t;
+        s4 -= tt * tt;
+        sx -= x;
+        stx -= t * x;
+        sttx -= tt * x;
+        sy -= y;
+        sty -= t * y;
+        stty -= tt * y;
+        solved = false;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        clearSums();
+    }
+
+    private void clearSums() {
+        base = Long.MIN_VALUE;
+        s0 = s1 = s2 = s3 = s4 = 0;
+        sx = stx = sttx = sy = sty = stty = 0;
+        solved = false;
+    }
+
+    /**
+     * Moves the time origin to newBase, re-expressing every sum in terms of t' = t - d
+     * by binomial expansion so no scans need to be revisited
+     */
+    private void rebase(long newBase) {
+        double d = newBase - base;
+        double d2 = d * d, d3 = d2 * d, d4 = d3 * d;
+        double n = s0, t1 = s1, t2 = s2, t3 = s3;
+        s4 = s4 - 4 * d * t3 + 6 * d2 * t2 - 4 * d3 * t1 + n * d4;
+        s3 = t3 - 3 * d * t2 + 3 * d2 * t1 - n * d3;
+        s2 = t2 - 2 * d * t1 + n * d2;
+        s1 = t1 - n * d;
+        sttx = sttx - 2 * d * stx + d2 * sx;
+        stx = stx - d * sx;
+        stty = stty - 2 * d * sty + d2 * sy;
+        sty = sty - d * sy;
+        base = newBase;
+    }
+
+    /** solves the normal equations if they have changed, returns false if they are singular */
+    private boolean solve() {
+        if (solved) {return solvable;}
+        solved = true;
+        solvable = false;
+        if (s0 < 3) {return false;}
+        // | s0 s1 s2 |
+        // | s1 s2 s3 |
+        // | s2 s3 s4 |
+        double m00 = s2 * s4 - s3 * s3;
+        double m01 = s1 * s4 - s3 * s2;
+        double m02 = s1 * s3 - s2 * s2;
+        double det = s0 * m00 - s1 * m01 + s2 * m02;
+        // fewer than three distinct times, or close enough to it
+        if (Math.abs(det) <= 1e-9 * s0 * s2 * Math.max(1, s4)) {return false;}
+        ax = cramer0(sx, stx, sttx) / det;
+        bx = cramer1(sx, stx, sttx) / det;
+        cx = cramer2(sx, stx, sttx) / det;
+        ay = cramer0(sy, sty, stty) / det;
+        by = cramer1(sy, sty, stty) / det;
+        cy = cramer2(sy, sty, stty) / det;
+        solvable = true;
+        return true;
+    }
+
+    /** determinants of the normal matrix with column 0, 1 or 2 replaced by the right hand side */
+    private double cramer0(double r0, double r1, double r2) {
+        return r0 * (s2 * s4 - s3 * s3) - s1 * (r1 * s4 - s3 * r2) + s2 * (r1 * s3 - s2 * r2);
+    }
+    private double cramer1(double r0, double r1, double r2) {
+        return s0 * (r1 * s4 - s3 * r2) - r0 * (s1 * s4 - s3 * s2) + s2 * (s1 * r2 - r1 * s2);
+    }
+    private double cramer2(double r0, double r1, double r2) {
+        return s0 * (s2 * r2 - r1 * s3) - s1 * (s1 * r2 - r1 * s2) + r0 * (s1 * s3 - s2 * s2);
+    }
+
+    /**
+     * The change in the fitted curve between the last scan and 'ticks' later, added to the last scan
+     * so that the prediction starts from where the enemy actually was
+     */
+    @Override
+    public Point2D.Double predict(int ticks) {
+        if (!hasLast() || !solve()) {return super.predict(ticks);}
+        double t0 = lastTime - base;
+        double t1 = t0 + ticks;
+        double dx = bx * (t1 - t0) + cx * (t1 * t1 - t0 * t0);
+        double dy = by * (t1 - t0) + cy * (t1 * t1 - t0 * t0);
+        double limit = MAX_SPEED * Math.abs(ticks);
+        double lengthSq = dx * dx + dy * dy;
+        if (lengthSq > limit * limit) {
+            double scale = limit / Math.sqrt(lengthSq);
+            dx *= scale;
+            dy *= scale;
+        }
+        result.setLocation(getLastX() + dx, getLastY() + dy);
+        return result;
+    }
+
+    /** The first tick at which a bullet from origin could have reached the predicted position */
+    @Override
+    public Point2D.Double getIntercept(double bulletVelocity, Point2D.Double origin) {
+        if (!hasLast() || !solve()) {return super.getIntercept(bulletVelocity, origin);}
+        Point2D.Double p = null;
+        for (int ticks = 1; ticks <= MAX_INTERCEPT_TICKS; ticks++) {
+            p = predict(ticks);
+            double reach = bulletVelocity * ticks;
+            if (p.distanceSq(origin) <= reach * reach) {break;}
+        }
+        return p;
+    }
+
+    /** fitted acceleration along x, pixels per tick per tick */
+    public double getAccelerationX() {return solve() ? 2 * cx : 0;}
+    /** fitted acceleration along y, pixels per tick per tick */
+    public double getAccelerationY() {return solve() ? 2 * cy : 0;}
+}
@@ -0,0 +1,55 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * Mutable snapshot of a robot's movement state, stepped forward in place by PhysicsSimulator.
+ * Deliberately a plain bag of fields so that predictions can reuse a handful of instances
+ * rather than allocating one per simulated tick.
+ */
+public class RobotState {
+    public double x;
+    public double y;
+    /** radians, robocode convention (0 is north, clockwise) */
+    public double heading;
+    /** pixels per tick, negative when moving backwards */
+    public double velocity;
+    public long time;
+    /** true if the last step ran into a wall */
+    public boolean hitWall;
+
+    public RobotState() {}
+
+    public RobotState set(double x, double y, double heading, double velocity, long time) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.velocity = velocity;
+        this.time = time;
+        this.hitWall = false;
+        return this;
+    }
+
+    public RobotState set(RobotState other) {
+        this.x = other.x;
+        this.y = other.y;
+        this.heading = other.heading;
+        this.velocity = other.velocity;
+        this.time = other.time;
+        this.hitWall = other.hitWall;
+        return this;
+    }
+
+    /** Copies our own robot's current state */
+    public RobotState set(robocode.AdvancedRobot robot) {
+        return set(robot.getX(), robot.getY(), robot.getHeadingRadians(), robot.getVelocity(), robot.getTime());
+    }
+
+    public double distanceSq(double px, double py) {
+        double dx = px - x, dy = py - y;
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public String toString() {
+        return "RobotState[x=" + x + ",y=" + y + ",heading=" + heading + ",velocity=" + velocity + ",time=" + time + "]";
+    }
+}
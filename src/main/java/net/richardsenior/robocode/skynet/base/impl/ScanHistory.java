@@ -0,0 +1,242 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import java.util.AbstractCollection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import net.richardsenior.robocode.skynet.base.EventWrapper;
+import net.richardsenior.robocode.skynet.base.Predictor;
+
+/**
+ * Fixed capacity ring buffer of the most recent sightings of one robot.
+ * Each property is kept in its own primitive array (struct of arrays) so that predictors and guns
+ * reading the history walk a few contiguous arrays rather than chasing a linked list of wrapper objects,
+ * and appending a scan is O(1) and allocates nothing. Once full the oldest scan is overwritten.
+ * Index 0 is always the oldest scan held and size() - 1 the most recent.
+ * Angles are stored in radians whatever their source.
+ * For code that wants EventWrappers there is a read only Deque view backed by one preallocated
+ * wrapper per slot. A wrapper shows whichever scan currently occupies its slot, so wrappers
+ * should not be held on to across scans.
+ */
+public class ScanHistory {
+    private final int capacity;
+    private final long[] time;
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;
+    private final double[] velocity;
+    private final double[] energy;
+    private final double[] distance;
+    private final double[] bearing;
+    /** physical index of the oldest scan */
+    private int head = 0;
+    private int size = 0;
+    private final String name;
+    /** the scan overwritten by the most recent add, if it overwrote one */
+    private boolean evicted = false;
+    private long evictedTime;
+    private double evictedX, evictedY;
+    /** predictor reported by the wrappers in the view */
+    private Predictor predictor;
+    private final SlotView[] slots;
+    private final Deque<EventWrapper> view;
+
+    /**
+     * @param name the name of the robot this is the history of
+     * @param capacity the number of scans to retain
+     */
+    public ScanHistory(String name, int capacity) {
+        if (capacity < 1) {throw new IllegalArgumentException("capacity must be at least 1");}
+        this.name = name;
+        this.capacity = capacity;
+        this.time = new long[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.heading = new double[capacity];
+        this.velocity = new double[capacity];
+        this.energy = new double[capacity];
+        this.distance = new double[capacity];
+        this.bearing = new double[capacity];
+        this.slots = new SlotView[capacity];
+        for (int i = 0; i < capacity; i++) {slots[i] = new SlotView(i);}
+        this.view = new View();
+    }
+
+    public int size() {return this.size;}
+    public int capacity() {return this.capacity;}
+    public boolean isEmpty() {return this.size == 0;}
+    public boolean isFull() {return this.size == this.capacity;}
+
+    /**
+     * Appends a scan, overwriting the oldest if the buffer is full
+     * @param heading radians
+     * @param bearing radians
+     */
+    public void add(long time, double x, double y, double heading, double velocity, double energy, double distance, double bearing) {
+        int slot;
+        evicted = size == capacity;
+        if (evicted) {
+            slot = head;
+            head = (head + 1) % capacity;
+            evictedTime = this.time[slot];
+            evictedX = this.x[slot];
+            evictedY = this.y[slot];
+        } else {
+            slot = (head + size) % capacity;
+            size++;
+        }
+        this.time[slot] = time;
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.heading[slot] = heading;
+        this.velocity[slot] = velocity;
+        this.energy[slot] = energy;
+        this.distance[slot] = distance;
+        this.bearing[slot] = bearing;
+        slots[slot].position.setLocation(x, y);
+    }
+
+    /** Forgets every scan */
+    public void clear() {
+        head = 0;
+        size = 0;
+        evicted = false;
+    }
+
+    /**
+     * Whether the most recent add overwrote the oldest scan, which streaming
+     * estimators need to know in order to drop it from their running sums
+     */
+    public boolean hasEvicted() {return this.evicted;}
+    public long getEvictedTime() {return this.evictedTime;}
+    public double getEvictedX() {return this.evictedX;}
+    public double getEvictedY() {return this.evictedY;}
+
+    /** scan i, where 0 is the oldest, as a physical slot */
+    private int slot(int i) {
+        if (i < 0 || i >= size) {throw new IndexOutOfBoundsException("Scan " + i + " of " + size);}
+        int s = head + i;
+        return s >= capacity ? s - capacity : s;
+    }
+
+    public long getTime(int i) {return time[slot(i)];}
+    public double getX(int i) {return x[slot(i)];}
+    public double getY(int i) {return y[slot(i)];}
+    /** radians */
+    public double getHeading(int i) {return heading[slot(i)];}
+    public double getVelocity(int i) {return velocity[slot(i)];}
+    public double getEnergy(int i) {return energy[slot(i)];}
+    public double getDistance(int i) {return distance[slot(i)];}
+    /** radians */
+    public double getBearing(int i) {return bearing[slot(i)];}
+
+    /** The time of the most recent scan */
+    public long getLastTime() {return getTime(size - 1);}
+
+    /** The predictor which the wrappers in the view report */
+    public void setPredictor(Predictor predictor) {this.predictor = predictor;}
+
+    /** A read only Deque over the scans, oldest first */
+    public Deque<EventWrapper> asDeque() {return this.view;}
+
+    /** EventWrapper onto whichever scan is in the given physical slot */
+    private class SlotView implements EventWrapper {
+        private final int slot;
+        private final Point2D.Double position = new Point2D.Double();
+        SlotView(int slot) {this.slot = slot;}
+        @Override
+        public String getName() {return name;}
+        @Override
+        public double getEnergy() {return energy[slot];}
+        @Override
+        public double getBearing() {return bearing[slot];}
+        @Override
+        public double getDistance() {return distance[slot];}
+        @Override
+        public double getVelocity() {return velocity[slot];}
+        @Override
+        public double getHeading() {return heading[slot];}
+        @Override
+        public long getTime() {return time[slot];}
+        @Override
+        public Point2D.Double getPosition() {return position;}
+        @Override
+        public Predictor getPredictor() {return predictor;}
+    }
+
+    /** Read only Deque, anything that would modify it throws UnsupportedOperationException */
+    private class View extends AbstractCollection<EventWrapper> implements Deque<EventWrapper> {
+        private EventWrapper at(int i) {return slots[slot(i)];}
+
+        @Override
+        public int size() {return size;}
+        @Override
+        public Iterator<EventWrapper> iterator() {return new Itr(false);}
+        @Override
+        public Iterator<EventWrapper> descendingIterator() {return new Itr(true);}
+        @Override
+        public EventWrapper getFirst() {
+            if (size == 0) {throw new NoSuchElementException();}
+            return at(0);
+        }
+        @Override
+        public EventWrapper getLast() {
+            if (size == 0) {throw new NoSuchElementException();}
+            return at(size - 1);
+        }
+        @Override
+        public EventWrapper peekFirst() {return size == 0 ? null : at(0);}
+        @Override
+        public EventWrapper peekLast() {return size == 0 ? null : at(size - 1);}
+        @Override
+        public EventWrapper element() {return getFirst();}
+        @Override
+        public EventWrapper peek() {return peekFirst();}
+
+        @Override
+        public void addFirst(EventWrapper e) {throw new UnsupportedOperationException();}
+        @Override
+        public void addLast(EventWrapper e) {throw new UnsupportedOperationException();}
+        @Override
+        public boolean offerFirst(EventWrapper e) {throw new UnsupportedOperationException();}
+        @Override
+        public boolean offerLast(EventWrapper e) {throw new UnsupportedOperationException();}
+        @Override
+        public EventWrapper removeFirst() {throw new UnsupportedOperationException();}
+        @Override
+        public EventWrapper removeLast() {throw new UnsupportedOperationException();}
+        @Override
+        public EventWrapper pollFirst() {throw new UnsupportedOperationException();}
+        @Override
+        public EventWrapper pollLast() {throw new UnsupportedOperationException();}
+        @Override
+        public boolean removeFirstOccurrence(Object o) {throw new UnsupportedOperationException();}
+        @Override
+        public boolean removeLastOccurrence(Object o) {throw new UnsupportedOperationException();}
+        @Override
+        public boolean offer(EventWrapper e) {throw new UnsupportedOperationException();}
+        @Override
+        public EventWrapper remove() {throw new UnsupportedOperationException();}
+        @Override
+        public EventWrapper poll() {throw new UnsupportedOperationException();}
+        @Override
+        public void push(EventWrapper e) {throw new UnsupportedOperationException();}
+        @Override
+        public EventWrapper pop() {throw new UnsupportedOperationException();}
+
+        private class Itr implements Iterator<EventWrapper> {
+            private final boolean descending;
+            private int next = 0;
+            Itr(boolean descending) {this.descending = descending;}
+            @Override
+            public boolean hasNext() {return next < size;}
+            @Override
+            public EventWrapper next() {
+                if (next >= size) {throw new NoSuchElementException();}
+                int i = next++;
+                return at(descending ? size - 1 - i : i);
+            }
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package net.richardsenior.robocode.skynet.base.impl;
 
-import java.util.LinkedList;
-
 import net.richardsenior.robocode.skynet.base.Battlefield;
 
 /**
@@ -18,21 +16,14 @@ public class SelfEnemyImpl extends EnemyImpl {
         // Only update when radar is in first half of rotation (0 to π radians)
         double radarHeading = getBattlefield().getSelf().getRadarHeadingRadians();
         if (radarHeading >= 0 && radarHeading <= Math.PI) {
-            EventWrapperImpl e = new EventWrapperImpl(this.getBattlefield().getSelf().getName());
             Battlefield bf = this.getBattlefield();
-            e.setPosition(new java.awt.geom.Point2D.Double(bf.getSelf().getX(), bf.getSelf().getY()));
-            e.setHeading(bf.getSelf().getHeadingRadians());
-            e.setVelocity(bf.getSelf().getVelocity());
-            e.setEnergy(bf.getSelf().getEnergy());
-            e.setBearing(0);
-            e.setDistance(0);        
-            e.setTime(bf.getSelf().getTime());
-            updateSelf(e);
+            updateSelf(bf.getSelf().getTime(), bf.getSelf().getX(), bf.getSelf().getY(),
+                bf.getSelf().getHeadingRadians(), bf.getSelf().getVelocity(), bf.getSelf().getEnergy(), 0, 0);
         }
     }
 
     /** overriden to prevent firing detection on ourself */
-    protected void doHasFired(EventWrapperImpl s) {}
+    protected void doHasFired(double currentEnergy) {}
 
     /**
      * We don't want to update the predictor or create self waves
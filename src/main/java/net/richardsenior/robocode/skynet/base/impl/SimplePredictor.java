@@ -8,90 +8,150 @@ import java.awt.geom.Point2D;
 
 /**
  * Simple linear predictor assuming constant velocity movement.
- * Fits a linear equation to scan history and extrapolates.
+ * Velocity is the least squares slope of x and y against time over the scans in the window,
+ * kept as running sums so that adding or evicting a scan is O(1) rather than refitting the whole history.
+ * One instance is kept per enemy and fed as scans come and go.
+ * Times are held relative to the first scan seen to keep the sums small.
+ * predict and getIntercept return a point owned by this predictor which is overwritten by the next call.
  */
 public class SimplePredictor implements Predictor {
-    private Point2D.Double position;
-    private Point2D.Double velocity;
-    
+    private int n = 0;
+    private long baseTime = Long.MIN_VALUE;
+    private double sumT, sumTT, sumX, sumY, sumTX, sumTY;
+    /** most recently added scan */
+    private double lastX, lastY;
+    private boolean hasLast = false;
+    /** returned by predict and getIntercept */
+    protected final Point2D.Double result = new Point2D.Double();
+
+    public SimplePredictor() {}
+
+    /** Builds a predictor from an existing history, oldest first */
     public SimplePredictor(Queue<? extends EventWrapper> scanHistory) {
-        if (scanHistory.size() < 2) {
-            position = null;
-            velocity = null;
-            return;
-        }
-        
-        EventWrapper[] scans = scanHistory.toArray(new EventWrapper[0]);
-        int n = scans.length;
-        
-        // Use least squares to fit velocity
-        double sumVx = 0, sumVy = 0;
-        int count = 0;
-        
-        for (int i = 1; i < n; i++) {
-            double dt = scans[i].getTime() - scans[i-1].getTime();
-            if (dt > 0) {
-                sumVx += (scans[i].getPosition().x - scans[i-1].getPosition().x) / dt;
-                sumVy += (scans[i].getPosition().y - scans[i-1].getPosition().y) / dt;
-                count++;
-            }
+        for (EventWrapper scan : scanHistory) {
+            add(scan.getTime(), scan.getPosition().x, scan.getPosition().y);
         }
-        
-        if (count == 0) {
-            position = null;
-            velocity = null;
+    }
+
+    /** Adds a scan, which becomes the position predictions are made from */
+    public void add(long time, double x, double y) {
+        if (baseTime == Long.MIN_VALUE) {baseTime = time;}
+        double t = time - baseTime;
+        n++;
+        sumT += t;
+        sumTT += t * t;
+        sumX += x;
+        sumY += y;
+        sumTX += t * x;
+        sumTY += t * y;
+        lastX = x;
+        lastY = y;
+        hasLast = true;
+    }
+
+    /** Removes a scan previously added, normally the oldest as it drops out of the window */
+    public void remove(long time, double x, double y) {
+        if (n == 0) {return;}
+        double t = time - baseTime;
+        n--;
+        if (n == 0) {
+            reset();
             return;
         }
-        
-        velocity = new Point2D.Double(sumVx / count, sumVy / count);
-        
-        // Use most recent position
-        EventWrapper last = scans[n-1];
-        position = new Point2D.Double(last.getPosition().x, last.getPosition().y);
+        sumT -= t;
+        sumTT -= t * t;
+        sumX -= x;
+        sumY -= y;
+        sumTX -= t * x;
+        sumTY -= t * y;
+    }
+
+    /** Forgets every scan */
+    public void reset() {
+        n = 0;
+        baseTime = Long.MIN_VALUE;
+        sumT = sumTT = sumX = sumY = sumTX = sumTY = 0;
+        hasLast = false;
+    }
+
+    /** the number of scans in the window */
+    public int getCount() {return this.n;}
+    /** whether any scan has been added since the last reset */
+    public boolean hasLast() {return this.hasLast;}
+    public double getLastX() {return this.lastX;}
+    public double getLastY() {return this.lastY;}
+
+    /** the denominator of the least squares slope, zero if all the scans share a time */
+    private double denominator() {
+        if (n < 2) {return 0;}
+        double d = n * sumTT - sumT * sumT;
+        // scans are whole ticks apart so anything this small is rounding error
+        return d < 1e-9 ? 0 : d;
+    }
+
+    /** pixels per tick along x, or zero if there aren't enough scans */
+    public double getVelocityX() {
+        double d = denominator();
+        return d == 0 ? 0 : (n * sumTX - sumT * sumX) / d;
     }
-    
+
+    /** pixels per tick along y, or zero if there aren't enough scans */
+    public double getVelocityY() {
+        double d = denominator();
+        return d == 0 ? 0 : (n * sumTY - sumT * sumY) / d;
+    }
+
     @Override
-    public Point2D.Double predict(int ticks) {
-        if (position == null || velocity == null) return null;
-        
-        return new Point2D.Double(
-            position.x + velocity.x * ticks,
-            position.y + velocity.y * ticks
-        );
+    public Point2D.Double predict(int ticks) {return predictLinear(ticks);}
+
+    /** Constant velocity extrapolation from the last scan, whatever an extending class does in predict */
+    public final Point2D.Double predictLinear(int ticks) {
+        if (!hasLast || denominator() == 0) return null;
+        result.setLocation(lastX + getVelocityX() * ticks, lastY + getVelocityY() * ticks);
+        return result;
     }
-    
+
     @Override
     public Point2D.Double getIntercept(double bulletVelocity, Point2D.Double firingPosition) {
-        if (position == null || velocity == null) return position;
-        
-        double dx = position.x - firingPosition.x;
-        double dy = position.y - firingPosition.y;
-        
-        double a = velocity.x*velocity.x + velocity.y*velocity.y - bulletVelocity*bulletVelocity;
-        double b = 2*(dx*velocity.x + dy*velocity.y);
+        return getLinearIntercept(bulletVelocity, firingPosition);
+    }
+
+    /** Intercept of the constant velocity extrapolation, whatever an extending class does in getIntercept */
+    public final Point2D.Double getLinearIntercept(double bulletVelocity, Point2D.Double firingPosition) {
+        if (!hasLast) return null;
+        result.setLocation(lastX, lastY);
+        if (denominator() == 0) return result;
+        double vx = getVelocityX();
+        double vy = getVelocityY();
+
+        double dx = lastX - firingPosition.x;
+        double dy = lastY - firingPosition.y;
+
+        double a = vx*vx + vy*vy - bulletVelocity*bulletVelocity;
+        double b = 2*(dx*vx + dy*vy);
         double c = dx*dx + dy*dy;
-        
+
         double discriminant = b*b - 4*a*c;
-        if (discriminant < 0 || Math.abs(a) < 1e-6) return position;
-        
+        if (discriminant < 0 || Math.abs(a) < 1e-6) return result;
+
         double t = (-b - Math.sqrt(discriminant)) / (2*a);
         if (t < 0) t = (-b + Math.sqrt(discriminant)) / (2*a);
-        if (t < 0) return position;
-        
-        return predict((int)Math.ceil(t));
+        if (t < 0) return result;
+
+        return predictLinear((int)Math.ceil(t));
     }
-    
+
     // TargetingPredictor methods - not used by geometric predictors
     @Override
     public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
                                       double bulletVelocity, double directBearing) {
         return 0.0;
     }
-    
+
     @Override
     public void recordShot(Wave wave) {
     }
-    
+
     @Override
     public void recordResult(Wave wave, Point2D.Double actualPosition) {
     }
@@ -0,0 +1,87 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+
+/**
+ * The targeting situation of one enemy as seen from a firing position, worked out from its recent scans.
+ * This is what the statistical guns learn against: BinPredictor buckets it into a segment and
+ * KnnPredictor turns it into a feature vector.
+ * Like RobotState it is a plain bag of fields, one instance per predictor refilled by set.
+ */
+public class Situation {
+    private static final double MAX_ROBOT_SPEED = 8.0; // pixels per tick
+
+    /** from the firer to the target, pixels */
+    public double distance;
+    /** absolute bearing from the firer to the target, radians */
+    public double bearing;
+    /** target velocity across the line of fire, positive is clockwise */
+    public double lateralVelocity;
+    /** target velocity towards the firer, negative when retreating */
+    public double advancingVelocity;
+    /** change in the target's speed since the previous scan */
+    public double acceleration;
+    /** 1 if the target is moving clockwise about the firer, -1 if anticlockwise */
+    public int direction;
+    /** room the target has in its direction of travel, and behind it, infinite if unknown */
+    public double wallAhead;
+    public double wallBehind;
+    /** ticks since the target last reversed its lateral direction round us, as EnemyImpl has been keeping track */
+    public long timeSinceDirectionChange;
+    /** escape angles for the bullet speed given to set */
+    public double clockwiseEscapeAngle;
+    public double anticlockwiseEscapeAngle;
+
+    private final EscapeAngleTable escapeAngles;
+    private final EnemyImpl enemy;
+    private final ScanHistory history;
+
+    /**
+     * @param escapeAngles used for the wall distances and escape angles, null for the naive escape angle
+     * @param enemy the target, null if unknown (it is then treated as stationary)
+     */
+    public Situation(EscapeAngleTable escapeAngles, EnemyImpl enemy) {
+        this.escapeAngles = escapeAngles;
+        this.enemy = enemy;
+        this.history = enemy == null ? null : enemy.getHistory();
+    }
+
+    /** Fills in the situation for a bullet at bulletVelocity from source towards the target at target */
+    public Situation set(Point2D.Double source, Point2D.Double target, double bulletVelocity) {
+        distance = source.distance(target);
+        bearing = Math.atan2(target.x - source.x, target.y - source.y);
+        lateralVelocity = 0;
+        advancingVelocity = 0;
+        acceleration = 0;
+        timeSinceDirectionChange = 0;
+        if (history != null && !history.isEmpty()) {
+            int last = history.size() - 1;
+            double velocity = history.getVelocity(last);
+            double heading = history.getHeading(last);
+            lateralVelocity = velocity * Math.sin(heading - bearing);
+            advancingVelocity = -velocity * Math.cos(heading - bearing);
+            acceleration = last > 0 ? Math.abs(velocity) - Math.abs(history.getVelocity(last - 1)) : 0;
+            timeSinceDirectionChange = enemy.getTimeSinceDirectionChange();
+        }
+        direction = lateralVelocity >= 0 ? 1 : -1;
+        if (escapeAngles == null) {
+            wallAhead = wallBehind = Double.POSITIVE_INFINITY;
+            clockwiseEscapeAngle = anticlockwiseEscapeAngle = getNaiveEscapeAngle(bulletVelocity);
+        } else {
+            wallAhead = escapeAngles.getClearance(target.x, target.y, bearing + direction * Math.PI / 2);
+            wallBehind = escapeAngles.getClearance(target.x, target.y, bearing - direction * Math.PI / 2);
+            clockwiseEscapeAngle = escapeAngles.getClockwise(source, target, bulletVelocity);
+            anticlockwiseEscapeAngle = escapeAngles.getAnticlockwise(source, target, bulletVelocity);
+        }
+        return this;
+    }
+
+    /** atan(8 / bulletVelocity), as though the target could run sideways at full speed however long it took */
+    private double getNaiveEscapeAngle(double bulletVelocity) {
+        // Time for bullet to reach enemy
+        double timeToImpact = distance / bulletVelocity;
+        // Maximum distance enemy can travel perpendicular to bullet path
+        double maxEscapeDistance = MAX_ROBOT_SPEED * timeToImpact;
+        return Math.atan2(maxEscapeDistance, distance);
+    }
+}
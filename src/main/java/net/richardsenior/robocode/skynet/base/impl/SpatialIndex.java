@@ -0,0 +1,198 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import net.richardsenior.robocode.skynet.base.Enemy;
+import net.richardsenior.robocode.skynet.base.Obstacle;
+
+/**
+ * Uniform grid (spatial hash) over the battlefield used as a broad phase for obstacle queries.
+ * Each obstacle is entered into every bucket its axis aligned bounds touch. The bounds are swept
+ * over the window [0, horizon] ticks so that any query about the next 'horizon' ticks can be answered
+ * from the same index. For a wave this is exactly the union of the bounds at either end of the window
+ * because the annular sector only grows along its radii.
+ * Queries only visit the buckets they touch, and return candidates which should then be
+ * tested exactly (Obstacle.contains etc.)
+ * The index is rebuilt every tick, storage is reused so a rebuild allocates nothing once warmed up.
+ */
+public class SpatialIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private final int bucketSize;
+    private final int cols;
+    private final int rows;
+    /** obstacle indices per bucket */
+    private int[][] buckets;
+    private int[] bucketCounts;
+    /** everything inserted since the last clear */
+    private Obstacle[] items;
+    private int itemCount = 0;
+    /** used to avoid returning the same obstacle twice from one query */
+    private int[] stamps;
+    private int stamp = 0;
+    /** results of the last query */
+    private Obstacle[] results;
+    private int resultCount = 0;
+    private int horizon = 0;
+    /** scratch */
+    private final Rectangle2D.Double bounds = new Rectangle2D.Double();
+    private final Rectangle2D.Double swept = new Rectangle2D.Double();
+
+    /**
+     * @param width battlefield width
+     * @param height battlefield height
+     * @param bucketSize size in pixels of each (square) bucket
+     */
+    public SpatialIndex(double width, double height, int bucketSize) {
+        this.bucketSize = bucketSize;
+        this.cols = Math.max(1, (int)Math.ceil(width / bucketSize));
+        this.rows = Math.max(1, (int)Math.ceil(height / bucketSize));
+        this.buckets = new int[cols * rows][];
+        this.bucketCounts = new int[cols * rows];
+        this.items = new Obstacle[INITIAL_CAPACITY];
+        this.stamps = new int[INITIAL_CAPACITY];
+        this.results = new Obstacle[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Empties the index ready for re-insertion
+     * @param horizon the number of ticks into the future that obstacles will be swept over
+     */
+    public void clear(int horizon) {
+        this.horizon = horizon;
+        java.util.Arrays.fill(bucketCounts, 0);
+        java.util.Arrays.fill(items, 0, itemCount, null);
+        itemCount = 0;
+        resultCount = 0;
+    }
+
+    public int getHorizon() {return this.horizon;}
+
+    /** Adds the obstacle to every bucket touched by its bounds swept over [0, horizon] ticks */
+    public void insert(Obstacle o) {
+        o.getBounds(0, swept);
+        if (horizon != 0) {
+            o.getBounds(horizon, bounds);
+            if (swept.width <= 0 || swept.height <= 0) {
+                swept.setRect(bounds);
+            } else if (bounds.width > 0 && bounds.height > 0) {
+                Rectangle2D.union(swept, bounds, swept);
+            }
+        }
+        if (swept.width <= 0 || swept.height <= 0) {return;}
+        if (itemCount == items.length) {
+            items = java.util.Arrays.copyOf(items, itemCount * 2);
+            stamps = java.util.Arrays.copyOf(stamps, itemCount * 2);
+            results = java.util.Arrays.copyOf(results, itemCount * 2);
+        }
+        int index = itemCount++;
+        items[index] = o;
+        stamps[index] = 0;
+        int minCol = col(swept.x), maxCol = col(swept.x + swept.width);
+        int minRow = row(swept.y), maxRow = row(swept.y + swept.height);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int b = r * cols + c;
+                int[] bucket = buckets[b];
+                if (bucket == null) {
+                    bucket = new int[INITIAL_CAPACITY];
+                    buckets[b] = bucket;
+                } else if (bucketCounts[b] == bucket.length) {
+                    bucket = java.util.Arrays.copyOf(bucket, bucket.length * 2);
+                    buckets[b] = bucket;
+                }
+                bucket[bucketCounts[b]++] = index;
+            }
+        }
+    }
+
+    /**
+     * Finds the obstacles whose swept bounds touch the given point
+     * @return the number of candidates, retrieve them with getResult
+     */
+    public int query(double x, double y) {return query(x, y, x, y);}
+
+    /**
+     * Finds the obstacles whose swept bounds touch the given rectangle
+     * @return the number of candidates, retrieve them with getResult
+     */
+    public int query(double minX, double minY, double maxX, double maxY) {
+        resultCount = 0;
+        nextStamp();
+        int minCol = col(minX), maxCol = col(maxX);
+        int minRow = row(minY), maxRow = row(maxY);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int b = r * cols + c;
+                int[] bucket = buckets[b];
+                for (int i = 0; i < bucketCounts[b]; i++) {
+                    int index = bucket[i];
+                    if (stamps[index] == stamp) {continue;}
+                    stamps[index] = stamp;
+                    results[resultCount++] = items[index];
+                }
+            }
+        }
+        return resultCount;
+    }
+
+    /** Gets the i'th result of the last query */
+    public Obstacle getResult(int i) {return results[i];}
+
+    /**
+     * Finds the enemy whose current position is closest to the given point by searching
+     * rings of buckets outwards from the point, stopping when no unvisited bucket can hold anything closer
+     * @param exclude an enemy to ignore (usually ourself) or null
+     * @return the nearest enemy or null if there are none in the index
+     */
+    public Enemy nearestEnemy(double x, double y, Enemy exclude) {
+        nextStamp();
+        Enemy best = null;
+        double bestDistSq = Double.POSITIVE_INFINITY;
+        int originCol = col(x), originRow = row(y);
+        int maxRing = Math.max(cols, rows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = originRow - ring; r <= originRow + ring; r++) {
+                if (r < 0 || r >= rows) {continue;}
+                boolean edgeRow = r == originRow - ring || r == originRow + ring;
+                for (int c = originCol - ring; c <= originCol + ring; c += edgeRow ? 1 : 2 * ring) {
+                    if (c >= 0 && c < cols) {
+                        int b = r * cols + c;
+                        int[] bucket = buckets[b];
+                        for (int i = 0; i < bucketCounts[b]; i++) {
+                            int index = bucket[i];
+                            if (stamps[index] == stamp) {continue;}
+                            stamps[index] = stamp;
+                            if (!(items[index] instanceof Enemy) || items[index] == exclude) {continue;}
+                            Point2D p = items[index].getPosition();
+                            if (p == null) {continue;}
+                            double dx = p.getX() - x, dy = p.getY() - y;
+                            double d = dx * dx + dy * dy;
+                            if (d < bestDistSq) {
+                                bestDistSq = d;
+                                best = (Enemy)items[index];
+                            }
+                        }
+                    }
+                    if (ring == 0) {break;}
+                }
+            }
+            // anything not yet seen has its position outside the searched square
+            double reach = ring * bucketSize + Math.max(0, Math.min(
+                Math.min(x - originCol * bucketSize, (originCol + 1) * bucketSize - x),
+                Math.min(y - originRow * bucketSize, (originRow + 1) * bucketSize - y)));
+            if (best != null && bestDistSq <= reach * reach) {break;}
+        }
+        return best;
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    private int col(double x) {return Math.max(0, Math.min(cols - 1, (int)Math.floor(x / bucketSize)));}
+    private int row(double y) {return Math.max(0, Math.min(rows - 1, (int)Math.floor(y / bucketSize)));}
+}
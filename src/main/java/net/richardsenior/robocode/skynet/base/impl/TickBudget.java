@@ -0,0 +1,105 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+/**
+ * Watchdog for the time spent in each phase of BattlefieldImpl.update()
+ * Robocode skips our turn if a tick takes longer than its CPU constant, which robots can't read,
+ * so the budget starts at a conservative guess and is tightened whenever we are told a turn was skipped.
+ * When a tick comes close to the budget the quality level is stepped down (fewer mover samples,
+ * coarser Lagrange grid etc.), after a skipped turn it is stepped down harder, and when there has been
+ * plenty of headroom for a while it is stepped back up again.
+ * A skipped turn may just have been a GC pause or the JIT, so a budget tightened by one is eased back
+ * towards the default along with the quality level, and is tightened again if turns are still being skipped.
+ */
+public class TickBudget {
+    public static final int PHASE_EVENTS = 0;
+    public static final int PHASE_SCANNER = 1;
+    public static final int PHASE_OBSTACLES = 2;
+    public static final int PHASE_LAGRANGE = 3;
+    public static final int PHASE_MOVER = 4;
+    public static final int PHASE_GUN = 5;
+    public static final int PHASE_COUNT = 6;
+    public static final String[] PHASE_NAMES = {"events", "scanner", "obstacles", "lagrange", "mover", "gun"};
+
+    public static final int MIN_QUALITY = 0;
+    public static final int MAX_QUALITY = 3;
+
+    private static final long DEFAULT_BUDGET_NANOS = 2_000_000; // 2ms, conservative guess at the cpu constant
+    private static final long MIN_BUDGET_NANOS = 200_000;
+    private static final double STEP_DOWN_FRACTION = 0.8; // of budget, above which we degrade
+    private static final double STEP_UP_FRACTION = 0.5; // of budget, below which we may recover
+    private static final int RECOVERY_TICKS = 30; // consecutive ticks of headroom before recovering a level
+    private static final int SKIPPED_TURN_PENALTY = 2; // levels
+    private static final double BUDGET_RECOVERY = 1.1; // budget is multiplied by this on each recovery, up to the default
+
+    /** System.nanoTime, but tests can drive the time themselves */
+    private final java.util.function.LongSupplier clock;
+    private long budgetNanos = DEFAULT_BUDGET_NANOS;
+    private long[] phaseNanos = new long[PHASE_COUNT];
+    private long tickStart;
+    private long lastTickNanos;
+    private int quality = MAX_QUALITY;
+    private int headroomTicks = 0;
+    private int skippedTurns = 0;
+
+    public TickBudget() {this(System::nanoTime);}
+    TickBudget(java.util.function.LongSupplier clock) {this.clock = clock;}
+
+    public int getQuality() {return this.quality;}
+    public long getBudgetNanos() {return this.budgetNanos;}
+    public long getLastTickNanos() {return this.lastTickNanos;}
+    public long getPhaseNanos(int phase) {return this.phaseNanos[phase];}
+    public int getSkippedTurns() {return this.skippedTurns;}
+
+    /** Marks the start of a tick, returns the current time for use with endPhase */
+    public long startTick() {
+        java.util.Arrays.fill(phaseNanos, 0);
+        tickStart = clock.getAsLong();
+        return tickStart;
+    }
+
+    /**
+     * Records the time since 'start' against the given phase
+     * @return the current time, so that phases can be chained
+     */
+    public long endPhase(int phase, long start) {
+        long now = clock.getAsLong();
+        phaseNanos[phase] += now - start;
+        return now;
+    }
+
+    /** Marks the end of the tick and adjusts the quality level */
+    public void endTick() {
+        lastTickNanos = clock.getAsLong() - tickStart;
+        if (lastTickNanos > budgetNanos * STEP_DOWN_FRACTION) {
+            headroomTicks = 0;
+            setQuality(quality - 1);
+            return;
+        }
+        if (lastTickNanos > budgetNanos * STEP_UP_FRACTION) {
+            headroomTicks = 0;
+            return;
+        }
+        if (++headroomTicks >= RECOVERY_TICKS) {
+            headroomTicks = 0;
+            setQuality(quality + 1);
+            budgetNanos = Math.min(DEFAULT_BUDGET_NANOS, (long)(budgetNanos * BUDGET_RECOVERY));
+        }
+    }
+
+    /**
+     * A turn was skipped, so the budget is evidently tighter than we thought.
+     * Shrink it to below the last tick we measured and step down harder than usual
+     */
+    public void onSkippedTurn() {
+        skippedTurns++;
+        headroomTicks = 0;
+        if (lastTickNanos > 0 && lastTickNanos < budgetNanos) {
+            budgetNanos = Math.max(MIN_BUDGET_NANOS, (long)(lastTickNanos * STEP_DOWN_FRACTION));
+        }
+        setQuality(quality - SKIPPED_TURN_PENALTY);
+    }
+
+    private void setQuality(int q) {
+        quality = Math.max(MIN_QUALITY, Math.min(MAX_QUALITY, q));
+    }
+}
@@ -0,0 +1,149 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.geom.Point2D;
+import net.richardsenior.robocode.skynet.base.TargetingPredictor;
+import net.richardsenior.robocode.skynet.base.Wave;
+
+/**
+ * Several targeting predictors ('guns') behind one: every real shot is also a virtual shot from
+ * each of them, and the one that would have hit most often lately does the aiming.
+ * Only the aiming gun is asked for a bearing every tick. When a bullet is actually fired the rest
+ * are asked too, and every gun's absolute firing bearing is stored in one float array on the GunWave.
+ * When the wave reaches the target all of them are scored in a single pass, a hit being a bearing
+ * within the target's half width (18 pixels) of where it was found.
+ * Hit rates are rolling averages over roughly the last ROLLING_DEPTH shots, so the choice follows
+ * an enemy that changes its movement. Ties go to the gun added first.
+ * The rates are kept by gun name in the enemy's EnemyMemory.
+ * Every gun is given each shot and result to learn from whether or not it is aiming.
+ * A gun may return NaN when it has no aim (the pattern matcher without a match), it is then
+ * passed over for that shot and not scored on it.
+ */
+public class VirtualGuns implements TargetingPredictor {
+    public static final int MAX_GUNS = 8;
+    private static final int ROLLING_DEPTH = 30;
+    private static final double ROBOT_HALF_WIDTH = 18;
+
+    /** a gun's rolling hit rate against one enemy */
+    static final class Score {
+        double hitRate;
+        int shots;
+    }
+
+    private final EnemyMemory memory;
+    private final String[] names = new String[MAX_GUNS];
+    private final TargetingPredictor[] guns = new TargetingPredictor[MAX_GUNS];
+    private final Score[] scores = new Score[MAX_GUNS];
+    private int count = 0;
+
+    /** what the last aim was worked out from, for asking the other guns when a shot is fired */
+    private final Point2D.Double aimFrom = new Point2D.Double();
+    private final Point2D.Double aimAt = new Point2D.Double();
+    private double aimBulletVelocity;
+    private double aimDirectBearing;
+    private boolean aimed = false;
+    /** the gun that gave the last aim and its offset, -1 if none did */
+    private int aimingGun = -1;
+    private double aimingOffset;
+
+    /** @param memory the target's, where the hit rates are kept */
+    public VirtualGuns(EnemyMemory memory) {
+        this.memory = memory;
+    }
+
+    /** Adds a gun, with its hit rate so far against the enemy if it has one, earlier guns win ties */
+    public VirtualGuns add(String name, TargetingPredictor gun) {
+        if (count == MAX_GUNS) {throw new IllegalStateException("No more than " + MAX_GUNS + " virtual guns");}
+        names[count] = name;
+        guns[count] = gun;
+        scores[count] = memory.getGunScore(name);
+        count++;
+        return this;
+    }
+
+    public int size() {return count;}
+    public String getName(int gun) {return names[gun];}
+    public TargetingPredictor getGun(int gun) {return guns[gun];}
+    public double getHitRate(int gun) {return scores[gun].hitRate;}
+    public int getShots(int gun) {return scores[gun].shots;}
+    /** the gun that gave the last aim, -1 if none has */
+    public int getAimingGun() {return aimingGun;}
+
+    /**
+     * The bearing offset from the gun with the best hit rate, or if that has no aim the next best and so on.
+     * Zero (straight at directBearing) if none has an aim
+     */
+    @Override
+    public double predictBearingOffset(Point2D.Double ourPosition, Point2D.Double enemyPosition,
+                                       double bulletVelocity, double directBearing) {
+        aimFrom.setLocation(ourPosition);
+        aimAt.setLocation(enemyPosition);
+        aimBulletVelocity = bulletVelocity;
+        aimDirectBearing = directBearing;
+        aimed = true;
+        aimingGun = -1;
+        aimingOffset = 0;
+        // selection by rank without sorting, there are only a handful of guns
+        double previousRate = Double.POSITIVE_INFINITY;
+        int previousGun = -1;
+        for (int rank = 0; rank < count; rank++) {
+            int gun = nextBest(previousRate, previousGun);
+            double offset = guns[gun].predictBearingOffset(ourPosition, enemyPosition, bulletVelocity, directBearing);
+            if (!Double.isNaN(offset)) {
+                aimingGun = gun;
+                aimingOffset = offset;
+                break;
+            }
+            previousRate = scores[gun].hitRate;
+            previousGun = gun;
+        }
+        return aimingOffset;
+    }
+
+    /** the best gun ranked after (previousRate, previousGun), ordered by rate descending then by index */
+    private int nextBest(double previousRate, int previousGun) {
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            double rate = scores[i].hitRate;
+            boolean after = rate < previousRate || (rate == previousRate && i > previousGun);
+            if (after && (best < 0 || rate > scores[best].hitRate)) {best = i;}
+        }
+        return best;
+    }
+
+    /** Passes the shot to every gun and, for a GunWave, stores where each of them would have aimed it */
+    @Override
+    public void recordShot(Wave wave) {
+        for (int i = 0; i < count; i++) {guns[i].recordShot(wave);}
+        if (!(wave instanceof GunWave)) {return;}
+        float[] angles = ((GunWave)wave).getAngles(count);
+        for (int i = 0; i < count; i++) {
+            if (!aimed) {
+                angles[i] = Float.NaN;
+                continue;
+            }
+            double offset = i == aimingGun ? aimingOffset
+                : guns[i].predictBearingOffset(aimFrom, aimAt, aimBulletVelocity, aimDirectBearing);
+            angles[i] = (float)(aimDirectBearing + offset);
+        }
+    }
+
+    /** Passes the result to every gun and, for a GunWave, scores each gun's stored bearing */
+    @Override
+    public void recordResult(Wave wave, Point2D.Double actualPosition) {
+        for (int i = 0; i < count; i++) {guns[i].recordResult(wave, actualPosition);}
+        if (!(wave instanceof GunWave)) {return;}
+        GunWave gunWave = (GunWave)wave;
+        Point2D centre = gunWave.getCentre();
+        double distance = centre.distance(actualPosition);
+        double bearing = Math.atan2(actualPosition.x - centre.getX(), actualPosition.y - centre.getY());
+        double tolerance = Math.atan2(ROBOT_HALF_WIDTH, distance);
+        float[] angles = gunWave.getAngles(count);
+        for (int i = 0; i < count; i++) {
+            if (Float.isNaN(angles[i])) {continue;}
+            double hit = Math.abs(robocode.util.Utils.normalRelativeAngle(bearing - angles[i])) <= tolerance ? 1 : 0;
+            Score score = scores[i];
+            score.shots++;
+            score.hitRate += (hit - score.hitRate) / Math.min(score.shots, ROLLING_DEPTH);
+        }
+    }
+}
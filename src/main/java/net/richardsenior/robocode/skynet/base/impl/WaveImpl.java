@@ -1,6 +1,7 @@
 package net.richardsenior.robocode.skynet.base.impl;
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import net.richardsenior.robocode.skynet.base.Battlefield;
 import net.richardsenior.robocode.skynet.base.Enemy;
@@ -23,6 +24,11 @@ public class WaveImpl implements Wave {
     private int scanStaleness;
     private java.util.List<WaveFrontImpl>sectors;
     private java.lang.ref.WeakReference<Enemy> firingEnemy;
+    /** where we were when it was fired, for guess factors: bearing from the centre, escape angles and lateral direction */
+    private double targetBearing;
+    private double clockwiseEscapeAngle;
+    private double anticlockwiseEscapeAngle;
+    private int direction = 1;
     
     @Override
     public Point2D getCentre() {return centre;}    
@@ -57,7 +63,8 @@ public class WaveImpl implements Wave {
         // Bullet was fired when we detected the energy drop, but we detect it one tick later
         this.createdTime = enemy.getBattlefield().getSelf().getTime() - 1;
         this.battlefield = enemy.getBattlefield();
-        this.centre = enemyPos;
+        // a copy, the enemy's position is updated in place
+        this.centre = new Point2D.Double(enemyPos.getX(), enemyPos.getY());
         // Calculate wave advance: bullet has traveled (bulletSpeed * staleness) during the stale period
         // Plus safety margin
         int waveAdvance = (int)(bulletSpeed * staleness) + (staleness * ADVANCE_PER_STALE_TICK);
@@ -68,6 +75,8 @@ public class WaveImpl implements Wave {
         this.sectors = new ArrayList<WaveFrontImpl>();
         this.firingEnemy = new java.lang.ref.WeakReference<Enemy>(enemy);
         
+        EscapeAngleTable escapeAngles = battlefield instanceof BattlefieldImpl ? ((BattlefieldImpl)battlefield).getEscapeAngles() : null;
+        setTarget(escapeAngles);
         // Calculate angle pairs for all potential targets
         java.util.List<AnglePair> anglePairs = new ArrayList<>();
         for (Obstacle e : battlefield) {
@@ -78,14 +87,21 @@ public class WaveImpl implements Wave {
             Point2D targetPos = en.getPosition();
             if (targetPos == null) {continue;} // Skip if position not set
             double bearingToTarget = Math.atan2(targetPos.getX() - centre.getX(), targetPos.getY() - centre.getY());
-            double distance = centre.distance(targetPos);
-            double timeToIntercept = distance / bulletSpeed;
-            double maxPerpendicularDistance = 8.0 * timeToIntercept; // MAX_PERPENDICULAR_VELOCITY
-            double maxAngularDisplacement = Math.atan(maxPerpendicularDistance / distance);
+            double clockwise, anticlockwise;
+            if (escapeAngles != null) {
+                // wall aware, so a target with a wall beside it gets a narrower sector on that side
+                clockwise = escapeAngles.getClockwise(centre, targetPos, bulletSpeed);
+                anticlockwise = escapeAngles.getAnticlockwise(centre, targetPos, bulletSpeed);
+            } else {
+                double distance = centre.distance(targetPos);
+                double timeToIntercept = distance / bulletSpeed;
+                double maxPerpendicularDistance = 8.0 * timeToIntercept; // MAX_PERPENDICULAR_VELOCITY
+                clockwise = anticlockwise = Math.atan(maxPerpendicularDistance / distance);
+            }
             
             anglePairs.add(new AnglePair(
-                bearingToTarget - maxAngularDisplacement,
-                bearingToTarget + maxAngularDisplacement,
+                bearingToTarget - anticlockwise,
+                bearingToTarget + clockwise,
                 en
             ));
         }
@@ -99,6 +115,45 @@ public class WaveImpl implements Wave {
         }
     }
     
+    /** Records how we were placed relative to the wave, so that positions can be turned into guess factors */
+    private void setTarget(EscapeAngleTable escapeAngles) {
+        robocode.AdvancedRobot self = battlefield.getSelf();
+        Point2D.Double us = new Point2D.Double(self.getX(), self.getY());
+        this.targetBearing = Math.atan2(us.x - centre.getX(), us.y - centre.getY());
+        double lateralVelocity = self.getVelocity() * Math.sin(self.getHeadingRadians() - targetBearing);
+        this.direction = lateralVelocity >= 0 ? 1 : -1;
+        if (escapeAngles != null) {
+            this.clockwiseEscapeAngle = escapeAngles.getClockwise(centre, us, bulletSpeed);
+            this.anticlockwiseEscapeAngle = escapeAngles.getAnticlockwise(centre, us, bulletSpeed);
+        } else {
+            this.clockwiseEscapeAngle = this.anticlockwiseEscapeAngle = Math.asin(8.0 / bulletSpeed);
+        }
+    }
+
+    /**
+     * Where a position lies on this wave as a guess factor relative to us when it was fired,
+     * positive being the way we were going
+     * @return between -1 and 1, 0 if we could not have moved (pinned against a wall)
+     */
+    public double getGuessFactor(double x, double y) {
+        double bearing = Math.atan2(x - centre.getX(), y - centre.getY());
+        double offset = robocode.util.Utils.normalRelativeAngle(bearing - targetBearing);
+        double escapeAngle = offset >= 0 ? clockwiseEscapeAngle : anticlockwiseEscapeAngle;
+        if (escapeAngle <= 0) {return 0;}
+        return Math.max(-1, Math.min(1, offset / escapeAngle)) * direction;
+    }
+
+    /** the escape angle we had on the side of the wave the guess factor is on, radians */
+    public double getEscapeAngle(double guessFactor) {
+        return guessFactor * direction >= 0 ? clockwiseEscapeAngle : anticlockwiseEscapeAngle;
+    }
+
+    /** what the radius will be at the given tick, as update would set it */
+    public double getRadius(long time) {
+        int waveAdvance = (int)(bulletSpeed * scanStaleness) + (scanStaleness * ADVANCE_PER_STALE_TICK);
+        return (time - createdTime) * bulletSpeed + waveAdvance;
+    }
+
     private java.util.List<AnglePair> mergeAnglePairs(java.util.List<AnglePair> pairs) {
         if (pairs.isEmpty()) return pairs;
         
@@ -167,6 +222,8 @@ public class WaveImpl implements Wave {
     @Override
     public Area getOutline(int ticks) {
        // iterate wave fronts, add them and return them
+       PerfCounters.increment(PerfCounters.OUTLINE_CALLS);
+       PerfCounters.increment(PerfCounters.AREA_CONSTRUCTIONS);
        Area waveArea = new Area();
        for (Obstacle sector : sectors) {
            if (sector != null) {
@@ -176,6 +233,37 @@ public class WaveImpl implements Wave {
        return waveArea;
     }
 
+    /**
+     * Analytic equivalent of getOutline(ticks).contains(x, y)
+     * Tests each sector's radius band and angular interval directly, allocating nothing
+     */
+    @Override
+    public boolean contains(double x, double y, int ticks) {
+        if (sectors == null) {return false;}
+        for (int i = 0; i < sectors.size(); i++) {
+            if (sectors.get(i).contains(x, y, ticks)) {return true;}
+        }
+        return false;
+    }
+
+    /** The union of the bounds of all sectors, or an empty rectangle if there are none */
+    @Override
+    public Rectangle2D.Double getBounds(int ticks, Rectangle2D.Double bounds) {
+        bounds.setRect(0, 0, 0, 0);
+        if (sectors == null || sectors.isEmpty()) {return bounds;}
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < sectors.size(); i++) {
+            sectors.get(i).getBounds(ticks, bounds);
+            minX = Math.min(minX, bounds.x);
+            minY = Math.min(minY, bounds.y);
+            maxX = Math.max(maxX, bounds.x + bounds.width);
+            maxY = Math.max(maxY, bounds.y + bounds.height);
+        }
+        bounds.setRect(minX, minY, maxX - minX, maxY - minY);
+        return bounds;
+    }
+
     @Override
     public void update() {
         // Calculate distance traveled by bullet (standard wave surfing calculation)
@@ -223,11 +311,70 @@ public class WaveImpl implements Wave {
         @Override
         public long lastSeen() {return 1000;}
 
+        private double getOuterRadius(int ticks) {
+            return this.wave.getRadius() + (ticks * this.wave.getBulletSpeed());
+        }
+
+        private double getInnerRadius(double outerRadius) {
+            double depth = Math.min(BASE_DEPTH + (scanStaleness * DEPTH_PER_STALE_TICK), MAX_DEPTH);
+            return Math.max(outerRadius - depth, 1);
+        }
+
+        /**
+         * Closed form point in annular sector test.
+         * First rejects on the radius band (squared, so no sqrt), then checks the bearing
+         * from the wave centre lies between startAngle and endAngle.
+         * Only getOutline (i.e. painting) needs to build an actual shape
+         */
+        @Override
+        public boolean contains(double x, double y, int ticks) {
+            double outerRadius = getOuterRadius(ticks);
+            double innerRadius = getInnerRadius(outerRadius);
+            double dx = x - centre.getX();
+            double dy = y - centre.getY();
+            double distSq = dx * dx + dy * dy;
+            if (distSq > outerRadius * outerRadius || distSq < innerRadius * innerRadius) {return false;}
+            return isWithinSector(Math.atan2(dx, dy));
+        }
+
+        /** true if the given absolute bearing from the wave centre lies between startAngle and endAngle */
+        private boolean isWithinSector(double bearing) {
+            // offset of the bearing from the start of the sector, in the range [0, 2PI)
+            double offset = bearing - startAngle;
+            while (offset < 0) offset += 2 * Math.PI;
+            while (offset >= 2 * Math.PI) offset -= 2 * Math.PI;
+            return offset <= endAngle - startAngle;
+        }
+
+        /**
+         * Tight bounds of the annular sector. That is the four corners of the sector
+         * plus any point on the outer arc where it crosses one of the compass bearings
+         */
+        @Override
+        public Rectangle2D.Double getBounds(int ticks, Rectangle2D.Double bounds) {
+            double outerRadius = getOuterRadius(ticks);
+            double innerRadius = getInnerRadius(outerRadius);
+            double cx = centre.getX();
+            double cy = centre.getY();
+            double sinStart = Math.sin(startAngle), cosStart = Math.cos(startAngle);
+            double sinEnd = Math.sin(endAngle), cosEnd = Math.cos(endAngle);
+            double minX = cx + Math.min(Math.min(innerRadius * sinStart, outerRadius * sinStart), Math.min(innerRadius * sinEnd, outerRadius * sinEnd));
+            double maxX = cx + Math.max(Math.max(innerRadius * sinStart, outerRadius * sinStart), Math.max(innerRadius * sinEnd, outerRadius * sinEnd));
+            double minY = cy + Math.min(Math.min(innerRadius * cosStart, outerRadius * cosStart), Math.min(innerRadius * cosEnd, outerRadius * cosEnd));
+            double maxY = cy + Math.max(Math.max(innerRadius * cosStart, outerRadius * cosStart), Math.max(innerRadius * cosEnd, outerRadius * cosEnd));
+            // robocode bearings, 0 is north (+y) and PI/2 is east (+x)
+            if (isWithinSector(0)) {maxY = cy + outerRadius;}
+            if (isWithinSector(Math.PI / 2)) {maxX = cx + outerRadius;}
+            if (isWithinSector(Math.PI)) {minY = cy - outerRadius;}
+            if (isWithinSector(-Math.PI / 2)) {minX = cx - outerRadius;}
+            bounds.setRect(minX, minY, maxX - minX, maxY - minY);
+            return bounds;
+        }
+
         @Override
         public Area getOutline(int ticks) {
-            double outerRadius = this.wave.getRadius() + (ticks * this.wave.getBulletSpeed());
-            double depth = Math.min(BASE_DEPTH + (scanStaleness * DEPTH_PER_STALE_TICK), MAX_DEPTH);
-            double innerRadius = Math.max(outerRadius - depth, 1);
+            double outerRadius = getOuterRadius(ticks);
+            double innerRadius = getInnerRadius(outerRadius);
             
             // Create a proper closed annular sector using Path2D
             java.awt.geom.Path2D.Double path = new java.awt.geom.Path2D.Double();
@@ -272,6 +419,7 @@ public class WaveImpl implements Wave {
             
             // Close the path
             path.closePath();
+            PerfCounters.increment(PerfCounters.AREA_CONSTRUCTIONS);
             return new Area(path);
         }
 
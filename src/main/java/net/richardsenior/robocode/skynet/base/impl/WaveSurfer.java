@@ -0,0 +1,415 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.util.List;
+import net.richardsenior.robocode.skynet.base.Enemy;
+import net.richardsenior.robocode.skynet.base.Wave;
+import robocode.HitByBulletEvent;
+
+/**
+ * Wave surfing by precise prediction: for the enemy wave that will reach us first, each candidate
+ * movement is played forward through PhysicsSimulator, exactly as the engine would move us, until the wave
+ * breaks over the predicted position, and the candidate ending where the enemy's bullets have been least
+ * likely to go is the one we take.
+ * The candidates are orbiting the wave's centre either way (wall smoothed), stopping, and driving
+ * to each of a fan of points around us.
+ * Danger is the guess factor histogram of where that enemy's bullets have hit us, summed over the bins our
+ * body would cover, and divided by our distance from the firer. The histograms are kept in each enemy's
+ * EnemyMemory, and start with one hit at guess factor zero, as though head on.
+ *
+ * So that dodging one wave doesn't leave us cornered by the next, the wave after it is looked ahead to:
+ * from where each first candidate ends, the same candidates are played against the second wave, and a
+ * first candidate scores its own danger plus the least it can get away with on the second. That is a
+ * small depth first search, kept inside the tick budget three ways.
+ * A candidate's simulation is abandoned as soon as even the safest bin it could still reach
+ * before its wave breaks can't beat the best total so far, so carrying on the way we are orbiting is
+ * evaluated first to make that bound bite early.
+ * Second wave results are memoized by the state they start from (position to the nearest few pixels,
+ * speed, heading bucket and tick), so first candidates ending in the same place share one search, and
+ * since the key doesn't depend on where we are now the results carry over from tick to tick until the
+ * second wave or the histograms change. An abandoned search is remembered as a lower bound.
+ * And once a surf has simulated its budget of ticks (set from the TickBudget quality) no further first
+ * candidates are tried, though the first is always searched in full.
+ * Everything is preallocated, surfing allocates nothing.
+ */
+public class WaveSurfer {
+    private static final int ORBIT_CLOCKWISE = 0;
+    private static final int STOP = 1;
+    private static final int ORBIT_ANTICLOCKWISE = 2;
+    private static final int FIRST_FAN = 3;
+    private static final int FAN_POINTS = 8;
+    private static final int CANDIDATES = FIRST_FAN + FAN_POINTS;
+    /** the wave we are surfing and the one after it */
+    private static final int LEVELS = 2;
+    /** how far away the fan of go to points is, pixels */
+    private static final double FAN_RADIUS = 120;
+    private static final double[] FAN_SIN = new double[FAN_POINTS];
+    private static final double[] FAN_COS = new double[FAN_POINTS];
+    static {
+        for (int i = 0; i < FAN_POINTS; i++) {
+            FAN_SIN[i] = Math.sin(i * 2 * Math.PI / FAN_POINTS);
+            FAN_COS[i] = Math.cos(i * 2 * Math.PI / FAN_POINTS);
+        }
+    }
+    /** orbiting turns this much short of perpendicular, towards straight away from the firer, so we edge away from it */
+    private static final double RETREAT_ANGLE = 0.15;
+    /** wall smoothing keeps a point this far ahead of us inside the field */
+    private static final double WALL_STICK = 120;
+    private static final double WALL_MARGIN = 25;
+    private static final double SMOOTHING_STEP = 0.05;
+    private static final double ROBOT_HALF_WIDTH = 18;
+    /** waves further away than this many ticks of travel aren't surfed yet, and no simulation goes longer */
+    private static final int MAX_SURF_TICKS = 150;
+    /** how often, in simulated ticks, a candidate's lower bound is checked */
+    private static final int BOUND_INTERVAL = 3;
+    /** simulated ticks a surf may use before it stops trying further candidates, until told otherwise */
+    private static final int DEFAULT_SIMULATION_BUDGET = 16000;
+
+    /** open addressing, a power of two, emptied once half full */
+    private static final int MEMO_SIZE = 1 << 10;
+    private static final double MEMO_POSITION_BUCKET = 4; // pixels
+    private static final int MEMO_HEADING_BUCKETS = 64;
+
+    private final BattlefieldImpl battlefield;
+    private final PhysicsSimulator simulator;
+    private final double width;
+    private final double height;
+    /** one simulation state per level of the search */
+    private final RobotState[] states = {new RobotState(), new RobotState()};
+    /** per level, the histogram of that wave's enemy and the fan of points around where the level starts */
+    private final float[][] bins = new float[LEVELS][GuessFactorStats.BIN_COUNT];
+    private final double[][] fanX = new double[LEVELS][FAN_POINTS];
+    private final double[][] fanY = new double[LEVELS][FAN_POINTS];
+    /** where each first candidate ended up and its total danger, infinite if abandoned, for painting */
+    private final double[] endX = new double[CANDIDATES];
+    private final double[] endY = new double[CANDIDATES];
+    private final double[] dangers = new double[CANDIDATES];
+    /** the wave being surfed and the one after it, either null if none */
+    private final WaveImpl[] waves = new WaveImpl[LEVELS];
+    private int bestCandidate = -1;
+    /** 1 if we are orbiting the wave clockwise, -1 anticlockwise */
+    private int orbitDirection = 1;
+    /** set by command, what a candidate does from a given state */
+    private double commandTurn;
+    private double commandDistance;
+    private int simulationBudget = DEFAULT_SIMULATION_BUDGET;
+
+    /** second wave dangers by start state, valid while memoGenerations matches generation */
+    private final long[] memoKeys = new long[MEMO_SIZE];
+    private final double[] memoDangers = new double[MEMO_SIZE];
+    /** false if memoDangers only holds a lower bound, the search having been abandoned at it */
+    private final boolean[] memoExact = new boolean[MEMO_SIZE];
+    private final int[] memoGenerations = new int[MEMO_SIZE];
+    private int generation = 1;
+    private int memoCount = 0;
+    /** what the memo was filled against */
+    private WaveImpl memoWave;
+    private int memoHitsSeen = 0;
+    private int hitsSeen = 0;
+
+    /** ticks simulated, candidates abandoned early, and second wave searches memoized, since construction */
+    private long simulatedTicks = 0;
+    private long pruned = 0;
+    private long memoLookups = 0;
+    private long memoReused = 0;
+
+    public WaveSurfer(BattlefieldImpl battlefield) {
+        this.battlefield = battlefield;
+        this.simulator = battlefield.getSimulator();
+        this.width = battlefield.getSelf().getBattleFieldWidth();
+        this.height = battlefield.getSelf().getBattleFieldHeight();
+        battlefield.getEventDispatcher().subscribe(HitByBulletEvent.class, this::onHitByBullet);
+    }
+
+    public WaveImpl getWave() {return waves[0];}
+    /** the wave looked ahead to, null if none */
+    public WaveImpl getSecondWave() {return waves[1];}
+    public int getBestCandidate() {return bestCandidate;}
+    public long getSimulatedTicks() {return simulatedTicks;}
+    public long getPruned() {return pruned;}
+    public long getMemoLookups() {return memoLookups;}
+    /** lookups answered from the memo without simulating */
+    public long getMemoReused() {return memoReused;}
+    /** Caps the ticks a surf simulates, past which the remaining first candidates aren't tried */
+    public void setSimulationBudget(int ticks) {this.simulationBudget = ticks;}
+
+    /**
+     * Chooses the safest candidate for the nearest wave, looking ahead to the next, and issues its movement commands
+     * @return false, having done nothing, if there is no wave to surf
+     */
+    public boolean surf() {
+        robocode.AdvancedRobot self = battlefield.getSelf();
+        long now = self.getTime();
+        waves[0] = findWave(self.getX(), self.getY(), now, null);
+        waves[1] = waves[0] == null ? null : findWave(self.getX(), self.getY(), now, waves[0]);
+        bestCandidate = -1;
+        if (waves[0] == null) {return false;}
+        for (int level = 0; level < LEVELS; level++) {
+            if (waves[level] != null) {EnemyMemory.get(waves[level].getEnemy().getId()).getSurfStats().getBlendedBins(GuessFactorStats.GLOBAL_SEGMENT, bins[level]);}
+        }
+        // the memo holds for one second wave against unchanged histograms
+        if (waves[1] != memoWave || memoHitsSeen != hitsSeen || memoCount > MEMO_SIZE / 2) {
+            generation++;
+            memoCount = 0;
+            memoWave = waves[1];
+            memoHitsSeen = hitsSeen;
+        }
+        setFan(0, self.getX(), self.getY());
+        long budgetEnd = simulatedTicks + simulationBudget;
+        double bestDanger = Double.POSITIVE_INFINITY;
+        // carrying on as we are first, so that the rest are cut short against it
+        int first = orbitDirection > 0 ? ORBIT_CLOCKWISE : ORBIT_ANTICLOCKWISE;
+        for (int i = 0; i < CANDIDATES; i++) {
+            int candidate = i == 0 ? first : (i == first ? 0 : i);
+            dangers[candidate] = Double.POSITIVE_INFINITY;
+            if (bestCandidate >= 0 && simulatedTicks >= budgetEnd) {continue;}
+            RobotState s = states[0].set(self);
+            double danger = evaluate(0, candidate, s, bestDanger);
+            endX[candidate] = s.x;
+            endY[candidate] = s.y;
+            if (waves[1] != null && danger < bestDanger) {danger += getSecondDanger(s, now, bestDanger - danger);}
+            dangers[candidate] = danger;
+            if (danger < bestDanger) {
+                bestDanger = danger;
+                bestCandidate = candidate;
+            }
+        }
+        if (bestCandidate < 0) {return false;}
+        if (bestCandidate == ORBIT_CLOCKWISE) {orbitDirection = 1;}
+        if (bestCandidate == ORBIT_ANTICLOCKWISE) {orbitDirection = -1;}
+        RobotState s = states[0].set(self);
+        command(0, bestCandidate, s);
+        self.setTurnRightRadians(commandTurn);
+        self.setAhead(commandDistance);
+        return true;
+    }
+
+    /**
+     * The enemy wave that will break over us soonest, ignoring our own, any already passing and 'exclude'
+     */
+    private WaveImpl findWave(double x, double y, long time, WaveImpl exclude) {
+        WaveImpl nearest = null;
+        double nearestTicks = MAX_SURF_TICKS;
+        Enemy[] enemies = battlefield.getEnemies();
+        for (int e = 0; e < enemies.length; e++) {
+            if (enemies[e] == battlefield.getSelfAsEnemy()) {continue;}
+            List<Wave> waves = enemies[e].getWaves();
+            for (int i = 0; i < waves.size(); i++) {
+                if (!(waves.get(i) instanceof WaveImpl) || waves.get(i) == exclude) {continue;}
+                WaveImpl w = (WaveImpl)waves.get(i);
+                if (w.getEnemy() == null) {continue;}
+                double ticks = (w.getCentre().distance(x, y) - ROBOT_HALF_WIDTH - w.getRadius(time)) / w.getBulletSpeed();
+                if (ticks > 0 && ticks < nearestTicks) {
+                    nearestTicks = ticks;
+                    nearest = w;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private void setFan(int level, double x, double y) {
+        for (int i = 0; i < FAN_POINTS; i++) {
+            fanX[level][i] = x + FAN_RADIUS * FAN_SIN[i];
+            fanY[level][i] = y + FAN_RADIUS * FAN_COS[i];
+        }
+    }
+
+    /**
+     * The least danger any candidate gets from the second wave, starting from 'from' where the first broke.
+     * A second wave that has already reached us by then is scored where we stand
+     * @return infinity if none is less than 'cutoff'
+     */
+    private double getSecondDanger(RobotState from, long now, double cutoff) {
+        memoLookups++;
+        long key = getMemoKey(from);
+        int slot = (int)(key ^ (key >>> 29)) * 0x9E3779B9 >>> 22;
+        while (memoGenerations[slot] == generation && memoKeys[slot] != key) {slot = (slot + 1) & (MEMO_SIZE - 1);}
+        if (memoGenerations[slot] == generation) {
+            if (memoExact[slot]) {
+                memoReused++;
+                return memoDangers[slot] < cutoff ? memoDangers[slot] : Double.POSITIVE_INFINITY;
+            }
+            // abandoned before, at a bound this cutoff is no higher than
+            if (memoDangers[slot] >= cutoff) {
+                memoReused++;
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            memoGenerations[slot] = generation;
+            memoKeys[slot] = key;
+            memoCount++;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        WaveImpl wave = waves[1];
+        if (wave.getRadius(from.time) >= wave.getCentre().distance(from.x, from.y) - ROBOT_HALF_WIDTH) {
+            best = getDanger(1, from.x, from.y);
+        } else {
+            setFan(1, from.x, from.y);
+            int first = orbitDirection > 0 ? ORBIT_CLOCKWISE : ORBIT_ANTICLOCKWISE;
+            for (int i = 0; i < CANDIDATES; i++) {
+                int candidate = i == 0 ? first : (i == first ? 0 : i);
+                double danger = evaluate(1, candidate, states[1].set(from), Math.min(best, cutoff));
+                if (danger < best) {best = danger;}
+            }
+        }
+        boolean exact = best < cutoff;
+        memoDangers[slot] = exact ? best : cutoff;
+        memoExact[slot] = exact;
+        return exact ? best : Double.POSITIVE_INFINITY;
+    }
+
+    /** the start state rounded to the memo's buckets, packed as x, y, speed, heading and the tick */
+    private static long getMemoKey(RobotState s) {
+        long x = (long)(s.x / MEMO_POSITION_BUCKET) & 0x7FF;
+        long y = (long)(s.y / MEMO_POSITION_BUCKET) & 0x7FF;
+        long velocity = (Math.round(s.velocity) + 8) & 0x1F;
+        long heading = (long)(robocode.util.Utils.normalAbsoluteAngle(s.heading) * MEMO_HEADING_BUCKETS / (2 * Math.PI)) & 0x3F;
+        return ((((x << 11 | y) << 5 | velocity) << 6 | heading) << 16) | (s.time & 0xFFFF);
+    }
+
+    /**
+     * Plays the candidate forward from 's' until the level's wave breaks over it, leaving s where it ends
+     * @return the danger there, or infinity if it was abandoned as no better than 'bestDanger'
+     */
+    private double evaluate(int level, int candidate, RobotState s, double bestDanger) {
+        if (candidate >= FIRST_FAN && !simulator.inField(fanX[level][candidate - FIRST_FAN], fanY[level][candidate - FIRST_FAN])) {
+            return Double.POSITIVE_INFINITY;
+        }
+        WaveImpl wave = waves[level];
+        Point2D centre = wave.getCentre();
+        for (int t = 0; t < MAX_SURF_TICKS; t++) {
+            command(level, candidate, s);
+            simulator.step(s, commandTurn, commandDistance, robocode.Rules.MAX_VELOCITY);
+            simulatedTicks++;
+            double distance = centre.distance(s.x, s.y);
+            double radius = wave.getRadius(s.time);
+            if (radius >= distance - ROBOT_HALF_WIDTH) {break;}
+            if (t % BOUND_INTERVAL == 0 && getLowerBound(level, s, distance, radius) >= bestDanger) {
+                pruned++;
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return getDanger(level, s.x, s.y);
+    }
+
+    /** the candidate's commands from the given state, into commandTurn and commandDistance */
+    private void command(int level, int candidate, RobotState s) {
+        if (candidate == STOP) {
+            commandTurn = 0;
+            commandDistance = 0;
+            return;
+        }
+        double goalHeading;
+        double distance;
+        if (candidate >= FIRST_FAN) {
+            double dx = fanX[level][candidate - FIRST_FAN] - s.x;
+            double dy = fanY[level][candidate - FIRST_FAN] - s.y;
+            goalHeading = Math.atan2(dx, dy);
+            distance = Math.sqrt(dx * dx + dy * dy);
+        } else {
+            int direction = candidate == ORBIT_CLOCKWISE ? 1 : -1;
+            Point2D centre = waves[level].getCentre();
+            double bearing = Math.atan2(s.x - centre.getX(), s.y - centre.getY());
+            goalHeading = smooth(s.x, s.y, bearing + direction * (Math.PI / 2 - RETREAT_ANGLE), direction);
+            distance = Double.POSITIVE_INFINITY;
+        }
+        // drive whichever way round needs the least turning
+        double turn = robocode.util.Utils.normalRelativeAngle(goalHeading - s.heading);
+        if (Math.abs(turn) > Math.PI / 2) {
+            commandTurn = robocode.util.Utils.normalRelativeAngle(turn + Math.PI);
+            commandDistance = -distance;
+        } else {
+            commandTurn = turn;
+            commandDistance = distance;
+        }
+    }
+
+    /** turns the heading in the orbit direction until a point WALL_STICK along it is clear of the walls */
+    private double smooth(double x, double y, double heading, int direction) {
+        for (int i = 0; i < Math.PI * 2 / SMOOTHING_STEP; i++) {
+            double px = x + WALL_STICK * Math.sin(heading);
+            double py = y + WALL_STICK * Math.cos(heading);
+            if (px > WALL_MARGIN && px < width - WALL_MARGIN && py > WALL_MARGIN && py < height - WALL_MARGIN) {break;}
+            heading += direction * SMOOTHING_STEP;
+        }
+        return heading;
+    }
+
+    /** The level's histogram summed over the bins our body covers at (x, y), over our distance from the firer */
+    private double getDanger(int level, double x, double y) {
+        WaveImpl wave = waves[level];
+        Point2D centre = wave.getCentre();
+        double distance = Math.max(1, centre.distance(x, y));
+        double guessFactor = wave.getGuessFactor(x, y);
+        double escapeAngle = wave.getEscapeAngle(guessFactor);
+        double halfWidth = escapeAngle > 0 ? Math.atan2(ROBOT_HALF_WIDTH, distance) / escapeAngle : 1;
+        int from = GuessFactorStats.getBin(guessFactor - halfWidth);
+        int to = GuessFactorStats.getBin(guessFactor + halfWidth);
+        float[] levelBins = bins[level];
+        double danger = 0;
+        for (int i = from; i <= to; i++) {danger += levelBins[i];}
+        return danger / distance;
+    }
+
+    /**
+     * No position the candidate can still reach from 's' before the wave breaks is safer than this. Before then the
+     * wave closes by at least bulletSpeed - 8 a tick, which bounds the time left and so how far we can get;
+     * any danger is at least the smallest single bin within that reach over the furthest we could be from the firer
+     */
+    private double getLowerBound(int level, RobotState s, double distance, double radius) {
+        WaveImpl wave = waves[level];
+        double ticks = Math.ceil((distance - ROBOT_HALF_WIDTH - radius) / (wave.getBulletSpeed() - robocode.Rules.MAX_VELOCITY));
+        double reach = ticks * robocode.Rules.MAX_VELOCITY;
+        if (reach >= distance) {return 0;}
+        double guessFactor = wave.getGuessFactor(s.x, s.y);
+        // the narrower side, as the reach may cross over to it
+        double escapeAngle = Math.min(wave.getEscapeAngle(1), wave.getEscapeAngle(-1));
+        if (escapeAngle <= 0) {return 0;}
+        double spread = Math.asin(reach / distance) / escapeAngle;
+        int from = GuessFactorStats.getBin(guessFactor - spread);
+        int to = GuessFactorStats.getBin(guessFactor + spread);
+        float[] levelBins = bins[level];
+        float least = Float.POSITIVE_INFINITY;
+        for (int i = from; i <= to; i++) {least = Math.min(least, levelBins[i]);}
+        return least / (distance + reach);
+    }
+
+    /** Finds the wave that hit us and learns the guess factor it hit at */
+    private void onHitByBullet(HitByBulletEvent event) {
+        robocode.Bullet bullet = event.getBullet();
+        if (bullet == null) {return;}
+        long time = battlefield.getSelf().getTime();
+        WaveImpl hit = null;
+        double closest = bullet.getVelocity() + ROBOT_HALF_WIDTH;
+        Enemy[] enemies = battlefield.getEnemies();
+        for (int e = 0; e < enemies.length; e++) {
+            if (!enemies[e].getId().equals(event.getName())) {continue;}
+            List<Wave> waves = enemies[e].getWaves();
+            for (int i = 0; i < waves.size(); i++) {
+                if (!(waves.get(i) instanceof WaveImpl)) {continue;}
+                WaveImpl w = (WaveImpl)waves.get(i);
+                if (Math.abs(w.getBulletSpeed() - bullet.getVelocity()) > 0.1) {continue;}
+                double error = Math.abs(w.getCentre().distance(bullet.getX(), bullet.getY()) - w.getRadius(time));
+                if (error < closest) {
+                    closest = error;
+                    hit = w;
+                }
+            }
+        }
+        if (hit == null) {return;}
+        hitsSeen++;
+        EnemyMemory.get(event.getName()).getSurfStats().record(GuessFactorStats.GLOBAL_SEGMENT, hit.getGuessFactor(bullet.getX(), bullet.getY()));
+    }
+
+    /** Draws where each first candidate ends up, the chosen one in green and abandoned ones not at all */
+    public void doPaint(Graphics2D g) {
+        if (waves[0] == null) {return;}
+        for (int i = 0; i < CANDIDATES; i++) {
+            if (dangers[i] == Double.POSITIVE_INFINITY) {continue;}
+            g.setColor(i == bestCandidate ? java.awt.Color.GREEN : java.awt.Color.ORANGE);
+            g.fillOval((int)endX[i] - 4, (int)endY[i] - 4, 8, 8);
+        }
+    }
+}
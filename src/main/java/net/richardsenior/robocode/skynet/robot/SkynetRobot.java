@@ -3,6 +3,7 @@ package net.richardsenior.robocode.skynet.robot;
 import robocode.*;
 import net.richardsenior.robocode.skynet.base.Battlefield;
 import net.richardsenior.robocode.skynet.base.impl.BattlefieldImpl;
+import net.richardsenior.robocode.skynet.base.impl.PerfCounters;
 import robocode.ScannedRobotEvent;
 import robocode.BulletHitEvent;
 import robocode.BulletMissedEvent;
@@ -21,6 +22,8 @@ public class SkynetRobot extends AdvancedRobot {
     @Override
     public void run() {
         try {
+            // off unless switched on by property, the per round summary then ends up in the data directory
+            PerfCounters.configure();
             this.battlefield = new BattlefieldImpl(this);
             while (true) {
                 this.battlefield.update();
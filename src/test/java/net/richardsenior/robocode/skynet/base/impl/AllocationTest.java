@@ -0,0 +1,95 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+import robocode.Rules;
+import robocode.ScannedRobotEvent;
+
+/**
+ * Bytes allocated by BattlefieldImpl.update() in the steady state, that is once every enemy has been seen,
+ * the scan histories are full and the JIT has settled. The per tick path works on reused scratch objects
+ * so that GC pauses don't land mid battle, anything much over the budget is a regression.
+ * Enemies are scanned every tick through the event queue, as robocode would deliver them.
+ * They fire every so often (an energy drop between 0.1 and 3), so their waves are surfed, and we fire back
+ * whenever the gun is cool and on target, so our gun waves are aimed, fired, resolved and learnt from.
+ */
+public class AllocationTest {
+    /**
+     * bytes a steady state tick may allocate, on average. What is left is the WaveImpl made for each enemy shot
+     * (about 1KB, so with three enemies firing every FIRE_INTERVAL ticks some 170 bytes a tick), nothing per tick
+     */
+    private static final long TICK_ALLOCATION_BUDGET = 256;
+    private static final int ENEMIES = 3;
+    /** ticks between an enemy's shots, enough for its gun to cool after the heaviest */
+    private static final int FIRE_INTERVAL = 20;
+    private static final int WARM_UP_TICKS = 3000;
+    private static final int MEASURED_TICKS = 1000;
+
+    @Test
+    public void steadyStateTickStaysWithinAllocationBudget() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        StubRobot robot = new StubRobot();
+        BattlefieldImpl battlefield = new BattlefieldImpl(robot);
+        // the events are made up front so that only the robot's own allocation is measured
+        ScannedRobotEvent[] scans = new ScannedRobotEvent[(WARM_UP_TICKS + MEASURED_TICKS) * ENEMIES];
+        double[] energy = new double[ENEMIES];
+        java.util.Arrays.fill(energy, 100);
+        for (int tick = 0; tick < WARM_UP_TICKS + MEASURED_TICKS; tick++) {
+            for (int e = 0; e < ENEMIES; e++) {
+                // each enemy fires in turn, at powers from 0.1 to 3, and is topped up (which isn't a shot) before it runs out
+                if ((tick + e * 7) % FIRE_INTERVAL == 0) {
+                    energy[e] -= 0.1 + (tick / FIRE_INTERVAL % 11) * 0.29;
+                } else if (energy[e] < 20) {
+                    energy[e] = 100;
+                }
+                // each enemy circles its own spot at full speed
+                double angle = tick * 0.05 + e * 2;
+                double x = 150 + e * 250 + 80 * Math.sin(angle);
+                double y = 300 + 80 * Math.cos(angle);
+                double bearing = Math.atan2(x - robot.x, y - robot.y) - robot.heading;
+                ScannedRobotEvent scan = new ScannedRobotEvent("enemy" + e, energy[e], bearing,
+                    Math.hypot(x - robot.x, y - robot.y), angle + Math.PI / 2, 8, false);
+                scan.setTime(tick);
+                scans[tick * ENEMIES + e] = scan;
+            }
+        }
+
+        WaveSurfer surfer = ((MoverImpl)battlefield.getMover()).getSurfer();
+        long id = Thread.currentThread().getId();
+        long start = 0;
+        long simulated = 0;
+        long resolved = 0;
+        int fired = 0;
+        for (int tick = 0; tick < WARM_UP_TICKS + MEASURED_TICKS; tick++) {
+            if (tick == WARM_UP_TICKS) {
+                start = threads.getThreadAllocatedBytes(id);
+                simulated = surfer.getSimulatedTicks();
+                resolved = battlefield.getGunWaves().getResolved();
+                fired = robot.bullets;
+            }
+            robot.time = tick;
+            robot.radarHeading = (tick % 8) * Math.PI / 4;
+            // the gun turns as far as it may towards where it was last pointed, and cools
+            double gunTurn = Math.max(-Rules.GUN_TURN_RATE_RADIANS, Math.min(Rules.GUN_TURN_RATE_RADIANS, robot.gunTurn));
+            robot.gunHeading += gunTurn;
+            robot.gunTurn -= gunTurn;
+            robot.gunHeat = Math.max(0, robot.gunHeat - 0.1);
+            for (int e = 0; e < ENEMIES; e++) {battlefield.update(scans[tick * ENEMIES + e]);}
+            battlefield.update();
+        }
+        long perTick = (threads.getThreadAllocatedBytes(id) - start) / MEASURED_TICKS;
+        // the measured ticks did surf, fire and learn
+        assertTrue(surfer.getSimulatedTicks() > simulated);
+        assertTrue(battlefield.getGunWaves().getResolved() > resolved);
+        assertTrue(robot.bullets > fired);
+        assertTrue("steady state tick allocated " + perTick + " bytes", perTick <= TICK_ALLOCATION_BUDGET);
+    }
+}
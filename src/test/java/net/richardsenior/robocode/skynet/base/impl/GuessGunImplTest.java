@@ -0,0 +1,106 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.geom.Point2D;
+import org.junit.Test;
+import robocode.ScannedRobotEvent;
+import robocode.util.Utils;
+
+/**
+ * Robocode creates a new robot, and so a new battlefield, enemies and guns, every round.
+ * What the guns have learnt about an enemy has to outlive that.
+ */
+public class GuessGunImplTest {
+
+    /** the gun aimed at the named enemy in a new round */
+    private static GuessGunImpl newRound(String name) {
+        StubRobot robot = new StubRobot();
+        BattlefieldImpl battlefield = new BattlefieldImpl(robot);
+        OccupancyGridTest.scan(battlefield, robot, name, 200, 150, 100);
+        return (GuessGunImpl)battlefield.getEnemy(name).getGun();
+    }
+
+    /** A resolved shot at the target from where the robot starts, aimed by the guess factor guns and found to one side */
+    private static void learnFrom(VirtualGuns guns) {
+        Point2D.Double us = new Point2D.Double(400, 300);
+        Point2D.Double target = new Point2D.Double(200, 150);
+        Situation situation = new Situation(null, null).set(us, target, 14);
+        GunWave wave = new GunWave().set(null, us.x, us.y, 0, 14, null, null);
+        wave.setAim(situation);
+        KnnPredictor.getFeatures(situation, wave.getFeatures(KnnPredictor.DIMENSIONS));
+        java.util.Arrays.fill(wave.getAngles(guns.size()), Float.NaN);
+        double found = situation.bearing + 0.1;
+        guns.recordResult(wave, new Point2D.Double(us.x + Math.sin(found) * 250, us.y + Math.cos(found) * 250));
+    }
+
+    @Test
+    public void learningCarriesOverToTheNextRound() {
+        GuessGunImpl first = newRound("carried");
+        learnFrom(first.getVirtualGuns());
+        GuessGunImpl second = newRound("carried");
+        assertNotSame(first, second);
+        assertEquals(1, second.getBinPredictor().getTotalShots());
+        assertEquals(1, second.getKnnPredictor().size());
+        assertEquals(1, second.getNeuralPredictor().getNet().size());
+    }
+
+    @Test
+    public void eachEnemyLearnsSeparately() {
+        learnFrom(newRound("one").getVirtualGuns());
+        GuessGunImpl other = newRound("other");
+        assertEquals(0, other.getBinPredictor().getTotalShots());
+        assertEquals(0, other.getKnnPredictor().size());
+        assertEquals(0, other.getNeuralPredictor().getNet().size());
+    }
+
+    /** Scores a shot on which only the given gun aimed, and aimed straight at where the target was found */
+    private static void scoreHit(VirtualGuns guns, int gun) {
+        Point2D.Double found = new Point2D.Double(200, 150);
+        GunWave wave = new GunWave().set(null, 400, 300, 0, 14, null, null);
+        float[] angles = wave.getAngles(guns.size());
+        java.util.Arrays.fill(angles, Float.NaN);
+        angles[gun] = (float)Math.atan2(found.x - 400, found.y - 300);
+        guns.recordResult(wave, found);
+    }
+
+    @Test
+    public void hitRatesCarryOverToTheNextRound() {
+        VirtualGuns first = newRound("scored").getVirtualGuns();
+        int last = first.size() - 1;
+        scoreHit(first, last);
+        scoreHit(first, last);
+        VirtualGuns second = newRound("scored").getVirtualGuns();
+        assertNotSame(first, second);
+        assertEquals(2, second.getShots(last));
+        assertEquals(1, second.getHitRate(last), 0);
+        assertEquals(0, second.getShots(0));
+        // a different enemy starts from nothing
+        assertEquals(0, newRound("unscored").getVirtualGuns().getShots(last));
+    }
+
+    @Test
+    public void guessFactorGunsAimFromTheTargetNotTheIntercept() {
+        StubRobot robot = new StubRobot();
+        BattlefieldImpl battlefield = new BattlefieldImpl(robot);
+        // heading east at full speed, so the intercept is well ahead of the target
+        double x = 200;
+        double y = 500;
+        for (int tick = 0; tick < 12; tick++, x += 8) {
+            robot.time = tick;
+            double bearing = Math.atan2(x - robot.x, y - robot.y) - robot.heading;
+            ScannedRobotEvent event = new ScannedRobotEvent("fresh", 100, bearing,
+                Math.hypot(x - robot.x, y - robot.y), Math.PI / 2, 8, false);
+            event.setTime(tick);
+            battlefield.getEnemy("fresh").update(event);
+        }
+        GuessGunImpl gun = (GuessGunImpl)battlefield.getEnemy("fresh").getGun();
+        gun.update();
+        // nothing learnt and no hit rates, so the bins aim with guess factor 0, which is straight at the target
+        assertEquals("bins", gun.getVirtualGuns().getName(gun.getVirtualGuns().getAimingGun()));
+        double toTarget = Math.atan2(x - 8 - robot.x, y - robot.y);
+        assertEquals(0, Utils.normalRelativeAngle(robot.gunHeading + robot.gunTurn - toTarget), 1e-6);
+    }
+}
@@ -0,0 +1,145 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * KdTree against a brute force search over the points it should still hold, through enough inserts for
+ * eviction and the rebuilds to happen many times, and a benchmark at the size KnnPredictor uses.
+ */
+public class KdTreeTest {
+    private static final int DIMS = 4;
+    private static final double[] WEIGHTS = {2, 4, 1, 0.5};
+    private static final int CAPACITY = 500;
+
+    private static double distanceSq(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < DIMS; i++) {
+            double diff = a[i] - b[i];
+            sum += WEIGHTS[i] * diff * diff;
+        }
+        return sum;
+    }
+
+    @Test
+    public void nearestAgreesWithBruteForce() {
+        KdTree tree = new KdTree(DIMS, CAPACITY, WEIGHTS);
+        java.util.Random random = new java.util.Random(7);
+        int total = 6 * CAPACITY;
+        float[][] points = new float[total][DIMS];
+        float[] query = new float[DIMS];
+        double[] expected = new double[CAPACITY];
+        double[] found = new double[50];
+        for (int n = 0; n < total; n++) {
+            if (n % 300 < 40 && n > 0) {
+                // a run of exact repeats, an enemy sitting still
+                points[n] = points[n - 1].clone();
+            } else {
+                // coarse coordinates, so that many points share a value on some dimension
+                for (int i = 0; i < DIMS; i++) {points[n][i] = random.nextInt(9) / 8f;}
+            }
+            // the value is the point's index, so results can be checked against it
+            tree.add(points[n], n);
+            int live = Math.min(n + 1, CAPACITY);
+            assertEquals(live, tree.size());
+            if (n % 17 != 0) {continue;}
+
+            for (int i = 0; i < DIMS; i++) {query[i] = random.nextInt(17) / 16f;}
+            if (n % 2 == 0) {query = points[n - random.nextInt(live)].clone();}
+            for (int k : new int[]{1, 5, 50}) {
+                for (int i = 0; i < live; i++) {expected[i] = distanceSq(query, points[n - i]);}
+                java.util.Arrays.sort(expected, 0, live);
+                int count = tree.nearest(query, k);
+                assertEquals(Math.min(k, live), count);
+                for (int r = 0; r < count; r++) {
+                    int index = (int)tree.getResultValue(r);
+                    // only live points, at the distance reported
+                    assertTrue("evicted point " + index + " returned after " + n, index > n - live && index <= n);
+                    assertEquals(distanceSq(query, points[index]), tree.getResultDistanceSq(r), 0);
+                    found[r] = tree.getResultDistanceSq(r);
+                }
+                java.util.Arrays.sort(found, 0, count);
+                for (int r = 0; r < count; r++) {assertEquals(expected[r], found[r], 0);}
+            }
+        }
+    }
+
+    /**
+     * A random point, either anywhere (the worst case, nothing for the tree to prune) or near one of a few
+     * dozen fixed centres, more like real situations, which bunch up by distance, speed and walls
+     */
+    private static void randomPoint(java.util.Random random, float[][] centres, float[] point) {
+        float[] centre = centres == null ? null : centres[random.nextInt(centres.length)];
+        for (int i = 0; i < point.length; i++) {
+            point[i] = centre == null ? random.nextFloat() : centre[i] + (float)random.nextGaussian() * 0.03f;
+        }
+    }
+
+    /**
+     * The mean time of a k=K query, of an add, and of working out the distance to every live point
+     * (a brute force search, for scale, as it doesn't depend on the machine), nanoseconds.
+     * others stands in for the live points, as many as the tree holds
+     */
+    private static long[] time(KdTree tree, float[][] others, java.util.Random random, float[][] centres, int operations) {
+        float[] point = new float[KnnPredictor.DIMENSIONS];
+        double[] weights = {2, 4, 1, 2, 2, 1, 2};
+        long queries = 0;
+        long adds = 0;
+        long bruteForce = 0;
+        double sink = 0;
+        for (int n = 0; n < operations; n++) {
+            randomPoint(random, centres, point);
+            long start = System.nanoTime();
+            sink += tree.nearest(point, KnnPredictor.K);
+            long middle = System.nanoTime();
+            tree.add(point, random.nextFloat());
+            long end = System.nanoTime();
+            queries += middle - start;
+            adds += end - middle;
+            if (n % 10 == 0) {
+                for (float[] other : others) {
+                    for (int i = 0; i < point.length; i++) {
+                        double diff = point[i] - other[i];
+                        sink += weights[i] * diff * diff;
+                    }
+                }
+                bruteForce += System.nanoTime() - end;
+            }
+        }
+        if (sink == 0) {throw new IllegalStateException();}
+        return new long[]{queries / operations, adds / operations, bruteForce * 10 / operations};
+    }
+
+    private static void benchmark(String name, float[][] centres) {
+        // tens of thousands of points over a battle, the tree keeping the most recent
+        KdTree tree = KnnPredictor.createTree();
+        java.util.Random random = new java.util.Random(1);
+        int total = 30000;
+        float[][] live = new float[KnnPredictor.CAPACITY][KnnPredictor.DIMENSIONS];
+        for (int n = 0; n < total; n++) {
+            float[] point = live[n % live.length];
+            randomPoint(random, centres, point);
+            tree.add(point, random.nextFloat());
+        }
+        assertEquals(live.length, tree.size());
+        time(tree, live, random, centres, 5000);
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < 5; round++) {
+            long[] t = time(tree, live, random, centres, 5000);
+            for (int i = 0; i < best.length; i++) {best[i] = Math.min(best[i], t[i]);}
+        }
+        System.out.println("KdTree of " + tree.size() + " " + name + " points: k=" + KnnPredictor.K + " query "
+            + best[0] + "ns, add " + best[1] + "ns, brute force distances " + best[2] + "ns");
+    }
+
+    @Test
+    public void benchmark() {
+        java.util.Random random = new java.util.Random(2);
+        float[][] centres = new float[30][KnnPredictor.DIMENSIONS];
+        for (float[] centre : centres) {randomPoint(random, null, centre);}
+        benchmark("clustered", centres);
+        benchmark("uniform", null);
+    }
+}
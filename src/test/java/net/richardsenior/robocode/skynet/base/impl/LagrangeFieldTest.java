@@ -0,0 +1,96 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import org.junit.Test;
+
+/**
+ * The Lagrange point against a brute force search for the in-field cell furthest from every enemy
+ */
+public class LagrangeFieldTest {
+    private static final double WIDTH = 800;
+    private static final double HEIGHT = 600;
+    private static final double WALL_MARGIN = 28;
+    private static final int CELL_SIZE = 16;
+
+    private BattlefieldImpl battlefield;
+    private StubRobot robot;
+
+    private LagrangeField fieldWith(double[][] enemies) {
+        robot = new StubRobot();
+        // out of the way of the enemies, we are not one of them anyway
+        robot.x = 20;
+        robot.y = 20;
+        battlefield = new BattlefieldImpl(robot);
+        for (int i = 0; i < enemies.length; i++) {
+            OccupancyGridTest.scan(battlefield, robot, "enemy" + i, enemies[i][0], enemies[i][1], 100);
+        }
+        LagrangeField field = new LagrangeField(WIDTH, HEIGHT, WALL_MARGIN, CELL_SIZE);
+        field.update(battlefield.getRegistry(), robot.time);
+        return field;
+    }
+
+    /** squared distance to the nearest enemy */
+    private static double clearance(double x, double y, double[][] enemies) {
+        double best = Double.POSITIVE_INFINITY;
+        for (double[] e : enemies) {best = Math.min(best, Point2D.distanceSq(x, y, e[0], e[1]));}
+        return best;
+    }
+
+    /** the clearest cell centre clear of the walls */
+    private static double bruteForce(double[][] enemies) {
+        double best = 0;
+        for (double x = CELL_SIZE / 2.0; x < WIDTH; x += CELL_SIZE) {
+            for (double y = CELL_SIZE / 2.0; y < HEIGHT; y += CELL_SIZE) {
+                if (x < WALL_MARGIN || y < WALL_MARGIN || x > WIDTH - WALL_MARGIN || y > HEIGHT - WALL_MARGIN) {continue;}
+                best = Math.max(best, clearance(x, y, enemies));
+            }
+        }
+        return best;
+    }
+
+    private void assertBest(double[][] enemies, LagrangeField field) {
+        Point2D.Double best = field.getBest();
+        assertNotNull(best);
+        assertFalse(field.getCandidates().isEmpty());
+        assertEquals(bruteForce(enemies), clearance(best.x, best.y, enemies), 1e-6);
+        assertTrue(best.x >= WALL_MARGIN && best.y >= WALL_MARGIN && best.x <= WIDTH - WALL_MARGIN && best.y <= HEIGHT - WALL_MARGIN);
+    }
+
+    @Test
+    public void singleEnemyGivesTheFurthestCorner() {
+        double[][] enemies = {{200, 150}};
+        LagrangeField field = fieldWith(enemies);
+        assertBest(enemies, field);
+        Point2D.Double best = field.getBest();
+        assertTrue(best.x > WIDTH - 2 * CELL_SIZE - WALL_MARGIN && best.y > HEIGHT - 2 * CELL_SIZE - WALL_MARGIN);
+    }
+
+    @Test
+    public void ringOfEnemiesGivesTheClearestSpotNotTheMiddle() {
+        double[][] enemies = {{400, 150}, {400, 450}, {250, 300}, {550, 300}};
+        LagrangeField field = fieldWith(enemies);
+        assertBest(enemies, field);
+        assertTrue(field.getBest().distance(400, 300) > 200);
+    }
+
+    @Test
+    public void staysBestAsAnEnemyMoves() {
+        double[][] enemies = {{200, 150}, {600, 400}};
+        LagrangeField field = fieldWith(enemies);
+        assertBest(enemies, field);
+        // incremental from here on, the full rebuild is not due yet
+        for (int tick = 1; tick <= 20; tick++) {
+            robot.time = tick;
+            enemies[0][0] += 15;
+            enemies[0][1] += 10;
+            OccupancyGridTest.scan(battlefield, robot, "enemy0", enemies[0][0], enemies[0][1], 100);
+            field.update(battlefield.getRegistry(), tick);
+            assertBest(enemies, field);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import org.junit.Test;
+
+/**
+ * NeuralPredictor's net learns in train, a bounded slice of each tick.
+ * Training has to stop once it has caught up, and aiming plus training has to stay cheap enough for every tick.
+ */
+public class NeuralPredictorTest {
+    private static final double BULLET_SPEED = 14;
+    private static final Point2D.Double US = new Point2D.Double(400, 300);
+
+    /** A resolved shot from US at an enemy at the given bearing and distance, found again at the given offset */
+    private static void addSample(NeuralPredictor predictor, double bearing, double distance, double offset) {
+        Point2D.Double enemy = new Point2D.Double(US.x + Math.sin(bearing) * distance, US.y + Math.cos(bearing) * distance);
+        Situation situation = new Situation(null, null).set(US, enemy, BULLET_SPEED);
+        GunWave wave = new GunWave().set(null, US.x, US.y, 0, BULLET_SPEED, null, null);
+        wave.setAim(situation);
+        KnnPredictor.getFeatures(situation, wave.getFeatures(KnnPredictor.DIMENSIONS));
+        double found = situation.bearing + offset;
+        predictor.recordResult(wave, new Point2D.Double(US.x + Math.sin(found) * distance, US.y + Math.cos(found) * distance));
+    }
+
+    @Test
+    public void trainingStopsOnceCaughtUp() {
+        NeuralPredictor predictor = new NeuralPredictor(null, null, new NeuralNet());
+        assertEquals(0, predictor.getNet().train());
+        for (int i = 0; i < 3; i++) {addSample(predictor, i, 200 + 50 * i, 0.1);}
+        for (int tick = 0; tick < 1000; tick++) {predictor.getNet().train();}
+        assertEquals(3 * (1 + NeuralNet.REPLAYS_PER_SAMPLE), predictor.getNet().getSteps());
+        assertEquals(0, predictor.getNet().train());
+
+        // another sample starts it again
+        addSample(predictor, 1.5, 300, -0.1);
+        assertTrue(predictor.getNet().train() > 0);
+    }
+
+    /** One aim and one train per tick, with a shot resolving every few ticks as in a battle */
+    private static long runTicks(NeuralPredictor predictor, java.util.Random random, int ticks) {
+        long start = System.nanoTime();
+        Point2D.Double enemy = new Point2D.Double();
+        double sink = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double distance = 100 + random.nextDouble() * 400;
+            enemy.setLocation(US.x + Math.sin(bearing) * distance, US.y + Math.cos(bearing) * distance);
+            sink += predictor.predictBearingOffset(US, enemy, BULLET_SPEED, bearing);
+            if (tick % 4 == 0) {addSample(predictor, bearing, distance, (random.nextDouble() - 0.5) * 0.6);}
+            predictor.getNet().train();
+        }
+        if (Double.isNaN(sink)) {throw new IllegalStateException();}
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmark() {
+        NeuralPredictor predictor = new NeuralPredictor(null, null, new NeuralNet());
+        java.util.Random random = new java.util.Random(1);
+        final int ticks = 5000;
+        runTicks(predictor, random, 20000);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {best = Math.min(best, runTicks(predictor, random, ticks));}
+        System.out.println("NeuralPredictor inference plus update: " + best / ticks + "ns/tick, "
+            + predictor.getNet().getSteps() + " steps over " + predictor.getNet().size() + " samples");
+    }
+}
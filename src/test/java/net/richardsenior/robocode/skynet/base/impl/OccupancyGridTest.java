@@ -0,0 +1,67 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import net.richardsenior.robocode.skynet.base.Enemy;
+import org.junit.Test;
+import robocode.ScannedRobotEvent;
+
+/**
+ * The rasterised isSafe against the Area reference implementation it replaces for the mover.
+ * Points are sampled at cell centres, where the grid is exact, and a point is only compared where
+ * the reference area is unambiguous around it (the boundaries differ only in which edge is inclusive).
+ */
+public class OccupancyGridTest {
+
+    /** Scans an enemy at the given absolute position as seen from the robot */
+    static void scan(BattlefieldImpl battlefield, StubRobot robot, String name, double x, double y, double energy) {
+        double bearing = Math.atan2(x - robot.x, y - robot.y) - robot.heading;
+        ScannedRobotEvent event = new ScannedRobotEvent(name, energy, bearing, Math.hypot(x - robot.x, y - robot.y), 0, 0, false);
+        event.setTime(robot.time);
+        battlefield.getEnemy(name).update(event);
+    }
+
+    @Test
+    public void isSafeAgreesWithBattlefieldArea() {
+        for (int cellSize : new int[]{4, 8}) {
+            StubRobot robot = new StubRobot();
+            robot.time = 40;
+            BattlefieldImpl battlefield = new BattlefieldImpl(robot);
+            battlefield.setOccupancyCellSize(cellSize);
+            scan(battlefield, robot, "a", 150, 450, 100);
+            scan(battlefield, robot, "b", 650, 120, 100);
+            scan(battlefield, robot, "c", 780, 580, 100);
+            battlefield.getSelfAsEnemy().update();
+            // wave sectors as well as enemy circles, the waves given a few ticks to grow
+            for (Enemy enemy : battlefield.getEnemies()) {
+                if (enemy == battlefield.getSelfAsEnemy()) {continue;}
+                WaveImpl wave = new WaveImpl(enemy, 14, 0);
+                for (int i = 0; i < 12; i++) {wave.update();}
+                battlefield.add(wave);
+            }
+            robot.time++;
+            Area reference = battlefield.getBattlefieldArea(0);
+
+            java.util.Random random = new java.util.Random(42);
+            Rectangle2D.Double around = new Rectangle2D.Double();
+            int compared = 0;
+            int unsafe = 0;
+            for (int i = 0; i < 20000; i++) {
+                double x = (random.nextInt((int)(robot.width / cellSize)) + 0.5) * cellSize;
+                double y = (random.nextInt((int)(robot.height / cellSize)) + 0.5) * cellSize;
+                around.setRect(x - 0.5, y - 0.5, 1, 1);
+                boolean inside = reference.contains(around);
+                if (!inside && reference.intersects(around)) {continue;}
+                assertEquals("cell " + cellSize + " at (" + x + ", " + y + ")", inside, battlefield.isSafe(x, y));
+                compared++;
+                if (!inside) {unsafe++;}
+            }
+            // the sample has to have exercised both answers
+            assertTrue(compared > 19000);
+            assertTrue(unsafe > 1000 && unsafe < compared - 1000);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * PatternIndex's suffix automaton against a naive search for the longest repeated suffix, over a stream
+ * long enough to grow the index, with round separators and scan gaps in it and plenty of repeats
+ * (so states get cloned).
+ */
+public class PatternIndexTest {
+    /** the few movements the stream is made of, velocity and turn in degrees per tick */
+    private static final int[][] MOVES = {{8, 0}, {8, 5}, {8, -5}, {0, 0}, {-8, 0}, {-8, 10}};
+    /** past the initial 4096 symbols, so the index grows and replays the stream once */
+    private static final int LENGTH = 6000;
+
+    private final PatternIndex index = new PatternIndex();
+
+    /** the symbols the index should hold, and the move behind each, -1 for a separator */
+    private final int[] stream = new int[LENGTH + 100];
+    private final int[] moves = new int[LENGTH + 100];
+    private int length = 0;
+    private long time = 0;
+    private double heading = 0;
+    /** false until the first scan of a round or after a gap, which only sets where the next symbol starts */
+    private boolean scanned = false;
+
+    private void scan(int move) {
+        time++;
+        double turn = Math.toRadians(MOVES[move][1]);
+        heading += turn;
+        index.addScan(time, heading, MOVES[move][0]);
+        if (scanned) {
+            stream[length] = PatternIndex.getSymbol(MOVES[move][0], turn);
+            moves[length++] = move;
+        }
+        scanned = true;
+    }
+
+    private void separate() {
+        if (length > 0 && stream[length - 1] != PatternIndex.SEPARATOR) {
+            stream[length] = PatternIndex.SEPARATOR;
+            moves[length++] = -1;
+        }
+    }
+
+    /**
+     * Checks the longest match and every shorter one against the naive search: each must be a suffix of the
+     * stream that ended earlier, ending where it first did, and the longest must be the longest there is
+     */
+    private void check() {
+        int n = length;
+        assertEquals(n, index.length());
+        // how far back the stream ending at e agrees with the whole stream, for every earlier end
+        int[] common = new int[n];
+        int longest = 0;
+        for (int e = 0; e < n - 1; e++) {
+            int l = 0;
+            while (l <= e && stream[e - l] == stream[n - 1 - l]) {l++;}
+            common[e] = l;
+            longest = Math.max(longest, l);
+        }
+        int match = index.getLongestMatch();
+        if (longest == 0) {
+            assertEquals(-1, match);
+            return;
+        }
+        assertEquals(longest, index.getMatchLength(match));
+        int previousLength = Integer.MAX_VALUE;
+        for (; match >= 0; match = index.getShorterMatch(match)) {
+            int length = index.getMatchLength(match);
+            int end = index.getMatchEnd(match);
+            assertTrue(length > 0 && length < previousLength);
+            assertTrue(end < n - 1 && common[end] >= length);
+            for (int e = 0; e < end; e++) {assertTrue("an earlier end at " + e + " than " + end, common[e] < length);}
+            previousLength = length;
+        }
+    }
+
+    @Test
+    public void matchesAgreeWithNaiveSearch() {
+        java.util.Random random = new java.util.Random(3);
+        index.startRound();
+        for (int step = 0; length < LENGTH; step++) {
+            int roll = random.nextInt(100);
+            if (roll < 2) {
+                index.startRound();
+                separate();
+                scanned = false;
+            } else if (roll < 3) {
+                // a gap in the scans too long to fill in, which only separates if there was a scan before it
+                time += 20;
+                index.addScan(time, heading, 0);
+                if (scanned) {separate();}
+                scanned = true;
+            } else if (roll < 60 && length > 50) {
+                // repeat a stretch from before, so there are long matches
+                int from = random.nextInt(length - 40);
+                for (int i = from, to = from + 5 + random.nextInt(35); i < to; i++) {
+                    if (moves[i] >= 0) {scan(moves[i]);}
+                }
+            } else {
+                scan(random.nextInt(MOVES.length));
+            }
+            // the naive search is slow, so only now and then once there is a good deal of stream
+            if (length < 1000 || step % 10 == 0) {check();}
+        }
+        check();
+        // the stream survived the growth
+        for (int i = 0; i < length; i++) {
+            assertEquals(stream[i] == PatternIndex.SEPARATOR, index.isSeparator(i));
+            if (moves[i] >= 0) {assertEquals(MOVES[moves[i]][0], index.getVelocity(i), 0);}
+        }
+    }
+
+    @Test
+    public void meleeEnemiesShareTheSymbols() {
+        // eight enemies get 2^14 symbols each, which the stream starts again at, and more can't raise that
+        index.limitTo(8);
+        index.limitTo(1);
+        int longest = 0;
+        for (int i = 0; i < 40000; i++) {
+            index.addScan(i, i % 7 * 0.05, i % 97 == 0 ? 0 : 8);
+            longest = Math.max(longest, index.length());
+        }
+        assertEquals(1 << 14, longest);
+        // already past a smaller share, so it starts again
+        index.limitTo(16);
+        assertTrue(index.length() <= 1 << 13);
+    }
+}
@@ -0,0 +1,95 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * QuadraticPredictor against the SimplePredictor it extends, on the recorded scans in ScanFixture.
+ * Both are fed the same sliding window of scans that EnemyImpl keeps, and at every scan predict where
+ * the enemy will be HORIZON ticks later, which is scored against where the recording has it.
+ * Scans are taken every tick (radar locked, 1v1) and every 8 ticks (a melee radar sweep).
+ * The mean errors and the cost of an add, evict and predict are printed for each.
+ * Only the orbit is asserted on: that is the curve the quadratic is for. An oscillator reverses within
+ * the window and a random mover has no shape to fit, neither fit does well there and the numbers are
+ * just reported, though the quadratic must not be wildly worse.
+ */
+public class PredictorComparisonTest {
+    private static final int WINDOW = 11; // as EnemyImpl.SCAN_HISTORY_SIZE
+    private static final int HORIZON = 16; // ticks, about the flight time of a bullet at medium range
+    private static final int BENCHMARK_PASSES = 200;
+
+    private static Map<String, ScanFixture.Track> tracks;
+
+    @BeforeClass
+    public static void loadFixture() throws Exception {
+        tracks = ScanFixture.load();
+    }
+
+    /** mean error in pixels of the predictor's forecasts over the track */
+    private static double meanError(SimplePredictor predictor, ScanFixture.Track track, int gap) {
+        predictor.reset();
+        double total = 0;
+        int count = 0;
+        for (int i = 0; i + HORIZON < track.size(); i += gap) {
+            int evicted = i - WINDOW * gap;
+            if (evicted >= 0) {predictor.remove(track.time[evicted], track.x[evicted], track.y[evicted]);}
+            predictor.add(track.time[i], track.x[i], track.y[i]);
+            if (predictor.getCount() < WINDOW) {continue;}
+            Point2D.Double p = predictor.predict(HORIZON);
+            total += Point2D.distance(p.x, p.y, track.x[i + HORIZON], track.y[i + HORIZON]);
+            count++;
+        }
+        return total / count;
+    }
+
+    @Test
+    public void quadraticIsCloserOnAnOrbit() {
+        for (int gap : new int[]{1, 8}) {
+            for (ScanFixture.Track track : tracks.values()) {
+                double linear = meanError(new SimplePredictor(), track, gap);
+                double quadratic = meanError(new QuadraticPredictor(), track, gap);
+                System.out.printf(java.util.Locale.ROOT, "%-9s scan every %d: linear %6.1fpx, quadratic %6.1fpx at %d ticks%n",
+                    track.name, gap, linear, quadratic, HORIZON);
+                String message = track.name + " every " + gap + ": quadratic " + quadratic + " linear " + linear;
+                if (track.name.equals("orbit")) {assertTrue(message, quadratic < linear);}
+                assertTrue(message, quadratic < linear * 1.5);
+            }
+        }
+    }
+
+    /** ns per scan of sliding the window along (one evict and one add) and predicting */
+    private static double nanosPerScan(SimplePredictor predictor, ScanFixture.Track track) {
+        double sink = 0;
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            predictor.reset();
+            for (int i = 0; i < track.size(); i++) {
+                if (i >= WINDOW) {predictor.remove(track.time[i - WINDOW], track.x[i - WINDOW], track.y[i - WINDOW]);}
+                predictor.add(track.time[i], track.x[i], track.y[i]);
+                Point2D.Double p = predictor.predict(HORIZON);
+                if (p != null) {sink += p.x;}
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        // keeps the work from being optimised away
+        assertTrue(!Double.isNaN(sink));
+        return (double)elapsed / (BENCHMARK_PASSES * track.size());
+    }
+
+    @Test
+    public void benchmark() {
+        ScanFixture.Track track = tracks.get("orbit");
+        // alternated a few times so both are warmed up by the JIT, the best of each taken
+        double linear = Double.POSITIVE_INFINITY;
+        double quadratic = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < 5; round++) {
+            linear = Math.min(linear, nanosPerScan(new SimplePredictor(), track));
+            quadratic = Math.min(quadratic, nanosPerScan(new QuadraticPredictor(), track));
+        }
+        System.out.printf(java.util.Locale.ROOT, "evict, add and predict: linear %.0fns, quadratic %.0fns%n", linear, quadratic);
+    }
+}
@@ -0,0 +1,142 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Recorded enemy scans for the predictor tests and benchmarks, in scans.csv on the test classpath.
+ * Each track is one opponent scanned every tick for a round: time, x, y, heading (radians) and velocity.
+ * Tests thin the scans out themselves to model a radar that isn't locked on.
+ *
+ * The tracks were recorded from opponents driven through PhysicsSimulator, so they move exactly as robocode
+ * would let them, around an observer at the centre of an 800x600 field:
+ * 'orbit' circles at a preferred distance and reverses at random intervals (a typical surfer),
+ * 'oscillate' strafes back and forth every 16 to 24 ticks and
+ * 'random' drives for random points, stopping now and then.
+ * Run main to record them again.
+ */
+public final class ScanFixture {
+    public static final String RESOURCE = "/scans.csv";
+    private static final double WIDTH = 800;
+    private static final double HEIGHT = 600;
+    private static final int TICKS = 1000;
+
+    /** one opponent's scans, indexed by tick */
+    public static final class Track {
+        public final String name;
+        public final long[] time;
+        public final double[] x;
+        public final double[] y;
+        public final double[] heading;
+        public final double[] velocity;
+
+        Track(String name, int length) {
+            this.name = name;
+            this.time = new long[length];
+            this.x = new double[length];
+            this.y = new double[length];
+            this.heading = new double[length];
+            this.velocity = new double[length];
+        }
+
+        public int size() {return time.length;}
+    }
+
+    private ScanFixture() {}
+
+    /** The tracks by name, in the order they were recorded */
+    public static Map<String, Track> load() throws IOException {
+        Map<String, List<String[]>> rows = new LinkedHashMap<>();
+        try (InputStream in = ScanFixture.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {throw new IOException(RESOURCE + " not found on the classpath");}
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {continue;}
+                String[] fields = line.split(",");
+                rows.computeIfAbsent(fields[0], k -> new ArrayList<>()).add(fields);
+            }
+        }
+        Map<String, Track> tracks = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String[]>> e : rows.entrySet()) {
+            Track track = new Track(e.getKey(), e.getValue().size());
+            for (int i = 0; i < track.size(); i++) {
+                String[] f = e.getValue().get(i);
+                track.time[i] = Long.parseLong(f[1]);
+                track.x[i] = Double.parseDouble(f[2]);
+                track.y[i] = Double.parseDouble(f[3]);
+                track.heading[i] = Double.parseDouble(f[4]);
+                track.velocity[i] = Double.parseDouble(f[5]);
+            }
+            tracks.put(track.name, track);
+        }
+        return tracks;
+    }
+
+    /** Records the tracks again, to the file given or standard out */
+    public static void main(String[] args) throws IOException {
+        try (PrintStream out = args.length > 0 ? new PrintStream(args[0], "UTF-8") : System.out) {
+            out.println("track,time,x,y,heading,velocity");
+            record(out, "orbit", new Random(1));
+            record(out, "oscillate", new Random(2));
+            record(out, "random", new Random(3));
+        }
+    }
+
+    private static void record(PrintStream out, String name, Random random) {
+        PhysicsSimulator simulator = new PhysicsSimulator(WIDTH, HEIGHT);
+        double cx = WIDTH / 2, cy = HEIGHT / 2;
+        RobotState s = new RobotState().set(cx + 250, cy, 0, 0, 0);
+        int direction = 1;
+        int nextChange = 0;
+        double goalX = s.x, goalY = s.y;
+        for (int tick = 0; tick < TICKS; tick++) {
+            out.printf(java.util.Locale.ROOT, "%s,%d,%.3f,%.3f,%.5f,%.3f%n", name, s.time, s.x, s.y, s.heading, s.velocity);
+            if (name.equals("orbit")) {
+                if (tick >= nextChange) {
+                    direction = -direction;
+                    nextChange = tick + 20 + random.nextInt(60);
+                }
+                // perpendicular to the observer, edging in or out towards 300 pixels away
+                double bearing = Math.atan2(s.x - cx, s.y - cy);
+                double distance = Math.hypot(s.x - cx, s.y - cy);
+                double correction = Math.max(-0.5, Math.min(0.5, (distance - 300) / 200));
+                double heading = bearing + direction * (Math.PI / 2 + correction);
+                if (!simulator.inField(s.x + 60 * Math.sin(heading), s.y + 60 * Math.cos(heading))) {
+                    direction = -direction;
+                    nextChange = tick + 20 + random.nextInt(60);
+                    heading = bearing + direction * (Math.PI / 2 + correction);
+                }
+                simulator.stepTowards(s, heading, 1);
+            } else if (name.equals("oscillate")) {
+                if (tick >= nextChange) {
+                    direction = -direction;
+                    nextChange = tick + 16 + random.nextInt(9);
+                }
+                // the same correction as the orbit, the other way round when driving backwards
+                double bearing = Math.atan2(s.x - cx, s.y - cy);
+                double distance = Math.hypot(s.x - cx, s.y - cy);
+                double correction = Math.max(-0.5, Math.min(0.5, (distance - 300) / 200));
+                simulator.stepTowards(s, bearing + Math.PI / 2 + direction * correction, direction);
+            } else {
+                if (tick >= nextChange || Math.hypot(goalX - s.x, goalY - s.y) < 20) {
+                    goalX = 60 + random.nextDouble() * (WIDTH - 120);
+                    goalY = 60 + random.nextDouble() * (HEIGHT - 120);
+                    // now and then sit still for a moment first
+                    direction = random.nextInt(5) == 0 ? 0 : 1;
+                    nextChange = tick + (direction == 0 ? 5 + random.nextInt(10) : 40 + random.nextInt(60));
+                }
+                simulator.stepTowards(s, Math.atan2(goalX - s.x, goalY - s.y), direction);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import org.junit.Test;
+import robocode.ScannedRobotEvent;
+
+/** The situation the guess factor guns learn against, as an enemy's scans come in */
+public class SituationTest {
+    private static final double RADIUS = 200;
+
+    /** scans the enemy on a circle round the robot at the given angle, velocity positive clockwise */
+    private static void scan(BattlefieldImpl battlefield, StubRobot robot, double angle, double velocity) {
+        double x = robot.x + RADIUS * Math.sin(angle);
+        double y = robot.y + RADIUS * Math.cos(angle);
+        ScannedRobotEvent event = new ScannedRobotEvent("circler", 100, angle - robot.heading, RADIUS,
+            angle + Math.PI / 2, velocity, false);
+        event.setTime(robot.time);
+        battlefield.getEnemy("circler").update(event);
+    }
+
+    @Test
+    public void timeSinceDirectionChangeOutlastsTheScanHistory() {
+        StubRobot robot = new StubRobot();
+        BattlefieldImpl battlefield = new BattlefieldImpl(robot);
+        EnemyImpl enemy = (EnemyImpl)battlefield.getEnemy("circler");
+        Situation situation = new Situation(null, enemy);
+        Point2D.Double us = new Point2D.Double(robot.x, robot.y);
+        // clockwise for 60 ticks, far longer than the scan history
+        double angle = 0;
+        for (; robot.time < 60; robot.time++, angle += 8 / RADIUS) {scan(battlefield, robot, angle, 8);}
+        situation.set(us, enemy.getPosition(), 14);
+        assertEquals(1, situation.direction);
+        assertEquals(59, situation.timeSinceDirectionChange);
+        assertTrue(KnnPredictor.getFeatures(situation, new float[KnnPredictor.DIMENSIONS])[6] > 0.5f);
+
+        // stopping isn't a change of direction
+        scan(battlefield, robot, angle, 0);
+        robot.time++;
+        // then five ticks back the other way
+        for (int i = 0; i < 5; i++, robot.time++, angle -= 8 / RADIUS) {scan(battlefield, robot, angle, -8);}
+        situation.set(us, enemy.getPosition(), 14);
+        assertEquals(-1, situation.direction);
+        assertEquals(4, situation.timeSinceDirectionChange);
+    }
+}
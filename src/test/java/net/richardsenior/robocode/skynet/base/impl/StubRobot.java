@@ -0,0 +1,85 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import robocode.AdvancedRobot;
+import robocode.Bullet;
+
+/**
+ * Stands in for the robot robocode would run, outside of a battle.
+ * Every method the skynet code calls is overridden, the state being plain fields the test sets,
+ * and the set/turn methods just remember what they were asked to do.
+ * Firing heats the gun as robocode would and hands back a bullet, the test cools the gun and turns it.
+ */
+public class StubRobot extends AdvancedRobot {
+    public double width = 800;
+    public double height = 600;
+    public double x = 400;
+    public double y = 300;
+    public double heading = 0;
+    public double velocity = 0;
+    public double energy = 100;
+    public double gunHeading = 0;
+    public double gunHeat = 0;
+    public double radarHeading = 0;
+    public long time = 0;
+    public int others = 1;
+    public String name = "Skynet";
+    public double ahead;
+    public double turn;
+    public double gunTurn;
+    /** bullets fired so far */
+    public int bullets;
+
+    @Override
+    public double getBattleFieldWidth() {return width;}
+    @Override
+    public double getBattleFieldHeight() {return height;}
+    @Override
+    public double getX() {return x;}
+    @Override
+    public double getY() {return y;}
+    @Override
+    public double getHeadingRadians() {return heading;}
+    @Override
+    public double getVelocity() {return velocity;}
+    @Override
+    public double getEnergy() {return energy;}
+    @Override
+    public double getGunHeadingRadians() {return gunHeading;}
+    @Override
+    public double getGunHeat() {return gunHeat;}
+    @Override
+    public double getGunTurnRemainingRadians() {return gunTurn;}
+    @Override
+    public double getRadarHeading() {return Math.toDegrees(radarHeading);}
+    @Override
+    public double getRadarHeadingRadians() {return radarHeading;}
+    @Override
+    public double getRadarTurnRemaining() {return 0;}
+    @Override
+    public long getTime() {return time;}
+    @Override
+    public int getOthers() {return others;}
+    @Override
+    public String getName() {return name;}
+    @Override
+    public java.io.File getDataFile(String filename) {return null;}
+    @Override
+    public void setAdjustGunForRobotTurn(boolean independent) {}
+    @Override
+    public void setAdjustRadarForGunTurn(boolean independent) {}
+    @Override
+    public void setAhead(double distance) {ahead = distance;}
+    @Override
+    public void setTurnRightRadians(double radians) {turn = radians;}
+    @Override
+    public void setTurnGunRightRadians(double radians) {gunTurn = radians;}
+    @Override
+    public void turnRadarRight(double degrees) {}
+    @Override
+    public void turnRadarRightRadians(double radians) {}
+    @Override
+    public Bullet setFireBullet(double power) {
+        gunHeat = robocode.Rules.getGunHeat(power);
+        return new Bullet(gunHeading, x, y, power, name, null, true, ++bullets);
+    }
+}
@@ -0,0 +1,57 @@
+package net.richardsenior.robocode.skynet.base.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Stepping the quality level down and back up, and recovery of the budget itself after a skipped turn */
+public class TickBudgetTest {
+    /** the time the budget sees, nanoseconds */
+    private long now = 0;
+    private final TickBudget budget = new TickBudget(() -> now);
+
+    /** a tick which takes exactly the given time */
+    private void tick(long nanos) {
+        budget.startTick();
+        now += nanos;
+        budget.endTick();
+    }
+
+    @Test
+    public void slowTicksStepDownAndHeadroomStepsBackUp() {
+        long limit = budget.getBudgetNanos();
+        // between half and 80% of the budget is neither
+        tick(limit * 7 / 10);
+        assertEquals(TickBudget.MAX_QUALITY, budget.getQuality());
+        tick(limit * 9 / 10);
+        assertEquals(TickBudget.MAX_QUALITY - 1, budget.getQuality());
+        // a level back for each 30 fast ticks in a row, and a tick that isn't fast starts the count again
+        for (int i = 0; i < 29; i++) {tick(0);}
+        tick(limit * 7 / 10);
+        for (int i = 0; i < 29; i++) {tick(0);}
+        assertEquals(TickBudget.MAX_QUALITY - 1, budget.getQuality());
+        tick(0);
+        assertEquals(TickBudget.MAX_QUALITY, budget.getQuality());
+        assertEquals(limit, budget.getBudgetNanos());
+    }
+
+    @Test
+    public void budgetRecoversAfterASkippedTurn() {
+        long initial = budget.getBudgetNanos();
+        // a one off hiccup just over half the budget, then told the turn was skipped
+        tick(initial * 6 / 10);
+        budget.onSkippedTurn();
+        long tightened = budget.getBudgetNanos();
+        assertEquals(initial * 6 / 10 * 8 / 10, tightened);
+        assertEquals(TickBudget.MAX_QUALITY - 2, budget.getQuality());
+        // then nothing but fast ticks: the quality is back after two recoveries, the budget (up a tenth
+        // each time) after eight
+        for (int i = 0; i < 60; i++) {tick(0);}
+        assertEquals(TickBudget.MAX_QUALITY, budget.getQuality());
+        assertTrue(budget.getBudgetNanos() < initial);
+        for (int i = 0; i < 6 * 30; i++) {tick(0);}
+        assertEquals(initial, budget.getBudgetNanos());
+        assertEquals(1, budget.getSkippedTurns());
+    }
+}